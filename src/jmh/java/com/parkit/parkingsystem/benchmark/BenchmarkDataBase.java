@@ -0,0 +1,61 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.integration.config.InMemoryDataBaseTestConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+
+/**
+ * In-memory database shared by the benchmarks: the production schema and migrations, and a ticket history spread
+ * over {@link #VEHICLES} vehicles named {@code HIST<n>}.
+ */
+final class BenchmarkDataBase {
+
+    static final int CAR_SPOTS = 500;
+    static final int BIKE_SPOTS = 100;
+    static final int VEHICLES = 1000;
+    static final int TICKETS_PER_VEHICLE = 20;
+
+    private BenchmarkDataBase() {
+    }
+
+    static InMemoryDataBaseTestConfig create(String name) throws Exception {
+        InMemoryDataBaseTestConfig dataBaseConfig = new InMemoryDataBaseTestConfig(name);
+        dataBaseConfig.createBaseSchema(CAR_SPOTS, BIKE_SPOTS);
+        seedHistory(dataBaseConfig);
+        // after the history, like on a production database, so the vehicle summary is built from it
+        new SchemaMigrator(dataBaseConfig).migrate();
+        return dataBaseConfig;
+    }
+
+    static String historicalVehicle(int n) {
+        return "HIST" + (n % VEHICLES);
+    }
+
+    private static void seedHistory(InMemoryDataBaseTestConfig dataBaseConfig) throws Exception {
+        long now = System.currentTimeMillis();
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            PreparedStatement ps = connection.prepareStatement(
+                    "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)");
+            for (int visit = 0; visit < TICKETS_PER_VEHICLE; visit++) {
+                for (int vehicle = 0; vehicle < VEHICLES; vehicle++) {
+                    long inTime = now - (TICKETS_PER_VEHICLE - visit) * 24L * 60 * 60 * 1000;
+                    ps.setInt(1, 1 + vehicle % CAR_SPOTS);
+                    ps.setString(2, historicalVehicle(vehicle));
+                    ps.setDouble(3, 1.5);
+                    ps.setTimestamp(4, new Timestamp(inTime));
+                    ps.setTimestamp(5, new Timestamp(inTime + 60 * 60 * 1000));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            dataBaseConfig.closePreparedStatement(ps);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.InMemoryDataBaseTestConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TicketDAO} and {@link ParkingSpotDAO} operations used by the gates, against an in-memory database holding
+ * {@value BenchmarkDataBase#VEHICLES} vehicles with {@value BenchmarkDataBase#TICKETS_PER_VEHICLE} past tickets each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+public class DaoBenchmark {
+
+    @Param({"false", "true"})
+    public boolean freeSpotIndex;
+
+    private InMemoryDataBaseTestConfig dataBaseConfig;
+    private TransactionManager transactionManager;
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+
+    @Setup
+    public void setUp() throws Exception {
+        dataBaseConfig = BenchmarkDataBase.create("daoBenchmark");
+        transactionManager = new TransactionManager(dataBaseConfig);
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        if (freeSpotIndex) {
+            parkingSpotDAO.loadFreeSpotIndex();
+        }
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    @TearDown
+    public void tearDown() {
+        DataBaseConfig.closeConnectionPools();
+    }
+
+    @State(Scope.Thread)
+    public static class Vehicles {
+        private int next;
+
+        String nextVehicle() {
+            return BenchmarkDataBase.historicalVehicle(next++);
+        }
+    }
+
+    @Benchmark
+    public int getNextAvailableSlot() {
+        return parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+    }
+
+    @Benchmark
+    public int reserveAndReleaseSlot() throws Exception {
+        return transactionManager.inTransaction(() -> {
+            int parkingNumber = parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR);
+            parkingSpotDAO.updateParking(new ParkingSpot(parkingNumber, ParkingType.CAR, true));
+            return parkingNumber;
+        });
+    }
+
+    @Benchmark
+    public int getNbTicket(Vehicles vehicles) {
+        return ticketDAO.getNbTicket(vehicles.nextVehicle());
+    }
+
+    @Benchmark
+    public Ticket getTicket(Vehicles vehicles) {
+        return ticketDAO.getTicket(vehicles.nextVehicle());
+    }
+
+    @Benchmark
+    public Ticket getOpenTicket(Vehicles vehicles) {
+        return ticketDAO.getOpenTicket(vehicles.nextVehicle());
+    }
+
+    @Benchmark
+    public boolean saveTicket(Vehicles vehicles) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicles.nextVehicle());
+        ticket.setInTime(new Date());
+        return ticketDAO.saveTicket(ticket);
+    }
+}
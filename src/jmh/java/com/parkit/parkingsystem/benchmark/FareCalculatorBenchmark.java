@@ -0,0 +1,84 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+public class FareCalculatorBenchmark {
+
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private Ticket carTicket;
+    private Ticket bikeTicket;
+
+    @Setup
+    public void setUp() {
+        long now = System.currentTimeMillis();
+        carTicket = newTicket(ParkingType.CAR, now - 3 * 60 * 60 * 1000 - 17 * 60 * 1000, now);
+        bikeTicket = newTicket(ParkingType.BIKE, now - 45 * 60 * 1000, now);
+    }
+
+    @Benchmark
+    public double calculateCarFare() {
+        fareCalculatorService.calculateFare(carTicket);
+        return carTicket.getPrice();
+    }
+
+    @Benchmark
+    public double calculateCarFareWithDiscount() {
+        fareCalculatorService.calculateFare(carTicket, true);
+        return carTicket.getPrice();
+    }
+
+    @Benchmark
+    public double calculateBikeFare() {
+        fareCalculatorService.calculateFare(bikeTicket);
+        return bikeTicket.getPrice();
+    }
+
+    @Benchmark
+    public double calculateBikeFareWithDiscount() {
+        fareCalculatorService.calculateFare(bikeTicket, true);
+        return bikeTicket.getPrice();
+    }
+
+    @Benchmark
+    public long calculateCarFareCents() {
+        return fareCalculatorService.calculateFareCents(ParkingType.CAR, carTicket.getInTime().getTime(),
+                carTicket.getOutTime().getTime(), false);
+    }
+
+    @Benchmark
+    public long calculateCarFareCentsWithDiscount() {
+        return fareCalculatorService.calculateFareCents(ParkingType.CAR, carTicket.getInTime().getTime(),
+                carTicket.getOutTime().getTime(), true);
+    }
+
+    private static Ticket newTicket(ParkingType parkingType, long inTime, long outTime) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(inTime));
+        ticket.setOutTime(new Date(outTime));
+        return ticket;
+    }
+}
@@ -0,0 +1,80 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.InMemoryDataBaseTestConfig;
+import com.parkit.parkingsystem.service.GateResult;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A vehicle entering then leaving through {@link ParkingService}, each gate thread with its own vehicle, against an
+ * in-memory database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmark.xml")
+public class ParkingServiceBenchmark {
+
+    private final AtomicInteger gates = new AtomicInteger();
+    private InMemoryDataBaseTestConfig dataBaseConfig;
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+
+    @Setup
+    public void setUp() throws Exception {
+        dataBaseConfig = BenchmarkDataBase.create("parkingServiceBenchmark");
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    @TearDown
+    public void tearDown() {
+        DataBaseConfig.closeConnectionPools();
+    }
+
+    @State(Scope.Thread)
+    public static class Gate {
+        private ParkingService parkingService;
+        private String vehicleRegNumber;
+
+        @Setup
+        public void setUp(ParkingServiceBenchmark benchmark) {
+            vehicleRegNumber = "GATE" + benchmark.gates.incrementAndGet();
+            parkingService = new ParkingService(benchmark.parkingSpotDAO, benchmark.ticketDAO,
+                    new TransactionManager(benchmark.dataBaseConfig));
+        }
+    }
+
+    @Benchmark
+    public void entryAndExit(Gate gate, Blackhole blackhole) {
+        GateResult entry = gate.parkingService.processIncomingVehicle(ParkingType.CAR, gate.vehicleRegNumber,
+                new Date());
+        blackhole.consume(entry);
+        blackhole.consume(gate.parkingService.processExitingVehicle(gate.vehicleRegNumber, new Date()));
+    }
+}
@@ -1,13 +1,222 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.service.DailyReport;
+import com.parkit.parkingsystem.service.DailyReportService;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.FareRepricingService;
+import com.parkit.parkingsystem.service.GateEventReplayer;
+import com.parkit.parkingsystem.service.GateHttpServer;
+import com.parkit.parkingsystem.service.GateJournal;
+import com.parkit.parkingsystem.service.GateJournalReplayer;
+import com.parkit.parkingsystem.service.GateLoadClient;
 import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.TariffWatcher;
+import com.parkit.parkingsystem.service.TicketArchiver;
+import com.parkit.parkingsystem.service.VehicleSummaryChecker;
+import com.parkit.parkingsystem.util.Metrics;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 public class App {
     private static final Logger logger = LogManager.getLogger("App");
     public static void main(String[] args){
+        if (args.length == 4 && "--load-test".equals(args[0])) {
+            // a client of another instance, it needs no database of its own
+            loadTest(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
         logger.info("Initializing Parking System");
-        InteractiveShell.loadInterface();
+        Metrics.registerMBeans();
+        try {
+            new SchemaMigrator(new DataBaseConfig()).migrate();
+        } catch (Exception e) {
+            // the gates need the migrated tables and indexes, so they would all fail at runtime
+            logger.error("Error migrating database schema, stopping", e);
+            System.exit(1);
+        }
+        TariffWatcher tariffWatcher = null;
+        String tariffFile = System.getProperty("parkit.tariff.file");
+        if (tariffFile != null) {
+            tariffWatcher = new TariffWatcher(Paths.get(tariffFile), System.getProperty("parkit.tariff.lot"),
+                    Long.getLong("parkit.tariff.pollMillis", 5000));
+            tariffWatcher.start();
+        }
+        if (args.length == 2 && "--reprice".equals(args[0])) {
+            reprice(args[1]);
+        } else if (args.length >= 1 && args.length <= 2 && "--check-summary".equals(args[0])) {
+            checkSummary(args.length == 2 && "--repair".equals(args[1]));
+        } else if (args.length == 2 && "--archive".equals(args[0])) {
+            archive(Integer.parseInt(args[1]));
+        } else if (args.length >= 2 && args.length <= 3 && "--report".equals(args[0])) {
+            report(args[1], args.length == 3 ? args[2] : "-");
+        } else if (args.length == 2 && "--replay-journal".equals(args[0])) {
+            replayJournal(args[1]);
+        } else if (args.length == 2 && "--replay".equals(args[0])) {
+            replay(args[1]);
+        } else if (args.length >= 1 && args.length <= 2 && "--serve".equals(args[0])) {
+            serve(args.length == 2 ? Integer.parseInt(args[1]) : Integer.getInteger("parkit.http.port", 8080));
+        } else {
+            InteractiveShell.loadInterface();
+        }
+        if (tariffWatcher != null) {
+            tariffWatcher.close();
+        }
+        DataBaseConfig.closeConnectionPools();
+    }
+
+    private static void reprice(String checkpointFile) {
+        FareRepricingService fareRepricingService = new FareRepricingService(new DataBaseConfig(),
+                new FareCalculatorService(), Integer.getInteger("parkit.reprice.chunkSize", 10000),
+                Integer.getInteger("parkit.reprice.fetchSize", 1000));
+        try {
+            System.out.println("Repricing done: " + fareRepricingService.reprice(Paths.get(checkpointFile)));
+        } catch (Exception e) {
+            logger.error("Repricing failed, run again with the same checkpoint file to resume", e);
+        }
+    }
+
+    private static void archive(int maxAgeDays) {
+        TicketArchiver ticketArchiver = new TicketArchiver(new DataBaseConfig(),
+                Integer.getInteger("parkit.archive.chunkSize", 1000), Long.getLong("parkit.archive.pauseMillis", 50));
+        try {
+            System.out.println("Archival done: " + ticketArchiver.archiveOlderThan(maxAgeDays));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Archival failed, the tickets archived so far are committed", e);
+        }
+    }
+
+    private static void checkSummary(boolean repair) {
+        VehicleSummaryChecker vehicleSummaryChecker = new VehicleSummaryChecker(new DataBaseConfig(),
+                Integer.getInteger("parkit.summary.fetchSize", 1000));
+        try {
+            System.out.println("Vehicle summary check done: " + vehicleSummaryChecker.check(repair));
+        } catch (Exception e) {
+            logger.error("Vehicle summary check failed", e);
+        }
+    }
+
+    private static void report(String day, String target) {
+        DailyReportService dailyReportService = new DailyReportService(new DataBaseConfig(),
+                Integer.getInteger("parkit.report.fetchSize", 1000));
+        try {
+            DailyReport report = dailyReportService.report(LocalDate.parse(day));
+            if ("-".equals(target)) {
+                report.writeCsv(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            } else {
+                try (Writer out = Files.newBufferedWriter(Paths.get(target), StandardCharsets.UTF_8)) {
+                    report.writeCsv(out);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Unable to build the report of " + day, e);
+        }
+    }
+
+    private static void replayJournal(String journalDir) {
+        TicketDAO ticketDAO = new TicketDAO();
+        GateJournal gateJournal = null;
+        try {
+            gateJournal = GateJournal.open(Paths.get(journalDir),
+                    Integer.getInteger("parkit.journal.segmentRecords", 65536),
+                    Integer.getInteger("parkit.journal.retainedSegments", 16));
+            GateJournalReplayer gateJournalReplayer = new GateJournalReplayer(gateJournal, new ParkingSpotDAO(),
+                    ticketDAO, new TransactionManager(ticketDAO.dataBaseConfig));
+            System.out.println("Journal replay done: " + gateJournalReplayer.replay());
+        } catch (IOException e) {
+            logger.error("Unable to replay gate journal " + journalDir, e);
+        } finally {
+            if (gateJournal != null) {
+                try {
+                    gateJournal.close();
+                } catch (IOException e) {
+                    logger.error("Error closing gate journal " + journalDir, e);
+                }
+            }
+        }
+    }
+
+    private static void replay(String source) {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        TicketDAO ticketDAO = new TicketDAO();
+        ParkingService parkingService = InteractiveShell.createParkingService(parkingSpotDAO, ticketDAO);
+        GateEventReplayer gateEventReplayer = new GateEventReplayer(parkingService);
+        try (BufferedReader events = "-".equals(source)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8)) {
+            System.out.println("Replay done: " + gateEventReplayer.replay(events));
+        } catch (IOException e) {
+            logger.error("Unable to read gate events from " + source, e);
+        } finally {
+            parkingService.closeJournal();
+            ticketDAO.closeWriteBehind();
+            ticketDAO.saveKnownVehicleFilter();
+            parkingSpotDAO.closeSnapshots();
+        }
+    }
+
+    private static void serve(int port) {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        TicketDAO ticketDAO = new TicketDAO();
+        CountDownLatch shutdownRequested = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        ParkingService parkingService = InteractiveShell.createParkingService(parkingSpotDAO, ticketDAO);
+        try {
+            GateHttpServer server = new GateHttpServer(parkingService, new InetSocketAddress(port),
+                    Integer.getInteger("parkit.http.maxThreads", 200), Boolean.getBoolean("parkit.http.clientTime"));
+            // the server runs until the JVM is asked to stop; the hook then lets in-flight requests finish
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                shutdownRequested.countDown();
+                try {
+                    stopped.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "gate-api-shutdown"));
+            server.start();
+            System.out.println("Gate API listening on port " + server.getPort());
+            shutdownRequested.await();
+            server.stop(Integer.getInteger("parkit.http.stopDelaySeconds", 5));
+        } catch (IOException e) {
+            logger.error("Unable to start the gate API on port " + port, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            parkingService.closeJournal();
+            ticketDAO.closeWriteBehind();
+            ticketDAO.saveKnownVehicleFilter();
+            parkingSpotDAO.closeSnapshots();
+            stopped.countDown();
+        }
+    }
+
+    private static void loadTest(String baseUrl, int workers, int visitsPerWorker) {
+        try {
+            System.out.println("Load test done: " + new GateLoadClient(baseUrl, workers).run(visitsPerWorker));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Load test against " + baseUrl + " failed", e);
+        }
     }
 }
@@ -0,0 +1,417 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of physical JDBC connections.
+ * <p>
+ * Borrowed connections are proxies: calling {@link Connection#close()} hands the physical connection back to the
+ * pool instead of closing it, so DAOs keep using {@link DataBaseConfig#closeConnection(Connection)} unchanged.
+ * <p>
+ * Each physical connection also keeps the statements prepared with {@link Connection#prepareStatement(String)},
+ * keyed by their SQL: preparing the same SQL again on that connection reuses the statement instead of having the
+ * database parse and plan it again. Closing such a statement hands it back to the cache, and statements left open
+ * when the connection is returned are handed back then.
+ */
+public class ConnectionPool {
+
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private static final Logger logger = LogManager.getLogger("ConnectionPool");
+
+    private final String name;
+    private final ConnectionFactory connectionFactory;
+    private final PoolConfig poolConfig;
+    private final Semaphore permits;
+    private final BlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder borrowFailures = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    public ConnectionPool(String name, ConnectionFactory connectionFactory, PoolConfig poolConfig) {
+        this.name = name;
+        this.connectionFactory = connectionFactory;
+        this.poolConfig = poolConfig;
+        this.permits = new Semaphore(poolConfig.getMaxSize(), true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-evictor-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictIdleConnections, 0, poolConfig.getEvictionIntervalMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool " + name + " is closed");
+        }
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(poolConfig.getBorrowTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            borrowFailures.increment();
+            throw new SQLException("Interrupted while waiting for a connection from pool " + name, e);
+        }
+        if (!acquired) {
+            borrowFailures.increment();
+            throw new SQLTimeoutException("Timed out after " + poolConfig.getBorrowTimeoutMillis()
+                    + " ms waiting for a connection from pool " + name);
+        }
+        try {
+            PooledConnection pooledConnection = takeIdleConnection();
+            if (pooledConnection == null) {
+                pooledConnection = new PooledConnection(connectionFactory.create());
+            }
+            recordWait(System.nanoTime() - start);
+            activeCount.incrementAndGet();
+            return pooledConnection.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            borrowFailures.increment();
+            throw e;
+        }
+    }
+
+    public PoolStats getStats() {
+        return new PoolStats(activeCount.get(), idleConnections.size(), borrowCount.sum(), borrowFailures.sum(),
+                TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum()), TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()),
+                statementCacheHits.sum(), statementCacheMisses.sum());
+    }
+
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idleConnections.pollFirst()) != null) {
+            pooledConnection.closeQuietly();
+        }
+        logger.info("Closed connection pool {}", name);
+    }
+
+    private PooledConnection takeIdleConnection() {
+        // LIFO: the most recently returned connection is the least likely to have been dropped by the server
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idleConnections.pollFirst()) != null) {
+            if (isValid(pooledConnection)) {
+                return pooledConnection;
+            }
+            pooledConnection.closeQuietly();
+        }
+        return null;
+    }
+
+    private boolean isValid(PooledConnection pooledConnection) {
+        if (System.currentTimeMillis() - pooledConnection.lastUsed < poolConfig.getValidationIntervalMillis()) {
+            return true;
+        }
+        try {
+            return pooledConnection.physical.isValid(poolConfig.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.increment();
+        totalWaitNanos.add(waitNanos);
+        long max;
+        while (waitNanos > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+            // retry until the recorded maximum is at least this wait
+        }
+    }
+
+    private void release(PooledConnection pooledConnection) {
+        activeCount.decrementAndGet();
+        try {
+            boolean withinBounds = idleConnections.size() + activeCount.get() < poolConfig.getMaxSize();
+            if (!closed && withinBounds && resetForReuse(pooledConnection.physical)) {
+                pooledConnection.lastUsed = System.currentTimeMillis();
+                idleConnections.offerFirst(pooledConnection);
+            } else {
+                pooledConnection.closeQuietly();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean resetForReuse(Connection connection) {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            logger.error("Error while resetting pooled connection", e);
+            return false;
+        }
+    }
+
+    private void evictIdleConnections() {
+        try {
+            long now = System.currentTimeMillis();
+            int idle = idleConnections.size();
+            Iterator<PooledConnection> oldestFirst = idleConnections.descendingIterator();
+            while (oldestFirst.hasNext() && idle > poolConfig.getMinIdle()) {
+                PooledConnection pooledConnection = oldestFirst.next();
+                // a borrower may have taken it since next(): only close it if it was still idle
+                if (now - pooledConnection.lastUsed > poolConfig.getIdleTimeoutMillis()
+                        && idleConnections.removeLastOccurrence(pooledConnection)) {
+                    pooledConnection.closeQuietly();
+                    idle--;
+                }
+            }
+            // the permit keeps borrowers from creating connections past maxSize while this one is being opened
+            while (!closed && idleConnections.size() < poolConfig.getMinIdle() && permits.tryAcquire()) {
+                try {
+                    if (idleConnections.size() + activeCount.get() >= poolConfig.getMaxSize()) {
+                        break;
+                    }
+                    idleConnections.offerLast(new PooledConnection(connectionFactory.create()));
+                } finally {
+                    permits.release();
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error while maintaining connection pool " + name, e);
+        }
+    }
+
+    private final class PooledConnection {
+        private final Connection physical;
+        // least recently returned first; only used by the thread holding the connection, statements in use are out
+        private final Map<String, PreparedStatement> statementCache = new LinkedHashMap<String, PreparedStatement>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= poolConfig.getStatementCacheSize()) {
+                    return false;
+                }
+                closeStatementQuietly(eldest.getValue());
+                return true;
+            }
+        };
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        private Connection lease() {
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new LeaseHandler(this));
+        }
+
+        private PreparedStatement takeStatement(String sql) throws SQLException {
+            PreparedStatement statement = statementCache.remove(sql);
+            if (statement != null) {
+                statementCacheHits.increment();
+                return statement;
+            }
+            statementCacheMisses.increment();
+            return physical.prepareStatement(sql);
+        }
+
+        private void giveBackStatement(String sql, PreparedStatement statement, ResultSet lastResultSet) {
+            try {
+                if (lastResultSet != null) {
+                    lastResultSet.close();
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+                // the next borrower expects a freshly prepared statement, not the settings of this lease
+                statement.setFetchSize(0);
+                statement.setMaxRows(0);
+                statement.setQueryTimeout(0);
+            } catch (SQLException e) {
+                closeStatementQuietly(statement);
+                return;
+            }
+            // the same SQL may have been prepared twice on this lease; keep one of them
+            PreparedStatement replaced = statementCache.put(sql, statement);
+            if (replaced != null) {
+                closeStatementQuietly(replaced);
+            }
+        }
+
+        private void closeQuietly() {
+            for (PreparedStatement statement : statementCache.values()) {
+                closeStatementQuietly(statement);
+            }
+            statementCache.clear();
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                logger.error("Error while closing pooled connection", e);
+            }
+        }
+    }
+
+    private static void closeStatementQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing cached statement", e);
+        }
+    }
+
+    private final class LeaseHandler implements InvocationHandler {
+        private final PooledConnection pooledConnection;
+        private final AtomicBoolean returned = new AtomicBoolean();
+        private final List<StatementHandler> openStatements = new ArrayList<>();
+
+        private LeaseHandler(PooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) {
+                        // statements the caller did not close go back to the cache with the connection
+                        for (StatementHandler statementHandler : new ArrayList<>(openStatements)) {
+                            statementHandler.giveBack();
+                        }
+                        release(pooledConnection);
+                    }
+                    return null;
+                case "isClosed":
+                    if (returned.get()) {
+                        return true;
+                    }
+                    break;
+                case "prepareStatement":
+                    if (args.length == 1 && poolConfig.getStatementCacheSize() > 0 && !returned.get()) {
+                        return prepareCachedStatement((Connection) proxy, (String) args[0]);
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + pooledConnection.physical + "]";
+                default:
+                    break;
+            }
+            if (returned.get()) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(pooledConnection.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private PreparedStatement prepareCachedStatement(Connection connection, String sql) throws SQLException {
+            StatementHandler statementHandler = new StatementHandler(this, connection, sql,
+                    pooledConnection.takeStatement(sql));
+            openStatements.add(statementHandler);
+            return (PreparedStatement) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, statementHandler);
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final LeaseHandler leaseHandler;
+        private final Connection connection;
+        private final String sql;
+        private final PreparedStatement physical;
+        private ResultSet lastResultSet;
+        private boolean returned;
+
+        private StatementHandler(LeaseHandler leaseHandler, Connection connection, String sql,
+                                 PreparedStatement physical) {
+            this.leaseHandler = leaseHandler;
+            this.connection = connection;
+            this.sql = sql;
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    giveBack();
+                    return null;
+                case "isClosed":
+                    if (returned) {
+                        return true;
+                    }
+                    break;
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached[" + physical + "]";
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Statement has already been closed");
+            }
+            try {
+                Object result = method.invoke(physical, args);
+                if (result instanceof ResultSet) {
+                    lastResultSet = (ResultSet) result;
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void giveBack() {
+            if (!returned) {
+                returned = true;
+                leaseHandler.openStatements.remove(this);
+                leaseHandler.pooledConnection.giveBackStatement(sql, physical, lastResultSet);
+            }
+        }
+    }
+}
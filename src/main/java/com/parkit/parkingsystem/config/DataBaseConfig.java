@@ -4,23 +4,68 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class DataBaseConfig {
 
     private static final Logger logger = LogManager.getLogger("DataBaseConfig");
 
+    // One pool per JDBC url, shared by every DAO pointing at the same database
+    private static final ConcurrentMap<String, ConnectionPool> connectionPools = new ConcurrentHashMap<>();
+
     public Connection getConnection() throws ClassNotFoundException, SQLException {
-        logger.info("Create DB connection");
-        Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/prod","root","rootroot");
+        Connection transactionConnection = TransactionManager.currentConnection();
+        if (transactionConnection != null) {
+            return transactionConnection;
+        }
+        // connection lifecycle messages are on every query path, so they are only logged when tracing
+        logger.trace("Create DB connection");
+        return getConnectionPool().borrow();
+    }
+
+    public ConnectionPool getConnectionPool() throws ClassNotFoundException {
+        Class.forName(getDriverClassName());
+        return connectionPools.computeIfAbsent(getUrl(), url -> new ConnectionPool(url,
+                () -> DriverManager.getConnection(url, getUser(), getPassword()), getPoolConfig()));
+    }
+
+    public PoolStats getPoolStats() throws ClassNotFoundException {
+        return getConnectionPool().getStats();
+    }
+
+    public static void closeConnectionPools() {
+        connectionPools.values().forEach(ConnectionPool::close);
+        connectionPools.clear();
+    }
+
+    protected String getDriverClassName() {
+        return "com.mysql.cj.jdbc.Driver";
+    }
+
+    protected String getUrl() {
+        // server-side prepared statements, so that the statements cached by the pool are parsed and planned once;
+        // cursor fetch, so that a statement with a positive fetch size streams its rows instead of reading them all
+        return "jdbc:mysql://localhost:3306/prod?useServerPrepStmts=true&useCursorFetch=true";
+    }
+
+    protected String getUser() {
+        return "root";
+    }
+
+    protected String getPassword() {
+        return "rootroot";
+    }
+
+    protected PoolConfig getPoolConfig() {
+        return PoolConfig.fromSystemProperties();
     }
 
     public void closeConnection(Connection con){
-        if(con!=null){
+        if(con!=null && con!=TransactionManager.currentConnection()){
             try {
                 con.close();
-                logger.info("Closing DB connection");
+                logger.trace("Closing DB connection");
             } catch (SQLException e) {
                 logger.error("Error while closing connection",e);
             }
@@ -31,7 +76,7 @@ public class DataBaseConfig {
         if(ps!=null){
             try {
                 ps.close();
-                logger.info("Closing Prepared Statement");
+                logger.trace("Closing Prepared Statement");
             } catch (SQLException e) {
                 logger.error("Error while closing prepared statement",e);
             }
@@ -42,7 +87,7 @@ public class DataBaseConfig {
         if(rs!=null){
             try {
                 rs.close();
-                logger.info("Closing Result Set");
+                logger.trace("Closing Result Set");
             } catch (SQLException e) {
                 logger.error("Error while closing result set",e);
             }
@@ -0,0 +1,105 @@
+package com.parkit.parkingsystem.config;
+
+public class PoolConfig {
+
+    private static final String PROPERTY_PREFIX = "parkit.pool.";
+
+    private int minIdle = 2;
+    private int maxSize = 10;
+    private long idleTimeoutMillis = 10 * 60 * 1000;
+    private long borrowTimeoutMillis = 5 * 1000;
+    private long evictionIntervalMillis = 30 * 1000;
+    private long validationIntervalMillis = 5 * 1000;
+    private int validationTimeoutSeconds = 2;
+    private int statementCacheSize = 32;
+
+    /**
+     * Builds a configuration from the defaults, overridden by any {@code parkit.pool.*} system property
+     * (e.g. {@code -Dparkit.pool.maxSize=20}).
+     */
+    public static PoolConfig fromSystemProperties() {
+        PoolConfig poolConfig = new PoolConfig();
+        poolConfig.setMinIdle(Integer.getInteger(PROPERTY_PREFIX + "minIdle", poolConfig.getMinIdle()));
+        poolConfig.setMaxSize(Integer.getInteger(PROPERTY_PREFIX + "maxSize", poolConfig.getMaxSize()));
+        poolConfig.setIdleTimeoutMillis(
+                Long.getLong(PROPERTY_PREFIX + "idleTimeoutMillis", poolConfig.getIdleTimeoutMillis()));
+        poolConfig.setBorrowTimeoutMillis(
+                Long.getLong(PROPERTY_PREFIX + "borrowTimeoutMillis", poolConfig.getBorrowTimeoutMillis()));
+        poolConfig.setEvictionIntervalMillis(
+                Long.getLong(PROPERTY_PREFIX + "evictionIntervalMillis", poolConfig.getEvictionIntervalMillis()));
+        poolConfig.setValidationIntervalMillis(
+                Long.getLong(PROPERTY_PREFIX + "validationIntervalMillis", poolConfig.getValidationIntervalMillis()));
+        poolConfig.setValidationTimeoutSeconds(
+                Integer.getInteger(PROPERTY_PREFIX + "validationTimeoutSeconds", poolConfig.getValidationTimeoutSeconds()));
+        poolConfig.setStatementCacheSize(
+                Integer.getInteger(PROPERTY_PREFIX + "statementCacheSize", poolConfig.getStatementCacheSize()));
+        return poolConfig;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public long getBorrowTimeoutMillis() {
+        return borrowTimeoutMillis;
+    }
+
+    public void setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+    }
+
+    public long getEvictionIntervalMillis() {
+        return evictionIntervalMillis;
+    }
+
+    public void setEvictionIntervalMillis(long evictionIntervalMillis) {
+        this.evictionIntervalMillis = evictionIntervalMillis;
+    }
+
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    public void setValidationIntervalMillis(long validationIntervalMillis) {
+        this.validationIntervalMillis = validationIntervalMillis;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    /**
+     * Prepared statements kept per connection; 0 disables the cache.
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+}
@@ -0,0 +1,67 @@
+package com.parkit.parkingsystem.config;
+
+public class PoolStats {
+    private final int active;
+    private final int idle;
+    private final long borrowCount;
+    private final long borrowFailures;
+    private final long totalWaitMillis;
+    private final long maxWaitMillis;
+    private final long statementCacheHits;
+    private final long statementCacheMisses;
+
+    public PoolStats(int active, int idle, long borrowCount, long borrowFailures, long totalWaitMillis,
+                     long maxWaitMillis, long statementCacheHits, long statementCacheMisses) {
+        this.active = active;
+        this.idle = idle;
+        this.borrowCount = borrowCount;
+        this.borrowFailures = borrowFailures;
+        this.totalWaitMillis = totalWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.statementCacheHits = statementCacheHits;
+        this.statementCacheMisses = statementCacheMisses;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    public long getBorrowFailures() {
+        return borrowFailures;
+    }
+
+    public long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits;
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses;
+    }
+
+    public double getAverageWaitMillis() {
+        return borrowCount == 0 ? 0 : (double) totalWaitMillis / borrowCount;
+    }
+
+    @Override
+    public String toString() {
+        return "active=" + active + ", idle=" + idle + ", borrows=" + borrowCount + ", borrowFailures="
+                + borrowFailures + ", avgWaitMillis=" + getAverageWaitMillis() + ", maxWaitMillis=" + maxWaitMillis
+                + ", statementCacheHits=" + statementCacheHits + ", statementCacheMisses=" + statementCacheMisses;
+    }
+}
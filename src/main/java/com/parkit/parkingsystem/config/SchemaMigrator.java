@@ -0,0 +1,141 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Brings a database schema up to date by applying the versioned migrations under {@code db/migration} on the
+ * classpath.
+ * <p>
+ * A migration file is named {@code V<version>__<description>.sql} and holds one or more statements separated by
+ * {@code ;}. Each applied version is recorded in the {@code schema_version} table, so a migration runs once per
+ * database. Applied migrations must never be edited: add a new version instead.
+ */
+public class SchemaMigrator {
+
+    private static final Logger logger = LogManager.getLogger("SchemaMigrator");
+
+    private static final String MIGRATION_LOCATION = "db/migration/";
+
+    // In order of application; a new migration is added at the end
+    static final String[] MIGRATIONS = {
+            "V1__ticket_vehicle_index.sql",
+            "V2__parking_type_available_index.sql",
+            "V3__ticket_archive.sql",
+            "V4__vehicle_summary.sql",
+    };
+
+    private final DataBaseConfig dataBaseConfig;
+
+    public SchemaMigrator(DataBaseConfig dataBaseConfig) {
+        this.dataBaseConfig = dataBaseConfig;
+    }
+
+    /**
+     * Applies every migration not yet recorded in the database, in version order, and returns how many were applied.
+     */
+    public int migrate() throws SQLException, ClassNotFoundException, IOException {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            Statement statement = con.createStatement();
+            statement.execute(DBConstants.CREATE_SCHEMA_VERSION_TABLE);
+            statement.close();
+
+            Set<Integer> appliedVersions = getAppliedVersions(con);
+            int applied = 0;
+            for (String migration : MIGRATIONS) {
+                int version = getVersion(migration);
+                if (!appliedVersions.contains(version)) {
+                    apply(con, migration, version);
+                    applied++;
+                }
+            }
+            logger.info("Database schema is up to date, " + applied + " migration(s) applied");
+            return applied;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private Set<Integer> getAppliedVersions(Connection con) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        PreparedStatement ps = con.prepareStatement(DBConstants.GET_SCHEMA_VERSIONS);
+        ResultSet rs = ps.executeQuery();
+        while (rs.next()) {
+            versions.add(rs.getInt(1));
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return versions;
+    }
+
+    private void apply(Connection con, String migration, int version) throws SQLException, IOException {
+        logger.info("Applying schema migration " + migration);
+        Statement statement = con.createStatement();
+        try {
+            // MySQL commits DDL statements implicitly, so a failed migration is not rolled back: it has to be
+            // fixed by hand before the version is recorded
+            for (String sql : readStatements(migration)) {
+                statement.execute(sql);
+            }
+        } finally {
+            statement.close();
+        }
+        PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_SCHEMA_VERSION);
+        ps.setInt(1, version);
+        ps.setString(2, getDescription(migration));
+        ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+        ps.execute();
+        dataBaseConfig.closePreparedStatement(ps);
+    }
+
+    static List<String> readStatements(String migration) throws IOException {
+        InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(MIGRATION_LOCATION + migration);
+        if (in == null) {
+            throw new IOException("Schema migration not found: " + MIGRATION_LOCATION + migration);
+        }
+        StringBuilder script = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (!trimmed.startsWith("/*") && !trimmed.startsWith("--")) {
+                    script.append(line).append('\n');
+                }
+            }
+        }
+        List<String> statements = new ArrayList<>();
+        for (String sql : script.toString().split(";")) {
+            if (!sql.trim().isEmpty()) {
+                statements.add(sql.trim());
+            }
+        }
+        return statements;
+    }
+
+    static int getVersion(String migration) {
+        return Integer.parseInt(migration.substring(1, migration.indexOf("__")));
+    }
+
+    private static String getDescription(String migration) {
+        return migration.substring(migration.indexOf("__") + 2, migration.lastIndexOf('.')).replace('_', ' ');
+    }
+}
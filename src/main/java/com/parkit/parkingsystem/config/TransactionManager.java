@@ -0,0 +1,146 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a unit of work on a single connection and commits it once.
+ * <p>
+ * While a transaction is open, {@link DataBaseConfig#getConnection()} hands out the transaction's connection to
+ * every DAO called from the same thread and {@link DataBaseConfig#closeConnection(Connection)} leaves it open, so
+ * DAO methods take part in the transaction without any change to their signature.
+ */
+public class TransactionManager {
+
+    public interface TransactionCallback<T> {
+        T doInTransaction() throws Exception;
+    }
+
+    private static final Logger logger = LogManager.getLogger("TransactionManager");
+
+    private static final ThreadLocal<TransactionState> currentTransaction = new ThreadLocal<>();
+
+    private final DataBaseConfig dataBaseConfig;
+
+    public TransactionManager(DataBaseConfig dataBaseConfig) {
+        this.dataBaseConfig = dataBaseConfig;
+    }
+
+    /**
+     * A manager that runs the work as is, leaving every DAO call on its own auto-commit connection.
+     */
+    public static TransactionManager autoCommit() {
+        return new TransactionManager(null);
+    }
+
+    /**
+     * Marks the transaction running on the current thread, if any, so that it is rolled back instead of committed.
+     * DAOs call this when they swallow a database error.
+     */
+    public static void setRollbackOnly() {
+        TransactionState transactionState = currentTransaction.get();
+        if (transactionState != null) {
+            transactionState.rollbackOnly = true;
+        }
+    }
+
+    /**
+     * Runs the action once the transaction running on the current thread commits, or right away when there is none.
+     * Used to publish in-memory state only once the matching database change is visible to other connections.
+     */
+    public static void runAfterCommit(Runnable action) {
+        TransactionState transactionState = currentTransaction.get();
+        if (transactionState != null) {
+            transactionState.commitActions.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Runs the action just before the transaction running on the current thread commits, once its work has succeeded,
+     * or right away when there is none. If the action throws, the transaction is rolled back instead. Used to record
+     * the work elsewhere, e.g. in a journal, before the database makes it visible.
+     */
+    public static void runBeforeCommit(TransactionCallback<?> action) throws Exception {
+        TransactionState transactionState = currentTransaction.get();
+        if (transactionState != null) {
+            transactionState.beforeCommitActions.add(action);
+        } else {
+            action.doInTransaction();
+        }
+    }
+
+    /**
+     * Runs the action if the transaction running on the current thread rolls back; does nothing when there is none.
+     * Used to undo in-memory state applied ahead of the commit.
+     */
+    public static void runAfterRollback(Runnable action) {
+        TransactionState transactionState = currentTransaction.get();
+        if (transactionState != null) {
+            transactionState.rollbackActions.add(action);
+        }
+    }
+
+    static Connection currentConnection() {
+        TransactionState transactionState = currentTransaction.get();
+        return transactionState == null ? null : transactionState.connection;
+    }
+
+    public <T> T inTransaction(TransactionCallback<T> callback) throws Exception {
+        if (dataBaseConfig == null || currentTransaction.get() != null) {
+            // auto-commit mode, or joining the transaction already open on this thread
+            return callback.doInTransaction();
+        }
+
+        Connection con = dataBaseConfig.getConnection();
+        TransactionState transactionState = new TransactionState(con);
+        currentTransaction.set(transactionState);
+        T result;
+        try {
+            con.setAutoCommit(false);
+            result = callback.doInTransaction();
+            if (transactionState.rollbackOnly) {
+                throw new SQLException("Transaction marked as rollback-only after a failed statement");
+            }
+            for (TransactionCallback<?> action : transactionState.beforeCommitActions) {
+                action.doInTransaction();
+            }
+            con.commit();
+        } catch (Exception e) {
+            rollback(con);
+            transactionState.rollbackActions.forEach(Runnable::run);
+            throw e;
+        } finally {
+            currentTransaction.remove();
+            dataBaseConfig.closeConnection(con);
+        }
+        transactionState.commitActions.forEach(Runnable::run);
+        return result;
+    }
+
+    private void rollback(Connection con) {
+        try {
+            con.rollback();
+        } catch (SQLException e) {
+            logger.error("Error while rolling back transaction", e);
+        }
+    }
+
+    private static final class TransactionState {
+        private final Connection connection;
+        private final List<TransactionCallback<?>> beforeCommitActions = new ArrayList<>();
+        private final List<Runnable> commitActions = new ArrayList<>();
+        private final List<Runnable> rollbackActions = new ArrayList<>();
+        private boolean rollbackOnly;
+
+        private TransactionState(Connection connection) {
+            this.connection = connection;
+        }
+    }
+}
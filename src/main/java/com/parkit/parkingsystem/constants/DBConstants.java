@@ -2,12 +2,46 @@ package com.parkit.parkingsystem.constants;
 
 public class DBConstants {
 
+    public static final String GET_PARKING_SPOTS = "select PARKING_NUMBER, AVAILABLE, TYPE from parking";
+    public static final String GET_PARKING_SPOTS_AFTER = "select PARKING_NUMBER, AVAILABLE, TYPE from parking where PARKING_NUMBER > ? order by PARKING_NUMBER limit ?";
+    public static final String COUNT_FREE_PARKING_SPOTS = "select count(*) from parking where AVAILABLE = true and TYPE = ?";
     public static final String GET_NEXT_PARKING_SPOT = "select min(PARKING_NUMBER) from parking where AVAILABLE = true and TYPE = ?";
     public static final String UPDATE_PARKING_SPOT = "update parking set available = ? where PARKING_NUMBER = ?";
+    public static final String LOCK_NEXT_PARKING_SPOT = "select PARKING_NUMBER from parking where AVAILABLE = true and TYPE = ? and PARKING_NUMBER > ? order by PARKING_NUMBER limit 1 for update skip locked";
+    public static final String LOCK_PARKING_SPOT = "select AVAILABLE from parking where PARKING_NUMBER = ? for update";
+    public static final String RESERVE_PARKING_SPOT = "update parking set AVAILABLE = false where PARKING_NUMBER = ? and AVAILABLE = true";
 
     public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
     public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=?, IN_TIME=? where ID=?";
-    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME limit 1";
+    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME desc limit 1";
+    public static final String GET_OPEN_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? and t.OUT_TIME is null order by t.IN_TIME desc limit 1";
 
-    public static final String GET_NUMBER_TICKET = "select count(*) from ticket where VEHICLE_REG_NUMBER = ?";
+    public static final String GET_NUMBER_TICKET = "select VISITS from vehicle_summary where VEHICLE_REG_NUMBER = ?";
+    public static final String SAVE_VEHICLE_VISIT = "insert into vehicle_summary(VEHICLE_REG_NUMBER, VISITS, LAST_VISIT) values(?, 1, ?) on duplicate key update VISITS = VISITS + 1, LAST_VISIT = greatest(LAST_VISIT, ?)";
+    public static final String GET_CLOSED_TICKETS_FROM = "select t.ID, p.TYPE, t.IN_TIME, t.OUT_TIME, t.PRICE, exists(select 1 from ticket e where e.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER and e.IN_TIME < t.IN_TIME) or exists(select 1 from ticket_archive_summary s where s.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER and s.FIRST_IN_TIME < t.IN_TIME) from ticket t,parking p where p.parking_number = t.parking_number and t.OUT_TIME is not null and t.ID > ? order by t.ID";
+    public static final String UPDATE_TICKET_PRICE = "update ticket set PRICE=? where ID=?";
+    public static final String GET_TICKET_EVENTS_OF_DAY = "select t.IN_TIME, 1, p.TYPE, 0, t.IN_TIME from ticket t,parking p where p.parking_number = t.parking_number and t.IN_TIME < ? and (t.OUT_TIME is null or t.OUT_TIME >= ?) union all select t.OUT_TIME, -1, p.TYPE, t.PRICE, t.IN_TIME from ticket t,parking p where p.parking_number = t.parking_number and t.OUT_TIME >= ? and t.OUT_TIME < ? order by 1, 2";
+    public static final String GET_RECENT_TICKET_COUNTS = "select VEHICLE_REG_NUMBER, VISITS from vehicle_summary order by LAST_VISIT desc limit ?";
+    public static final String GET_KNOWN_VEHICLES = "select VEHICLE_REG_NUMBER from vehicle_summary";
+    public static final String GET_VEHICLES_SINCE_TICKET = "select distinct VEHICLE_REG_NUMBER from ticket where ID > ?";
+    public static final String GET_LAST_TICKET_ID = "select coalesce(max(ID), 0) from ticket";
+
+    public static final String GET_ARCHIVABLE_TICKET_IDS = "select ID from ticket where OUT_TIME < ? and ID > ? order by ID limit ?";
+    public static final String LOCK_ARCHIVE_CHUNK = "select ID from ticket where OUT_TIME < ? and ID > ? and ID <= ? for update";
+    public static final String ARCHIVE_TICKETS = "insert into ticket_archive(ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) select ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME from ticket where OUT_TIME < ? and ID > ? and ID <= ?";
+    public static final String GET_ARCHIVED_COUNTS = "select VEHICLE_REG_NUMBER, count(*), min(IN_TIME), max(OUT_TIME) from ticket where OUT_TIME < ? and ID > ? and ID <= ? group by VEHICLE_REG_NUMBER";
+    public static final String UPDATE_ARCHIVE_SUMMARY = "update ticket_archive_summary set ARCHIVED_TICKETS = ARCHIVED_TICKETS + ?, FIRST_IN_TIME = least(FIRST_IN_TIME, ?), LAST_OUT_TIME = greatest(LAST_OUT_TIME, ?) where VEHICLE_REG_NUMBER = ?";
+    public static final String SAVE_ARCHIVE_SUMMARY = "insert into ticket_archive_summary(ARCHIVED_TICKETS, FIRST_IN_TIME, LAST_OUT_TIME, VEHICLE_REG_NUMBER) values(?,?,?,?)";
+    public static final String DELETE_ARCHIVED_TICKETS = "delete from ticket where OUT_TIME < ? and ID > ? and ID <= ?";
+
+    public static final String GET_VEHICLE_SUMMARY_MISMATCHES = "select h.VEHICLE_REG_NUMBER, h.VISITS, h.LAST_VISIT from (select VEHICLE_REG_NUMBER, count(*) as VISITS, max(IN_TIME) as LAST_VISIT from (select VEHICLE_REG_NUMBER, IN_TIME from ticket union all select VEHICLE_REG_NUMBER, IN_TIME from ticket_archive) a group by VEHICLE_REG_NUMBER) h left join vehicle_summary s on s.VEHICLE_REG_NUMBER = h.VEHICLE_REG_NUMBER where s.VEHICLE_REG_NUMBER is null or s.VISITS <> h.VISITS or s.LAST_VISIT <> h.LAST_VISIT";
+    public static final String GET_ORPHAN_VEHICLE_SUMMARIES = "select s.VEHICLE_REG_NUMBER from vehicle_summary s where not exists(select 1 from ticket t where t.VEHICLE_REG_NUMBER = s.VEHICLE_REG_NUMBER) and not exists(select 1 from ticket_archive a where a.VEHICLE_REG_NUMBER = s.VEHICLE_REG_NUMBER)";
+    public static final String LOCK_VEHICLE_SUMMARY = "select VISITS, LAST_VISIT from vehicle_summary where VEHICLE_REG_NUMBER = ? for update";
+    public static final String GET_VEHICLE_HISTORY = "select count(*), max(IN_TIME) from (select IN_TIME from ticket where VEHICLE_REG_NUMBER = ? union all select IN_TIME from ticket_archive where VEHICLE_REG_NUMBER = ?) h";
+    public static final String REPAIR_VEHICLE_SUMMARY = "insert into vehicle_summary(VEHICLE_REG_NUMBER, VISITS, LAST_VISIT) values(?, ?, ?) on duplicate key update VISITS = ?, LAST_VISIT = ?";
+    public static final String DELETE_VEHICLE_SUMMARY = "delete from vehicle_summary where VEHICLE_REG_NUMBER = ?";
+
+    public static final String CREATE_SCHEMA_VERSION_TABLE = "create table if not exists schema_version(VERSION int PRIMARY KEY, DESCRIPTION varchar(100) NOT NULL, APPLIED_ON DATETIME NOT NULL)";
+    public static final String GET_SCHEMA_VERSIONS = "select VERSION from schema_version";
+    public static final String SAVE_SCHEMA_VERSION = "insert into schema_version(VERSION, DESCRIPTION, APPLIED_ON) values(?,?,?)";
 }
@@ -1,5 +1,6 @@
 package com.parkit.parkingsystem.constants;
 
+// Default rates, used until a tariff file is loaded (see TariffTable)
 public class Fare {
     public static final double BIKE_RATE_PER_HOUR = 1.0;
     public static final double CAR_RATE_PER_HOUR = 1.5;
@@ -0,0 +1,77 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-process view of the free spot numbers of each {@link ParkingType}.
+ * <p>
+ * Free numbers are kept in lock-free sorted sets, so finding or claiming the lowest free spot is a read or removal
+ * at the head of the set: the same spot {@code GET_NEXT_PARKING_SPOT} would return, without a query.
+ */
+public class FreeSpotIndex {
+
+    private final Map<ParkingType, ConcurrentSkipListSet<Integer>> freeSpots = new EnumMap<>(ParkingType.class);
+    private final Map<Integer, ParkingType> spotTypes = new HashMap<>();
+
+    public FreeSpotIndex() {
+        for (ParkingType parkingType : ParkingType.values()) {
+            freeSpots.put(parkingType, new ConcurrentSkipListSet<>());
+        }
+    }
+
+    /**
+     * Registers a spot while the index is being built; not to be called once the index is shared.
+     */
+    public void addSpot(int number, ParkingType parkingType, boolean available) {
+        spotTypes.put(number, parkingType);
+        if (available) {
+            freeSpots.get(parkingType).add(number);
+        }
+    }
+
+    /**
+     * Returns the lowest free spot number of the given type, or -1 if there is none.
+     */
+    public int peek(ParkingType parkingType) {
+        try {
+            return freeSpots.get(parkingType).first();
+        } catch (NoSuchElementException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Removes and returns the lowest free spot number of the given type, or -1 if there is none.
+     * Concurrent callers never get the same number.
+     */
+    public int claimNext(ParkingType parkingType) {
+        Integer number = freeSpots.get(parkingType).pollFirst();
+        return number == null ? -1 : number;
+    }
+
+    public void markAvailable(int number) {
+        ParkingType parkingType = spotTypes.get(number);
+        if (parkingType != null) {
+            freeSpots.get(parkingType).add(number);
+        }
+    }
+
+    /**
+     * Returns true if the spot was free in the index until this call.
+     */
+    public boolean markUnavailable(int number) {
+        ParkingType parkingType = spotTypes.get(number);
+        return parkingType != null && freeSpots.get(parkingType).remove(number);
+    }
+
+    public boolean isAvailable(int number) {
+        ParkingType parkingType = spotTypes.get(number);
+        return parkingType != null && freeSpots.get(parkingType).contains(number);
+    }
+}
@@ -0,0 +1,181 @@
+package com.parkit.parkingsystem.dao;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of the registration numbers that have a ticket.
+ * <p>
+ * {@link #mightContain(String)} never answers false for a vehicle that was added, and answers true for a vehicle that
+ * was not with about the false positive rate the filter was sized for, as long as it holds no more than the expected
+ * number of vehicles. Vehicles can be added concurrently with lookups.
+ */
+public class KnownVehicleFilter {
+
+    private static final int FILE_MAGIC = 0x504b4246;
+    private static final int FILE_VERSION = 1;
+
+    private final long nbBits;
+    private final int nbHashes;
+    private final AtomicLongArray words;
+
+    public KnownVehicleFilter(long expectedVehicles, double falsePositiveRate) {
+        this(optimalBits(expectedVehicles, falsePositiveRate),
+                optimalHashes(expectedVehicles, optimalBits(expectedVehicles, falsePositiveRate)));
+    }
+
+    private KnownVehicleFilter(long nbBits, int nbHashes) {
+        this.nbBits = nbBits;
+        this.nbHashes = nbHashes;
+        this.words = new AtomicLongArray((int) ((nbBits + 63) / 64));
+    }
+
+    static long optimalBits(long expectedVehicles, double falsePositiveRate) {
+        if (expectedVehicles <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid expected vehicles or false positive rate");
+        }
+        double bits = -expectedVehicles * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        return Math.max(64, (long) Math.ceil(bits));
+    }
+
+    static int optimalHashes(long expectedVehicles, long nbBits) {
+        return Math.max(1, (int) Math.round((double) nbBits / expectedVehicles * Math.log(2)));
+    }
+
+    public void add(String vehicleRegNumber) {
+        long hash = hash(vehicleRegNumber);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= nbHashes; i++) {
+            long bit = bitIndex(hash1 + i * hash2);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = words.get(word)) & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                // retry until the bit is set, by this thread or another one
+            }
+        }
+    }
+
+    /**
+     * Returns false if the vehicle was never added, true if it may have been.
+     */
+    public boolean mightContain(String vehicleRegNumber) {
+        long hash = hash(vehicleRegNumber);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= nbHashes; i++) {
+            long bit = bitIndex(hash1 + i * hash2);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getNbBits() {
+        return nbBits;
+    }
+
+    public int getNbHashes() {
+        return nbHashes;
+    }
+
+    /**
+     * Returns true if this filter has the same size and number of hashes as {@code other}, so that one can stand in
+     * for the other.
+     */
+    public boolean hasSameShape(KnownVehicleFilter other) {
+        return nbBits == other.nbBits && nbHashes == other.nbHashes;
+    }
+
+    private long bitIndex(int combinedHash) {
+        // a negative combination is folded back, as in Guava's BloomFilter
+        return (combinedHash < 0 ? ~combinedHash : combinedHash) % nbBits;
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 registration number, finished with the MurmurHash3 mixer to spread short keys over
+     * both halves.
+     */
+    private static long hash(String vehicleRegNumber) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : vehicleRegNumber.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Saves the filter along with the ID of the last ticket it covers. The file is written aside then renamed, so a
+     * crash never leaves a truncated filter behind.
+     */
+    public void write(Path file, int lastTicketId) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(nbBits);
+            out.writeInt(nbHashes);
+            out.writeInt(lastTicketId);
+            for (int i = 0; i < words.length(); i++) {
+                out.writeLong(words.get(i));
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * A filter read back from a file, with the ID of the last ticket it covers.
+     */
+    public static final class Saved {
+        private final KnownVehicleFilter filter;
+        private final int lastTicketId;
+
+        private Saved(KnownVehicleFilter filter, int lastTicketId) {
+            this.filter = filter;
+            this.lastTicketId = lastTicketId;
+        }
+
+        public KnownVehicleFilter getFilter() {
+            return filter;
+        }
+
+        public int getLastTicketId() {
+            return lastTicketId;
+        }
+    }
+
+    public static Saved read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException("Not a known vehicle filter: " + file);
+            }
+            long nbBits = in.readLong();
+            int nbHashes = in.readInt();
+            int lastTicketId = in.readInt();
+            if (nbBits <= 0 || nbBits > 64L * Integer.MAX_VALUE || nbHashes <= 0) {
+                throw new IOException("Invalid known vehicle filter: " + file);
+            }
+            KnownVehicleFilter filter = new KnownVehicleFilter(nbBits, nbHashes);
+            for (int i = 0; i < filter.words.length(); i++) {
+                filter.words.set(i, in.readLong());
+            }
+            return new Saved(filter, lastTicketId);
+        }
+    }
+}
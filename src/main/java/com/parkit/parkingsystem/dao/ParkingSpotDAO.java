@@ -1,28 +1,342 @@
 package com.parkit.parkingsystem.dao;
 
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.TransactionManager;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.util.Metrics;
+import com.parkit.parkingsystem.util.Metrics.Operation;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ParkingSpotDAO {
     private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
 
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    // Free spots known in memory; null until loadFreeSpotIndex() is called, in which case every lookup hits the DB
+    public volatile FreeSpotIndex freeSpotIndex;
+
+    // Free spot counters; null until loadOccupancy() is called, in which case free spots are counted in the DB
+    public volatile SpotOccupancy spotOccupancy;
+
+    // Keeps a snapshot of the spot state on disk; null means the state is always loaded from the parking table
+    public SpotSnapshotter spotSnapshotter;
+
+    /**
+     * Loads the free spot index and counters from the snapshot file if it holds a valid snapshot, otherwise from the
+     * parking table. Once {@link #startSnapshots()} is called, a loaded snapshot is reconciled with the parking table
+     * in the background, {@code reconcileChunkSize} spots per query, and the file kept up to date every
+     * {@code intervalMillis}.
+     */
+    public boolean enableSnapshots(Path file, long intervalMillis, int reconcileChunkSize) {
+        spotSnapshotter = new SpotSnapshotter(this, file, intervalMillis, reconcileChunkSize);
+        return spotSnapshotter.load();
+    }
+
+    /**
+     * Starts reconciling the loaded snapshot and keeping the file up to date. Called once the writes the parking table
+     * is still missing, e.g. the pending events of a gate journal, are replayed, so that the reconcile sees them.
+     */
+    public void startSnapshots() {
+        SpotSnapshotter snapshotter = spotSnapshotter;
+        if (snapshotter != null) {
+            snapshotter.start();
+        }
+    }
+
+    /**
+     * Writes a last snapshot and stops snapshotting.
+     */
+    public void closeSnapshots() {
+        SpotSnapshotter snapshotter = spotSnapshotter;
+        if (snapshotter != null) {
+            spotSnapshotter = null;
+            snapshotter.close();
+        }
+    }
+
+    /**
+     * Builds the free spot index and counters from a snapshot instead of the parking table.
+     */
+    public void loadSnapshot(SpotSnapshotFile.Snapshot snapshot) {
+        FreeSpotIndex index = new FreeSpotIndex();
+        SpotOccupancy occupancy = new SpotOccupancy();
+        for (int i = 0; i < snapshot.size(); i++) {
+            index.addSpot(snapshot.getNumber(i), snapshot.getParkingType(i), snapshot.isAvailable(i));
+            occupancy.addSpot(snapshot.getNumber(i), snapshot.getParkingType(i), snapshot.isAvailable(i));
+        }
+        freeSpotIndex = index;
+        spotOccupancy = occupancy;
+    }
+
+    /**
+     * Brings the state loaded from {@code snapshot} in line with the parking table, reading it in chunks of
+     * {@code chunkSize} spots so that gates are never held up. Only spots that gates have not touched since the
+     * snapshot was loaded are corrected: the others were updated along with the table. If spots were added, removed
+     * or retyped since the snapshot, the state is reloaded from the table instead. Returns the number of spots
+     * corrected, or -1 on error.
+     * <p>
+     * Each correction is applied under the row lock of its spot, after reading it again, so that a gate freeing or
+     * taking the spot between the chunk read and the correction is not undone. A gate may still reserve a spot while
+     * it is being corrected; the reservation update checks the table, so a spot is never handed out twice.
+     */
+    public int reconcile(SpotSnapshotFile.Snapshot snapshot, int chunkSize) {
+        long start = Metrics.start();
+        int corrected = reconcileChunks(snapshot, chunkSize);
+        Metrics.record(Operation.SPOT_RECONCILE, start);
+        return corrected;
+    }
+
+    private int reconcileChunks(SpotSnapshotFile.Snapshot snapshot, int chunkSize) {
+        FreeSpotIndex index = freeSpotIndex;
+        SpotOccupancy occupancy = spotOccupancy;
+        int corrected = 0;
+        int nbSpots = 0;
+        boolean spotsChanged = false;
+        int lastNumber = 0;
+        boolean more = true;
+        TransactionManager transactionManager = new TransactionManager(dataBaseConfig);
+        while (more) {
+            List<Integer> mismatches = new ArrayList<>();
+            Connection con = null;
+            try {
+                con = dataBaseConfig.getConnection();
+                PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS_AFTER);
+                ps.setInt(1, lastNumber);
+                ps.setInt(2, chunkSize);
+                Metrics.recordDbCall(Operation.SPOT_RECONCILE);
+                ResultSet rs = ps.executeQuery();
+                int rows = 0;
+                while (rs.next()) {
+                    rows++;
+                    lastNumber = rs.getInt(1);
+                    boolean available = rs.getBoolean(2);
+                    int i = snapshot.indexOf(lastNumber);
+                    if (i < 0 || snapshot.getParkingType(i) != ParkingType.valueOf(rs.getString(3))) {
+                        spotsChanged = true;
+                    } else if (available != snapshot.isAvailable(i)
+                            && occupancy.isAvailable(lastNumber) == snapshot.isAvailable(i)) {
+                        mismatches.add(lastNumber);
+                    }
+                }
+                nbSpots += rows;
+                more = rows == chunkSize;
+                dataBaseConfig.closeResultSet(rs);
+                dataBaseConfig.closePreparedStatement(ps);
+            } catch (Exception ex) {
+                Metrics.recordError(Operation.SPOT_RECONCILE);
+                logger.error("Error reconciling spot snapshot", ex);
+                return -1;
+            } finally {
+                dataBaseConfig.closeConnection(con);
+            }
+            try {
+                for (int number : mismatches) {
+                    boolean snapshotAvailable = snapshot.isAvailable(snapshot.indexOf(number));
+                    if (transactionManager.inTransaction(
+                            () -> correctSpot(index, occupancy, number, snapshotAvailable))) {
+                        corrected++;
+                    }
+                }
+            } catch (Exception ex) {
+                Metrics.recordError(Operation.SPOT_RECONCILE);
+                logger.error("Error reconciling spot snapshot", ex);
+                return -1;
+            }
+        }
+        if (spotsChanged || nbSpots != snapshot.size()) {
+            logger.info("Parking spots changed since the snapshot, reloading them");
+            return loadFreeSpotIndex() && loadOccupancy() ? nbSpots : -1;
+        }
+        return corrected;
+    }
+
+    /**
+     * Corrects a spot that the chunk read found out of line with the table, and returns true if it still was. The
+     * row is read again under its lock and the correction applied before the lock is released: a gate that frees or
+     * takes the spot meanwhile updates the table first, so its change is either seen here or waits for the
+     * correction and is applied after it, never overwritten by it.
+     */
+    private boolean correctSpot(FreeSpotIndex index, SpotOccupancy occupancy, int number, boolean snapshotAvailable)
+            throws SQLException, ClassNotFoundException {
+        Connection con = dataBaseConfig.getConnection();
+        PreparedStatement ps = con.prepareStatement(DBConstants.LOCK_PARKING_SPOT);
+        ps.setInt(1, number);
+        Metrics.recordDbCall(Operation.SPOT_RECONCILE);
+        ResultSet rs = ps.executeQuery();
+        boolean corrected = false;
+        if (rs.next()) {
+            boolean available = rs.getBoolean(1);
+            // compare-and-set on the state the chunk read saw: gates have not touched the spot since the snapshot
+            if (available != snapshotAvailable && occupancy.isAvailable(number) == snapshotAvailable) {
+                if (available) {
+                    index.markAvailable(number);
+                    occupancy.markAvailable(number);
+                } else {
+                    index.markUnavailable(number);
+                    occupancy.markUnavailable(number);
+                }
+                corrected = true;
+            }
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return corrected;
+    }
+
+    /**
+     * Returns the ID of the last ticket, 0 if there is none, or -1 if it could not be read.
+     */
+    public int getLastTicketId() {
+        long start = Metrics.start();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_LAST_TICKET_ID);
+            Metrics.recordDbCall(Operation.SPOT_LAST_TICKET_ID);
+            ResultSet rs = ps.executeQuery();
+            int lastTicketId = rs.next() ? rs.getInt(1) : 0;
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            return lastTicketId;
+        } catch (Exception ex) {
+            Metrics.recordError(Operation.SPOT_LAST_TICKET_ID);
+            logger.error("Error reading last ticket ID", ex);
+            return -1;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            Metrics.record(Operation.SPOT_LAST_TICKET_ID, start);
+        }
+    }
+
+    /**
+     * Builds the in-memory index of free spots from the parking table. From then on this DAO must be the only writer
+     * of spot availability, as the index is kept in sync through its own updates.
+     */
+    public boolean loadFreeSpotIndex() {
+        long start = Metrics.start();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+            Metrics.recordDbCall(Operation.SPOT_LOAD_INDEX);
+            ResultSet rs = ps.executeQuery();
+            FreeSpotIndex index = new FreeSpotIndex();
+            while (rs.next()) {
+                index.addSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(3)), rs.getBoolean(2));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            freeSpotIndex = index;
+            return true;
+        } catch (Exception ex) {
+            Metrics.recordError(Operation.SPOT_LOAD_INDEX);
+            logger.error("Error loading free parking slots", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            Metrics.record(Operation.SPOT_LOAD_INDEX, start);
+        }
+    }
+
+    /**
+     * Seeds the free spot counters from the parking table. Like the free spot index, they are kept in sync through
+     * this DAO's own updates.
+     */
+    public boolean loadOccupancy() {
+        long start = Metrics.start();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+            Metrics.recordDbCall(Operation.SPOT_LOAD_OCCUPANCY);
+            ResultSet rs = ps.executeQuery();
+            SpotOccupancy occupancy = new SpotOccupancy();
+            while (rs.next()) {
+                occupancy.addSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(3)), rs.getBoolean(2));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            spotOccupancy = occupancy;
+            return true;
+        } catch (Exception ex) {
+            Metrics.recordError(Operation.SPOT_LOAD_OCCUPANCY);
+            logger.error("Error loading parking occupancy", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            Metrics.record(Operation.SPOT_LOAD_OCCUPANCY, start);
+        }
+    }
+
+    /**
+     * Returns the number of free spots of the given type, or -1 if it could not be counted.
+     */
+    public long getFreeSpots(ParkingType parkingType) {
+        long start = Metrics.start();
+        SpotOccupancy occupancy = spotOccupancy;
+        if (occupancy != null) {
+            long freeSpots = occupancy.getFreeSpots(parkingType);
+            Metrics.record(Operation.SPOT_COUNT_FREE, start);
+            return freeSpots;
+        }
+        Connection con = null;
+        long result = -1;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_FREE_PARKING_SPOTS);
+            ps.setString(1, parkingType.toString());
+            Metrics.recordDbCall(Operation.SPOT_COUNT_FREE);
+            ResultSet rs = ps.executeQuery();
+            if (rs.next()) {
+                result = rs.getLong(1);
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        } catch (Exception ex) {
+            Metrics.recordError(Operation.SPOT_COUNT_FREE);
+            logger.error("Error counting free parking slots", ex);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            Metrics.record(Operation.SPOT_COUNT_FREE, start);
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if the occupancy counters are loaded and show no free spot of the given type. Answered from
+     * memory, so it can turn vehicles away before any query; false means a spot may be free.
+     */
+    public boolean isFull(ParkingType parkingType) {
+        SpotOccupancy occupancy = spotOccupancy;
+        return occupancy != null && occupancy.isFull(parkingType);
+    }
+
     public int getNextAvailableSlot(ParkingType parkingType) {
+        long start = Metrics.start();
+        FreeSpotIndex index = freeSpotIndex;
+        if (index != null) {
+            int number = index.peek(parkingType);
+            Metrics.record(Operation.SPOT_GET_NEXT, start);
+            return number;
+        }
         Connection con = null;
         int result = -1;
         try {
             con = dataBaseConfig.getConnection();
             PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
             ps.setString(1, parkingType.toString());
+            Metrics.recordDbCall(Operation.SPOT_GET_NEXT);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
                 result = rs.getInt(1);
@@ -30,14 +344,18 @@ public class ParkingSpotDAO {
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
         } catch (Exception ex) {
+            Metrics.recordError(Operation.SPOT_GET_NEXT);
             logger.error("Error fetching next available slot", ex);
+            TransactionManager.setRollbackOnly();
         } finally {
             dataBaseConfig.closeConnection(con);
+            Metrics.record(Operation.SPOT_GET_NEXT, start);
         }
         return result;
     }
 
     public boolean updateParking(ParkingSpot parkingSpot) {
+        long start = Metrics.start();
         // update the availability fo that parking slot
         Connection con = null;
         try {
@@ -45,15 +363,216 @@ public class ParkingSpotDAO {
             PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
             ps.setBoolean(1, parkingSpot.isAvailable());
             ps.setInt(2, parkingSpot.getId());
+            Metrics.recordDbCall(Operation.SPOT_UPDATE);
             int updateRowCount = ps.executeUpdate();
             dataBaseConfig.closePreparedStatement(ps);
+            if (updateRowCount == 1) {
+                updateFreeSpotIndex(parkingSpot.getId(), parkingSpot.isAvailable());
+                updateOccupancy(parkingSpot.getId(), parkingSpot.isAvailable());
+            }
             return (updateRowCount == 1);
         } catch (Exception ex) {
+            Metrics.recordError(Operation.SPOT_UPDATE);
             logger.error("Error updating parking info", ex);
+            TransactionManager.setRollbackOnly();
             return false;
         } finally {
             dataBaseConfig.closeConnection(con);
+            Metrics.record(Operation.SPOT_UPDATE, start);
+        }
+    }
+
+    /**
+     * Atomically claims the lowest free spot of the given type and returns its number, or -1 if none is left.
+     * <p>
+     * Candidates are locked with {@code skip locked}, so concurrent gates step over a spot another gate is claiming
+     * instead of queuing behind its row lock. The conditional update is what guarantees a spot is never handed out
+     * twice, including in auto-commit mode where the candidate lock ends with the select: a gate that loses the
+     * race for a candidate moves on to the next one.
+     * <p>
+     * When the free spot index is loaded, candidates are claimed from it instead of being selected, which already
+     * makes them exclusive within this process; the conditional update still guards against other writers.
+     */
+    public int reserveNextAvailableSlot(ParkingType parkingType) {
+        long start = Metrics.start();
+        FreeSpotIndex index = freeSpotIndex;
+        if (index != null) {
+            int reserved = reserveNextIndexedSlot(index, parkingType);
+            Metrics.record(Operation.SPOT_RESERVE, start);
+            return reserved;
+        }
+        Connection con = null;
+        PreparedStatement lockPs = null;
+        PreparedStatement reservePs = null;
+        int result = -1;
+        try {
+            con = dataBaseConfig.getConnection();
+            lockPs = con.prepareStatement(DBConstants.LOCK_NEXT_PARKING_SPOT);
+            reservePs = con.prepareStatement(DBConstants.RESERVE_PARKING_SPOT);
+            lockPs.setString(1, parkingType.toString());
+            int candidate = 0;
+            while (result < 0) {
+                lockPs.setInt(2, candidate);
+                Metrics.recordDbCall(Operation.SPOT_RESERVE);
+                ResultSet rs = lockPs.executeQuery();
+                candidate = rs.next() ? rs.getInt(1) : -1;
+                dataBaseConfig.closeResultSet(rs);
+                if (candidate <= 0) {
+                    break;
+                }
+                reservePs.setInt(1, candidate);
+                Metrics.recordDbCall(Operation.SPOT_RESERVE);
+                if (reservePs.executeUpdate() == 1) {
+                    result = candidate;
+                    updateOccupancy(candidate, false);
+                } else {
+                    markTakenElsewhere(candidate);
+                }
+            }
+        } catch (Exception ex) {
+            Metrics.recordError(Operation.SPOT_RESERVE);
+            logger.error("Error reserving next available slot", ex);
+            TransactionManager.setRollbackOnly();
+        } finally {
+            dataBaseConfig.closePreparedStatement(lockPs);
+            dataBaseConfig.closePreparedStatement(reservePs);
+            dataBaseConfig.closeConnection(con);
+            Metrics.record(Operation.SPOT_RESERVE, start);
         }
+        return result;
     }
 
+    /**
+     * Reserves the given spot if the parking table has it free, and returns false if it is taken or could not be
+     * reserved. Used to write a spot handed out while the database was down, which another writer may have taken
+     * since.
+     */
+    public boolean reserveSlot(int number) {
+        long start = Metrics.start();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.RESERVE_PARKING_SPOT);
+            ps.setInt(1, number);
+            Metrics.recordDbCall(Operation.SPOT_RESERVE);
+            int updateRowCount = ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            if (updateRowCount == 1) {
+                updateFreeSpotIndex(number, false);
+                updateOccupancy(number, false);
+                return true;
+            }
+            markTakenElsewhere(number);
+            return false;
+        } catch (Exception ex) {
+            Metrics.recordError(Operation.SPOT_RESERVE);
+            logger.error("Error reserving parking spot " + number, ex);
+            TransactionManager.setRollbackOnly();
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            Metrics.record(Operation.SPOT_RESERVE, start);
+        }
+    }
+
+    /**
+     * Takes the lowest free spot of the given type in memory only, for a vehicle let in while the database is down,
+     * and returns its number, or -1 if none is free or the free spot index is not loaded. The spot is written to the
+     * parking table when the vehicle's entry is replayed.
+     */
+    public int claimOfflineSlot(ParkingType parkingType) {
+        FreeSpotIndex index = freeSpotIndex;
+        if (index == null) {
+            return -1;
+        }
+        int number = index.claimNext(parkingType);
+        SpotOccupancy occupancy = spotOccupancy;
+        if (number > 0 && occupancy != null) {
+            occupancy.markUnavailable(number);
+        }
+        return number;
+    }
+
+    /**
+     * Gives back a spot taken by {@link #claimOfflineSlot(ParkingType)} for a vehicle that was not let in after all.
+     */
+    public void releaseOfflineSlot(int number) {
+        FreeSpotIndex index = freeSpotIndex;
+        if (index != null) {
+            index.markAvailable(number);
+        }
+        SpotOccupancy occupancy = spotOccupancy;
+        if (occupancy != null) {
+            occupancy.markAvailable(number);
+        }
+    }
+
+    private int reserveNextIndexedSlot(FreeSpotIndex index, ParkingType parkingType) {
+        Connection con = null;
+        PreparedStatement reservePs = null;
+        int candidate = -1;
+        try {
+            con = dataBaseConfig.getConnection();
+            reservePs = con.prepareStatement(DBConstants.RESERVE_PARKING_SPOT);
+            // a candidate the database reports as taken stays out of the index
+            while ((candidate = index.claimNext(parkingType)) > 0) {
+                reservePs.setInt(1, candidate);
+                Metrics.recordDbCall(Operation.SPOT_RESERVE);
+                if (reservePs.executeUpdate() == 1) {
+                    int reserved = candidate;
+                    TransactionManager.runAfterRollback(() -> index.markAvailable(reserved));
+                    updateOccupancy(reserved, false);
+                    break;
+                }
+                markTakenElsewhere(candidate);
+            }
+        } catch (Exception ex) {
+            Metrics.recordError(Operation.SPOT_RESERVE);
+            logger.error("Error reserving next available slot", ex);
+            TransactionManager.setRollbackOnly();
+            if (candidate > 0) {
+                index.markAvailable(candidate);
+            }
+            candidate = -1;
+        } finally {
+            dataBaseConfig.closePreparedStatement(reservePs);
+            dataBaseConfig.closeConnection(con);
+        }
+        return candidate;
+    }
+
+    private void updateFreeSpotIndex(int number, boolean available) {
+        FreeSpotIndex index = freeSpotIndex;
+        if (index == null) {
+            return;
+        }
+        if (available) {
+            // only offer the spot to other gates once its release is committed
+            TransactionManager.runAfterCommit(() -> index.markAvailable(number));
+        } else if (index.markUnavailable(number)) {
+            TransactionManager.runAfterRollback(() -> index.markAvailable(number));
+        }
+    }
+
+    private void markTakenElsewhere(int number) {
+        // the table says another writer holds the spot, whatever this transaction does: no rollback restores it,
+        // and counting it as taken lets isFull() turn vehicles away instead of failing reservations
+        SpotOccupancy occupancy = spotOccupancy;
+        if (occupancy != null) {
+            occupancy.markUnavailable(number);
+        }
+    }
+
+    private void updateOccupancy(int number, boolean available) {
+        SpotOccupancy occupancy = spotOccupancy;
+        if (occupancy == null) {
+            return;
+        }
+        if (available) {
+            TransactionManager.runAfterCommit(() -> occupancy.markAvailable(number));
+        } else if (occupancy.markUnavailable(number)) {
+            // counted as taken right away, so that no gate is told a spot is free while it is being reserved
+            TransactionManager.runAfterRollback(() -> occupancy.markAvailable(number));
+        }
+    }
 }
@@ -0,0 +1,72 @@
+package com.parkit.parkingsystem.dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of the number of tickets per vehicle registration number.
+ * <p>
+ * Holds at most {@code maxSize} vehicles, evicting the least recently used one, and forgets an entry
+ * {@code ttlMillis} after it was loaded from the database. Vehicles without any ticket are cached too, as they are
+ * the most common lookup.
+ */
+public class RecurringUserCache {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+
+    public RecurringUserCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > RecurringUserCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached number of tickets of the vehicle, or null if it is not cached.
+     */
+    public synchronized Integer get(String vehicleRegNumber) {
+        Entry entry = entries.get(vehicleRegNumber);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() > entry.expiresAt) {
+            entries.remove(vehicleRegNumber);
+            return null;
+        }
+        return entry.nbTicket;
+    }
+
+    public synchronized void put(String vehicleRegNumber, int nbTicket) {
+        entries.put(vehicleRegNumber, new Entry(nbTicket, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * Counts a new ticket for the vehicle if it is cached; otherwise the next lookup loads it from the database.
+     */
+    public synchronized void increment(String vehicleRegNumber) {
+        Entry entry = entries.get(vehicleRegNumber);
+        if (entry != null) {
+            entry.nbTicket++;
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        private int nbTicket;
+        private final long expiresAt;
+
+        private Entry(int nbTicket, long expiresAt) {
+            this.nbTicket = nbTicket;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live count of the free and total spots of each {@link ParkingType}, so that availability is known without a query.
+ * <p>
+ * Counters are {@link LongAdder}s, which gates update without contending with each other. Each spot also keeps its
+ * own state, switched with a compare-and-set, so that a spot marked free or taken twice is counted once.
+ */
+public class SpotOccupancy {
+
+    private final LongAdder[] freeSpots = new LongAdder[ParkingType.values().length];
+    private final int[] totalSpots = new int[ParkingType.values().length];
+    private final Map<Integer, Spot> spots = new HashMap<>();
+
+    private static final class Spot {
+        private final ParkingType parkingType;
+        private final AtomicBoolean available;
+
+        private Spot(ParkingType parkingType, boolean available) {
+            this.parkingType = parkingType;
+            this.available = new AtomicBoolean(available);
+        }
+    }
+
+    public SpotOccupancy() {
+        for (int type = 0; type < freeSpots.length; type++) {
+            freeSpots[type] = new LongAdder();
+        }
+    }
+
+    /**
+     * Registers a spot while the counters are being seeded; not to be called once they are shared.
+     */
+    public void addSpot(int number, ParkingType parkingType, boolean available) {
+        spots.put(number, new Spot(parkingType, available));
+        totalSpots[parkingType.ordinal()]++;
+        if (available) {
+            freeSpots[parkingType.ordinal()].increment();
+        }
+    }
+
+    public void markAvailable(int number) {
+        Spot spot = spots.get(number);
+        if (spot != null && spot.available.compareAndSet(false, true)) {
+            freeSpots[spot.parkingType.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Returns true if the spot was counted as free until this call.
+     */
+    public boolean markUnavailable(int number) {
+        Spot spot = spots.get(number);
+        if (spot != null && spot.available.compareAndSet(true, false)) {
+            freeSpots[spot.parkingType.ordinal()].decrement();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the registered spot numbers, in ascending order.
+     */
+    public int[] getSpotNumbers() {
+        int[] numbers = spots.keySet().stream().mapToInt(Integer::intValue).toArray();
+        Arrays.sort(numbers);
+        return numbers;
+    }
+
+    /**
+     * Returns the type of the spot, or null if it is not registered.
+     */
+    public ParkingType getParkingType(int number) {
+        Spot spot = spots.get(number);
+        return spot == null ? null : spot.parkingType;
+    }
+
+    public boolean isAvailable(int number) {
+        Spot spot = spots.get(number);
+        return spot != null && spot.available.get();
+    }
+
+    public long getFreeSpots(ParkingType parkingType) {
+        return freeSpots[parkingType.ordinal()].sum();
+    }
+
+    public int getTotalSpots(ParkingType parkingType) {
+        return totalSpots[parkingType.ordinal()];
+    }
+
+    public boolean isFull(ParkingType parkingType) {
+        return getFreeSpots(parkingType) <= 0;
+    }
+}
@@ -0,0 +1,174 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of the state of every spot, so that a restart can serve gates before the parking table is read.
+ * <p>
+ * The file holds a 32-byte header (magic, version, ID of the last ticket when the snapshot was taken, time it was
+ * taken, number of spots, CRC32 of the spot records), then a 6-byte record per spot in number order: number, type
+ * ordinal and availability. It is rewritten in place through a memory mapping kept open between snapshots; a
+ * snapshot torn by a crash fails its checksum and is ignored.
+ */
+public class SpotSnapshotFile implements Closeable {
+
+    private static final int MAGIC = 0x504b5353;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 6;
+
+    private final Path file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    public SpotSnapshotFile(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Spot state read back from a snapshot, by ascending spot number.
+     */
+    public static final class Snapshot {
+        private final int lastTicketId;
+        private final long takenMillis;
+        private final int[] numbers;
+        private final ParkingType[] types;
+        private final boolean[] available;
+
+        private Snapshot(int lastTicketId, long takenMillis, int[] numbers, ParkingType[] types, boolean[] available) {
+            this.lastTicketId = lastTicketId;
+            this.takenMillis = takenMillis;
+            this.numbers = numbers;
+            this.types = types;
+            this.available = available;
+        }
+
+        public int getLastTicketId() {
+            return lastTicketId;
+        }
+
+        public long getTakenMillis() {
+            return takenMillis;
+        }
+
+        public int size() {
+            return numbers.length;
+        }
+
+        public int getNumber(int index) {
+            return numbers[index];
+        }
+
+        public ParkingType getParkingType(int index) {
+            return types[index];
+        }
+
+        public boolean isAvailable(int index) {
+            return available[index];
+        }
+
+        /**
+         * Returns the index of the given spot, or a negative value if the snapshot does not have it.
+         */
+        public int indexOf(int number) {
+            return Arrays.binarySearch(numbers, number);
+        }
+    }
+
+    /**
+     * Overwrites the snapshot with the current state of the counters.
+     */
+    public synchronized void write(int lastTicketId, SpotOccupancy occupancy) throws IOException {
+        int[] numbers = occupancy.getSpotNumbers();
+        int size = HEADER_SIZE + numbers.length * RECORD_SIZE;
+        if (buffer == null || buffer.capacity() != size) {
+            if (channel == null) {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+            }
+            channel.truncate(size);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        CRC32 crc = new CRC32();
+        byte[] record = new byte[RECORD_SIZE];
+        ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+        for (int i = 0; i < numbers.length; i++) {
+            recordBuffer.putInt(0, numbers[i]);
+            record[4] = (byte) occupancy.getParkingType(numbers[i]).ordinal();
+            record[5] = (byte) (occupancy.isAvailable(numbers[i]) ? 1 : 0);
+            crc.update(record);
+            int offset = HEADER_SIZE + i * RECORD_SIZE;
+            for (int b = 0; b < RECORD_SIZE; b++) {
+                buffer.put(offset + b, record[b]);
+            }
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, lastTicketId);
+        buffer.putLong(12, System.currentTimeMillis());
+        buffer.putInt(20, numbers.length);
+        buffer.putLong(24, crc.getValue());
+        buffer.force();
+    }
+
+    /**
+     * Reads a snapshot, failing if the file is not a complete snapshot.
+     */
+    public static Snapshot read(Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = in.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Truncated spot snapshot " + file);
+            }
+            MappedByteBuffer snapshot = in.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            int nbSpots = snapshot.getInt(20);
+            if (snapshot.getInt(0) != MAGIC || snapshot.getInt(4) != VERSION || nbSpots < 0
+                    || fileSize != HEADER_SIZE + (long) nbSpots * RECORD_SIZE) {
+                throw new IOException("Invalid spot snapshot " + file);
+            }
+            ParkingType[] parkingTypes = ParkingType.values();
+            int[] numbers = new int[nbSpots];
+            ParkingType[] types = new ParkingType[nbSpots];
+            boolean[] available = new boolean[nbSpots];
+            CRC32 crc = new CRC32();
+            byte[] record = new byte[RECORD_SIZE];
+            for (int i = 0; i < nbSpots; i++) {
+                int offset = HEADER_SIZE + i * RECORD_SIZE;
+                for (int b = 0; b < RECORD_SIZE; b++) {
+                    record[b] = snapshot.get(offset + b);
+                }
+                crc.update(record);
+                numbers[i] = snapshot.getInt(offset);
+                int type = record[4];
+                if (type < 0 || type >= parkingTypes.length || (i > 0 && numbers[i] <= numbers[i - 1])) {
+                    throw new IOException("Invalid spot snapshot " + file);
+                }
+                types[i] = parkingTypes[type];
+                available[i] = record[5] != 0;
+            }
+            if (crc.getValue() != snapshot.getLong(24)) {
+                throw new IOException("Corrupted spot snapshot " + file);
+            }
+            return new Snapshot(snapshot.getInt(8), snapshot.getLong(12), numbers, types, available);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
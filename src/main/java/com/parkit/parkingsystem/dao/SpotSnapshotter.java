@@ -0,0 +1,140 @@
+package com.parkit.parkingsystem.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Loads the spot state of a {@link ParkingSpotDAO} from a {@link SpotSnapshotFile} at startup and keeps the file up
+ * to date.
+ * <p>
+ * A snapshot is only used if it was taken on the same database, which is checked against the last ticket ID: a
+ * snapshot ahead of the ticket table belongs to another database or predates a restore, and the state is then read
+ * from the parking table as usual. A snapshot that is used is reconciled with the parking table by a background
+ * thread, which then writes a new snapshot every {@code intervalMillis}, and a last one on close.
+ */
+public class SpotSnapshotter {
+
+    private static final Logger logger = LogManager.getLogger("SpotSnapshotter");
+
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final Path file;
+    private final long intervalMillis;
+    private final int reconcileChunkSize;
+    private final SpotSnapshotFile snapshotFile;
+    private final Thread snapshotThread;
+    private volatile boolean running = true;
+    private SpotSnapshotFile.Snapshot loadedSnapshot;
+
+    public SpotSnapshotter(ParkingSpotDAO parkingSpotDAO, Path file, long intervalMillis, int reconcileChunkSize) {
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.file = file;
+        this.intervalMillis = intervalMillis;
+        this.reconcileChunkSize = reconcileChunkSize;
+        this.snapshotFile = new SpotSnapshotFile(file);
+        this.snapshotThread = new Thread(this::snapshotLoop, "spot-snapshotter");
+        snapshotThread.setDaemon(true);
+    }
+
+    /**
+     * Loads the spot state, from the snapshot if it is valid, and returns true if the snapshot was used. The snapshot
+     * is only reconciled with the parking table once {@link #start()} is called.
+     */
+    public boolean load() {
+        SpotSnapshotFile.Snapshot snapshot = readSnapshot();
+        if (snapshot != null) {
+            parkingSpotDAO.loadSnapshot(snapshot);
+            loadedSnapshot = snapshot;
+            logger.info("Loaded " + snapshot.size() + " spots from snapshot " + file + " of ticket "
+                    + snapshot.getLastTicketId());
+        } else {
+            parkingSpotDAO.loadFreeSpotIndex();
+            parkingSpotDAO.loadOccupancy();
+        }
+        return snapshot != null;
+    }
+
+    /**
+     * Starts the background thread, which reconciles the loaded snapshot, if any, then keeps the file up to date.
+     */
+    public void start() {
+        snapshotThread.start();
+    }
+
+    private SpotSnapshotFile.Snapshot readSnapshot() {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            SpotSnapshotFile.Snapshot snapshot = SpotSnapshotFile.read(file);
+            int lastTicketId = parkingSpotDAO.getLastTicketId();
+            if (lastTicketId < 0 || snapshot.getLastTicketId() > lastTicketId) {
+                logger.info("Ignoring spot snapshot of ticket " + snapshot.getLastTicketId() + ", the last ticket is "
+                        + lastTicketId);
+                return null;
+            }
+            return snapshot;
+        } catch (IOException e) {
+            logger.error("Ignoring unreadable spot snapshot " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the current spot state to the snapshot file, and returns false if it could not.
+     */
+    public boolean writeSnapshot() {
+        SpotOccupancy occupancy = parkingSpotDAO.spotOccupancy;
+        // read before the state, so that the snapshot never claims tickets it may not reflect
+        int lastTicketId = parkingSpotDAO.getLastTicketId();
+        if (occupancy == null || lastTicketId < 0) {
+            return false;
+        }
+        try {
+            snapshotFile.write(lastTicketId, occupancy);
+            return true;
+        } catch (IOException e) {
+            logger.error("Error writing spot snapshot " + file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Stops the background thread and writes a last snapshot.
+     */
+    public void close() {
+        running = false;
+        snapshotThread.interrupt();
+        try {
+            snapshotThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeSnapshot();
+        try {
+            snapshotFile.close();
+        } catch (IOException e) {
+            logger.error("Error closing spot snapshot " + file, e);
+        }
+    }
+
+    private void snapshotLoop() {
+        SpotSnapshotFile.Snapshot snapshot = loadedSnapshot;
+        if (snapshot != null) {
+            int corrected = parkingSpotDAO.reconcile(snapshot, reconcileChunkSize);
+            logger.info("Reconciled spot snapshot with the parking table, " + corrected + " spots corrected");
+            loadedSnapshot = null;
+        }
+        while (running) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            writeSnapshot();
+        }
+    }
+}
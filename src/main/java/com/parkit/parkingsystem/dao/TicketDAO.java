@@ -1,51 +1,307 @@
 package com.parkit.parkingsystem.dao;
 
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.TransactionManager;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.Metrics;
+import com.parkit.parkingsystem.util.Metrics.Operation;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.concurrent.CompletableFuture;
 
 public class TicketDAO {
 
     private static final Logger logger = LogManager.getLogger("TicketDAO");
 
+    private static final int KNOWN_VEHICLES_FETCH_SIZE = 1000;
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    // Queue for ticket writes when write-behind is enabled; null means writes are synchronous
+    public TicketWriteBehind ticketWriteBehind;
+
+    // Ticket counts per vehicle; null means getNbTicket always counts in the DB
+    public RecurringUserCache recurringUserCache;
+
+    // Registration numbers that have a ticket; null means getNbTicket always asks the DB
+    public KnownVehicleFilter knownVehicleFilter;
+
+    private Path knownVehicleFilterFile;
+
+    /**
+     * Switches ticket inserts and updates to write-behind: they are queued and written in batches by a background
+     * thread, and saveTicket/updateTicket return as soon as the write is queued.
+     */
+    public void enableWriteBehind(int batchSize, long maxDelayMillis) {
+        ticketWriteBehind = new TicketWriteBehind(dataBaseConfig, batchSize, maxDelayMillis);
+    }
+
+    /**
+     * Writes every queued ticket and goes back to synchronous writes.
+     */
+    public void closeWriteBehind() {
+        TicketWriteBehind writeBehind = ticketWriteBehind;
+        if (writeBehind != null) {
+            ticketWriteBehind = null;
+            writeBehind.close();
+        }
+    }
+
+    /**
+     * Caches ticket counts per vehicle, so recurring-user lookups are answered without counting the ticket table.
+     */
+    public void enableRecurringUserCache(int maxSize, long ttlMillis) {
+        recurringUserCache = new RecurringUserCache(maxSize, ttlMillis);
+    }
+
+    /**
+     * Loads the ticket counts of the most recently seen vehicles into the recurring user cache.
+     */
+    public boolean warmRecurringUserCache(int nbVehicles) {
+        RecurringUserCache cache = recurringUserCache;
+        if (cache == null) {
+            return false;
+        }
+        long start = Metrics.start();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_RECENT_TICKET_COUNTS);
+            ps.setInt(1, nbVehicles);
+            Metrics.recordDbCall(Operation.TICKET_WARM_CACHE);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                cache.put(rs.getString(1), rs.getInt(2));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            return true;
+        } catch (Exception ex) {
+            Metrics.recordError(Operation.TICKET_WARM_CACHE);
+            logger.error("Error warming recurring user cache", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            Metrics.record(Operation.TICKET_WARM_CACHE, start);
+        }
+    }
+
+    /**
+     * Keeps a Bloom filter of the vehicles that have a ticket, so that counting the tickets of a vehicle never seen
+     * before does not query the DB. The filter is read from {@code file} when it was saved with the same size and
+     * then caught up with the tickets saved since; otherwise, or if {@code file} is null, it is built from the vehicle
+     * summary. Returns false, leaving the filter off, if it could not be loaded nor built.
+     * <p>
+     * Only safe when this process is the only one saving tickets: a vehicle whose first ticket is saved by another
+     * instance stays unknown to the filter, which then answers 0 tickets for it until the next restart.
+     */
+    public boolean enableKnownVehicleFilter(long expectedVehicles, double falsePositiveRate, Path file) {
+        long start = Metrics.start();
+        KnownVehicleFilter filter = new KnownVehicleFilter(expectedVehicles, falsePositiveRate);
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            int lastTicketId = getLastTicketId(con);
+            KnownVehicleFilter.Saved saved = readKnownVehicleFilter(file);
+            if (saved != null && saved.getFilter().hasSameShape(filter) && saved.getLastTicketId() <= lastTicketId) {
+                filter = saved.getFilter();
+                addVehicles(con, DBConstants.GET_VEHICLES_SINCE_TICKET, saved.getLastTicketId(), filter);
+                logger.info("Loaded known vehicle filter from " + file + ", caught up from ticket "
+                        + saved.getLastTicketId() + " to " + lastTicketId);
+            } else {
+                addVehicles(con, DBConstants.GET_KNOWN_VEHICLES, -1, filter);
+                logger.info("Built known vehicle filter of " + filter.getNbBits() + " bits and "
+                        + filter.getNbHashes() + " hashes");
+            }
+        } catch (Exception ex) {
+            Metrics.recordError(Operation.TICKET_LOAD_KNOWN_VEHICLES);
+            logger.error("Error loading known vehicle filter", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            Metrics.record(Operation.TICKET_LOAD_KNOWN_VEHICLES, start);
+        }
+        knownVehicleFilter = filter;
+        knownVehicleFilterFile = file;
+        return true;
+    }
+
+    /**
+     * Saves the known vehicle filter to the file it was enabled with, along with the last ticket ID, so that the next
+     * start only reads the tickets saved after it.
+     */
+    public boolean saveKnownVehicleFilter() {
+        KnownVehicleFilter filter = knownVehicleFilter;
+        Path file = knownVehicleFilterFile;
+        if (filter == null || file == null) {
+            return false;
+        }
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            // read before writing the filter: every ticket up to this ID was added to the filter when it was saved
+            int lastTicketId = getLastTicketId(con);
+            filter.write(file, lastTicketId);
+            logger.info("Saved known vehicle filter to " + file + " up to ticket " + lastTicketId);
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error saving known vehicle filter to " + file, ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private KnownVehicleFilter.Saved readKnownVehicleFilter(Path file) {
+        if (file == null || !Files.exists(file)) {
+            return null;
+        }
+        try {
+            return KnownVehicleFilter.read(file);
+        } catch (IOException e) {
+            logger.error("Ignoring unreadable known vehicle filter " + file, e);
+            return null;
+        }
+    }
+
+    private int getLastTicketId(Connection con) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(DBConstants.GET_LAST_TICKET_ID);
+        Metrics.recordDbCall(Operation.TICKET_LOAD_KNOWN_VEHICLES);
+        ResultSet rs = ps.executeQuery();
+        int lastTicketId = rs.next() ? rs.getInt(1) : 0;
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return lastTicketId;
+    }
+
+    private void addVehicles(Connection con, String sql, int afterTicketId, KnownVehicleFilter filter)
+            throws SQLException {
+        PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if (afterTicketId >= 0) {
+            ps.setInt(1, afterTicketId);
+        }
+        ps.setFetchSize(KNOWN_VEHICLES_FETCH_SIZE);
+        Metrics.recordDbCall(Operation.TICKET_LOAD_KNOWN_VEHICLES);
+        ResultSet rs = ps.executeQuery();
+        while (rs.next()) {
+            filter.add(rs.getString(1));
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+    }
+
+    public CompletableFuture<Boolean> saveTicketAsync(Ticket ticket) {
+        TicketWriteBehind writeBehind = ticketWriteBehind;
+        if (writeBehind == null) {
+            return CompletableFuture.completedFuture(saveTicket(ticket));
+        }
+        return submitSave(writeBehind, ticket);
+    }
+
+    public CompletableFuture<Boolean> updateTicketAsync(Ticket ticket) {
+        TicketWriteBehind writeBehind = ticketWriteBehind;
+        if (writeBehind == null) {
+            return CompletableFuture.completedFuture(updateTicket(ticket));
+        }
+        return writeBehind.submitUpdate(ticket);
+    }
+
     public boolean saveTicket(Ticket ticket) {
+        long start = Metrics.start();
+        TicketWriteBehind writeBehind = ticketWriteBehind;
+        if (writeBehind != null) {
+            boolean queued = isQueued(submitSave(writeBehind, ticket), Operation.TICKET_SAVE, ticket);
+            Metrics.record(Operation.TICKET_SAVE, start);
+            return queued;
+        }
+        rememberVehicle(ticket.getVehicleRegNumber());
         Connection con = null;
+        PreparedStatement ps = null;
+        PreparedStatement visitPs = null;
+        boolean localTransaction = false;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET);
+            // outside a gate transaction, the ticket and its visit are still committed together
+            localTransaction = con.getAutoCommit();
+            if (localTransaction) {
+                con.setAutoCommit(false);
+            }
+            ps = con.prepareStatement(DBConstants.SAVE_TICKET);
             ps.setInt(1, ticket.getParkingSpot().getId());
             ps.setString(2, ticket.getVehicleRegNumber());
             ps.setDouble(3, ticket.getPrice());
             ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
             ps.setTimestamp(5, (ticket.getOutTime() == null) ? null : (new Timestamp(ticket.getOutTime().getTime())));
-            return ps.execute();
+            Metrics.recordDbCall(Operation.TICKET_SAVE);
+            boolean result = ps.execute();
+            visitPs = con.prepareStatement(DBConstants.SAVE_VEHICLE_VISIT);
+            visitPs.setString(1, ticket.getVehicleRegNumber());
+            visitPs.setTimestamp(2, new Timestamp(ticket.getInTime().getTime()));
+            visitPs.setTimestamp(3, new Timestamp(ticket.getInTime().getTime()));
+            Metrics.recordDbCall(Operation.TICKET_SAVE);
+            visitPs.executeUpdate();
+            if (localTransaction) {
+                con.commit();
+            }
+            countNewTicket(ticket.getVehicleRegNumber());
+            return result;
         } catch (Exception ex) {
+            Metrics.recordError(Operation.TICKET_SAVE);
             logger.error("Error fetching next available slot", ex);
+            TransactionManager.setRollbackOnly();
+            if (localTransaction) {
+                rollback(con);
+            }
         } finally {
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closePreparedStatement(visitPs);
+            if (localTransaction) {
+                restoreAutoCommit(con);
+            }
             dataBaseConfig.closeConnection(con);
+            Metrics.record(Operation.TICKET_SAVE, start);
         }
         return false;
     }
 
+    /**
+     * Returns the most recent ticket of the vehicle, open or not.
+     */
     public Ticket getTicket(String vehicleRegNumber) {
+        return findTicket(DBConstants.GET_TICKET, vehicleRegNumber, Operation.TICKET_GET);
+    }
+
+    /**
+     * Returns the ticket of the vehicle currently parked, or null if it is not parked. The lookup seeks the open
+     * tickets of the vehicle through the (VEHICLE_REG_NUMBER, OUT_TIME, IN_TIME) index, so it does not depend on how
+     * many past tickets the vehicle has.
+     */
+    public Ticket getOpenTicket(String vehicleRegNumber) {
+        return findTicket(DBConstants.GET_OPEN_TICKET, vehicleRegNumber, Operation.TICKET_GET_OPEN);
+    }
+
+    private Ticket findTicket(String sql, String vehicleRegNumber, Operation operation) {
+        long start = Metrics.start();
+        flushPendingWrites(vehicleRegNumber);
         Connection con = null;
         Ticket ticket = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET);
+            PreparedStatement ps = con.prepareStatement(sql);
             ps.setString(1, vehicleRegNumber);
+            Metrics.recordDbCall(operation);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
                 ticket = new Ticket();
@@ -60,50 +316,158 @@ public class TicketDAO {
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
         } catch (Exception ex) {
+            Metrics.recordError(operation);
             logger.error("Error fetching next available slot", ex);
+            TransactionManager.setRollbackOnly();
         } finally {
             dataBaseConfig.closeConnection(con);
+            Metrics.record(operation, start);
         }
         return ticket;
     }
 
     public boolean updateTicket(Ticket ticket) {
+        long start = Metrics.start();
+        TicketWriteBehind writeBehind = ticketWriteBehind;
+        if (writeBehind != null) {
+            boolean queued = isQueued(writeBehind.submitUpdate(ticket), Operation.TICKET_UPDATE, ticket);
+            Metrics.record(Operation.TICKET_UPDATE, start);
+            return queued;
+        }
         Connection con = null;
+        PreparedStatement ps = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
+            ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
             ps.setDouble(1, ticket.getPrice());
-            ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+            ps.setTimestamp(2, (ticket.getOutTime() == null) ? null : (new Timestamp(ticket.getOutTime().getTime())));
             ps.setTimestamp(3, new Timestamp(ticket.getInTime().getTime()));
             ps.setInt(4, ticket.getId());
+            Metrics.recordDbCall(Operation.TICKET_UPDATE);
             ps.execute();
             return true;
         } catch (Exception ex) {
+            Metrics.recordError(Operation.TICKET_UPDATE);
             logger.error("Error saving ticket info", ex);
+            TransactionManager.setRollbackOnly();
         } finally {
+            dataBaseConfig.closePreparedStatement(ps);
             dataBaseConfig.closeConnection(con);
+            Metrics.record(Operation.TICKET_UPDATE, start);
         }
         return false;
     }
 
+    /**
+     * Returns how many tickets the vehicle ever had, archived ones included, read from its row of the vehicle
+     * summary that {@link #saveTicket(Ticket)} keeps up to date. A vehicle that the known vehicle filter never saw
+     * has none, and is answered without a query.
+     */
     public int getNbTicket(String vehicleRegNumber) {
+        long start = Metrics.start();
+        flushPendingWrites(vehicleRegNumber);
+        KnownVehicleFilter filter = knownVehicleFilter;
+        if (filter != null && !filter.mightContain(vehicleRegNumber)) {
+            Metrics.record(Operation.TICKET_COUNT, start);
+            return 0;
+        }
+        RecurringUserCache cache = recurringUserCache;
+        if (cache != null) {
+            Integer cachedNbTicket = cache.get(vehicleRegNumber);
+            if (cachedNbTicket != null) {
+                Metrics.record(Operation.TICKET_COUNT, start);
+                return cachedNbTicket;
+            }
+        }
         Connection con = null;
         int nbTicket = 0;
         try {
             con = dataBaseConfig.getConnection();
             PreparedStatement ps = con.prepareStatement(DBConstants.GET_NUMBER_TICKET);
             ps.setString(1, vehicleRegNumber);
+            Metrics.recordDbCall(Operation.TICKET_COUNT);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
                 nbTicket = rs.getInt(1);
             }
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
+            if (cache != null) {
+                cache.put(vehicleRegNumber, nbTicket);
+            }
         } catch (SQLException | ClassNotFoundException ex) {
+            Metrics.recordError(Operation.TICKET_COUNT);
             logger.error("Error fetching next available slot", ex);
+            TransactionManager.setRollbackOnly();
         } finally {
             dataBaseConfig.closeConnection(con);
+            Metrics.record(Operation.TICKET_COUNT, start);
         }
         return nbTicket;
     }
+
+    /**
+     * Returns false, failing the running transaction, if the write-behind queue refused the write. A write that is
+     * not done yet is queued, or waits for the transaction to commit.
+     */
+    private boolean isQueued(CompletableFuture<Boolean> result, Operation operation, Ticket ticket) {
+        if (!result.isDone() || (!result.isCompletedExceptionally() && result.join())) {
+            return true;
+        }
+        Metrics.recordError(operation);
+        logger.error("Ticket write-behind refused the ticket of vehicle " + ticket.getVehicleRegNumber());
+        TransactionManager.setRollbackOnly();
+        return false;
+    }
+
+    private CompletableFuture<Boolean> submitSave(TicketWriteBehind writeBehind, Ticket ticket) {
+        String vehicleRegNumber = ticket.getVehicleRegNumber();
+        rememberVehicle(vehicleRegNumber);
+        CompletableFuture<Boolean> result = writeBehind.submitSave(ticket);
+        result.thenAccept(written -> {
+            if (written) {
+                countNewTicket(vehicleRegNumber);
+            }
+        });
+        return result;
+    }
+
+    private void rollback(Connection con) {
+        try {
+            con.rollback();
+        } catch (SQLException e) {
+            logger.error("Error while rolling back ticket insert", e);
+        }
+    }
+
+    private void restoreAutoCommit(Connection con) {
+        try {
+            con.setAutoCommit(true);
+        } catch (SQLException e) {
+            logger.error("Error while restoring auto-commit", e);
+        }
+    }
+
+    private void rememberVehicle(String vehicleRegNumber) {
+        // added before the ticket is written: if the write fails, the vehicle is only a false positive
+        KnownVehicleFilter filter = knownVehicleFilter;
+        if (filter != null) {
+            filter.add(vehicleRegNumber);
+        }
+    }
+
+    private void countNewTicket(String vehicleRegNumber) {
+        RecurringUserCache cache = recurringUserCache;
+        if (cache != null) {
+            TransactionManager.runAfterCommit(() -> cache.increment(vehicleRegNumber));
+        }
+    }
+
+    private void flushPendingWrites(String vehicleRegNumber) {
+        // reads must see this vehicle's own queued writes; other vehicles' writes are left to batch
+        TicketWriteBehind writeBehind = ticketWriteBehind;
+        if (writeBehind != null && writeBehind.hasPendingWrites(vehicleRegNumber)) {
+            writeBehind.flush();
+        }
+    }
 }
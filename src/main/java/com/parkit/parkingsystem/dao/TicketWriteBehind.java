@@ -0,0 +1,292 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind queue for ticket inserts and updates.
+ * <p>
+ * Writes are queued and a single writer thread sends them in JDBC batches, one commit per batch, once
+ * {@code batchSize} writes are waiting or {@code maxDelayMillis} has passed since the first one. Each write is
+ * acknowledged through a {@link CompletableFuture}. Queue order is preserved, so an update always follows the insert
+ * it depends on. The vehicle summary rows of the inserted tickets are updated in the same commit. Pending writes are
+ * flushed when the queue is closed, which the app does once its gates have stopped; a write submitted after that, or
+ * whose transaction commits after that, is refused and its future completed with false.
+ */
+public class TicketWriteBehind {
+
+    private static final Logger logger = LogManager.getLogger("TicketWriteBehind");
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final DataBaseConfig dataBaseConfig;
+    private final int batchSize;
+    private final long maxDelayMillis;
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Map<String, Integer> pendingWritesByVehicle = new ConcurrentHashMap<>();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    public TicketWriteBehind(DataBaseConfig dataBaseConfig, int batchSize, long maxDelayMillis) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.batchSize = batchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.writerThread = new Thread(this::writeLoop, "ticket-write-behind");
+        writerThread.start();
+    }
+
+    public CompletableFuture<Boolean> submitSave(Ticket ticket) {
+        return submit(new PendingWrite(DBConstants.SAVE_TICKET, ticket));
+    }
+
+    public CompletableFuture<Boolean> submitUpdate(Ticket ticket) {
+        return submit(new PendingWrite(DBConstants.UPDATE_TICKET, ticket));
+    }
+
+    /**
+     * Returns true while a write for the given vehicle is queued or being written.
+     */
+    public boolean hasPendingWrites(String vehicleRegNumber) {
+        return pendingWritesByVehicle.containsKey(vehicleRegNumber);
+    }
+
+    /**
+     * Blocks until every write queued before this call has been written.
+     */
+    public void flush() {
+        if (!running) {
+            return;
+        }
+        PendingWrite marker = new PendingWrite(null, null);
+        queue.add(marker);
+        marker.result.join();
+    }
+
+    /**
+     * Stops accepting writes, writes everything still queued and waits for the writer thread to finish.
+     */
+    public void close() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            // wakes the writer if it is waiting for a batch to fill up
+            queue.add(new PendingWrite(null, null));
+        }
+        try {
+            writerThread.join();
+            // writes that raced with the close are written by the caller
+            List<PendingWrite> leftovers = new ArrayList<>();
+            queue.drainTo(leftovers);
+            if (!leftovers.isEmpty()) {
+                write(leftovers);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Boolean> submit(PendingWrite pendingWrite) {
+        if (!running) {
+            pendingWrite.result.completeExceptionally(new IllegalStateException("Ticket write-behind is closed"));
+            return pendingWrite.result;
+        }
+        // a write from a gate transaction is only queued once that transaction commits
+        TransactionManager.runAfterCommit(() -> enqueue(pendingWrite));
+        TransactionManager.runAfterRollback(() -> pendingWrite.result.complete(false));
+        return pendingWrite.result;
+    }
+
+    private void enqueue(PendingWrite pendingWrite) {
+        synchronized (this) {
+            // checked under the lock close() takes, so that nothing is queued once the leftovers are drained
+            if (running) {
+                pendingWritesByVehicle.merge(pendingWrite.vehicleRegNumber, 1, Integer::sum);
+                queue.add(pendingWrite);
+                return;
+            }
+        }
+        logger.error("Ticket write-behind closed before the transaction of vehicle " + pendingWrite.vehicleRegNumber
+                + " committed, its ticket write is refused");
+        pendingWrite.result.complete(false);
+    }
+
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+                while (batch.size() < batchSize && !batch.get(batch.size() - 1).isFlushMarker()) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite next = running ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingWrite> batch) {
+        List<PendingWrite> writes = new ArrayList<>(batch.size());
+        for (PendingWrite pendingWrite : batch) {
+            if (!pendingWrite.isFlushMarker()) {
+                writes.add(pendingWrite);
+            }
+        }
+        if (!writes.isEmpty() && !writeBatch(writes)) {
+            // isolate the failing write instead of losing the whole batch
+            for (PendingWrite pendingWrite : writes) {
+                writeBatch(Collections.singletonList(pendingWrite));
+            }
+        }
+        for (PendingWrite pendingWrite : batch) {
+            if (pendingWrite.isFlushMarker()) {
+                pendingWrite.result.complete(true);
+            }
+        }
+    }
+
+    private boolean writeBatch(List<PendingWrite> writes) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            int start = 0;
+            while (start < writes.size()) {
+                // consecutive writes of the same kind share one statement and one round trip
+                String sql = writes.get(start).sql;
+                int end = start;
+                PreparedStatement ps = con.prepareStatement(sql);
+                while (end < writes.size() && writes.get(end).sql.equals(sql)) {
+                    writes.get(end).bind(ps);
+                    ps.addBatch();
+                    end++;
+                }
+                ps.executeBatch();
+                dataBaseConfig.closePreparedStatement(ps);
+                start = end;
+            }
+            saveVisits(con, writes);
+            con.commit();
+            writes.forEach(pendingWrite -> pendingWrite.complete(true));
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error writing batch of " + writes.size() + " tickets", ex);
+            rollback(con);
+            if (writes.size() == 1) {
+                writes.get(0).complete(false);
+            }
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private void saveVisits(Connection con, List<PendingWrite> writes) throws SQLException {
+        PreparedStatement ps = null;
+        for (PendingWrite pendingWrite : writes) {
+            if (DBConstants.SAVE_TICKET.equals(pendingWrite.sql)) {
+                if (ps == null) {
+                    ps = con.prepareStatement(DBConstants.SAVE_VEHICLE_VISIT);
+                }
+                ps.setString(1, pendingWrite.vehicleRegNumber);
+                ps.setTimestamp(2, pendingWrite.inTime);
+                ps.setTimestamp(3, pendingWrite.inTime);
+                ps.addBatch();
+            }
+        }
+        if (ps != null) {
+            ps.executeBatch();
+            dataBaseConfig.closePreparedStatement(ps);
+        }
+    }
+
+    private void rollback(Connection con) {
+        if (con != null) {
+            try {
+                con.rollback();
+            } catch (SQLException e) {
+                logger.error("Error while rolling back ticket batch", e);
+            }
+        }
+    }
+
+    private final class PendingWrite {
+        private final String sql;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        // parameters are copied on submission as the caller keeps using the ticket
+        private final String vehicleRegNumber;
+        private final int id;
+        private final int parkingNumber;
+        private final double price;
+        private final Timestamp inTime;
+        private final Timestamp outTime;
+
+        private PendingWrite(String sql, Ticket ticket) {
+            this.sql = sql;
+            this.vehicleRegNumber = ticket == null ? null : ticket.getVehicleRegNumber();
+            this.id = ticket == null ? 0 : ticket.getId();
+            this.parkingNumber = ticket == null ? 0 : ticket.getParkingSpot().getId();
+            this.price = ticket == null ? 0 : ticket.getPrice();
+            this.inTime = ticket == null ? null : new Timestamp(ticket.getInTime().getTime());
+            this.outTime = (ticket == null || ticket.getOutTime() == null) ? null
+                    : new Timestamp(ticket.getOutTime().getTime());
+        }
+
+        private boolean isFlushMarker() {
+            return sql == null;
+        }
+
+        private void bind(PreparedStatement ps) throws SQLException {
+            if (DBConstants.SAVE_TICKET.equals(sql)) {
+                ps.setInt(1, parkingNumber);
+                ps.setString(2, vehicleRegNumber);
+                ps.setDouble(3, price);
+                ps.setTimestamp(4, inTime);
+                ps.setTimestamp(5, outTime);
+            } else {
+                ps.setDouble(1, price);
+                ps.setTimestamp(2, outTime);
+                ps.setTimestamp(3, inTime);
+                ps.setInt(4, id);
+            }
+        }
+
+        private void complete(boolean written) {
+            pendingWritesByVehicle.computeIfPresent(vehicleRegNumber, (key, count) -> count == 1 ? null : count - 1);
+            result.complete(written);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.parkit.parkingsystem.service;
+
+public class ArchiveStats {
+    private final long ticketsArchived;
+    private final long chunks;
+    private final int lastTicketId;
+    private final long elapsedMillis;
+
+    public ArchiveStats(long ticketsArchived, long chunks, int lastTicketId, long elapsedMillis) {
+        this.ticketsArchived = ticketsArchived;
+        this.chunks = chunks;
+        this.lastTicketId = lastTicketId;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getTicketsArchived() {
+        return ticketsArchived;
+    }
+
+    public long getChunks() {
+        return chunks;
+    }
+
+    public int getLastTicketId() {
+        return lastTicketId;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "archived=" + ticketsArchived + ", chunks=" + chunks + ", lastTicketId=" + lastTicketId
+                + ", elapsedMillis=" + elapsedMillis;
+    }
+}
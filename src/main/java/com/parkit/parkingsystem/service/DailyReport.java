@@ -0,0 +1,126 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Revenue, stays and peak occupancy of one day, by parking type. Revenue and stays are those of the vehicles that
+ * left during the day; the peak counts every vehicle parked at the same time, including those that entered before.
+ */
+public class DailyReport {
+    private final LocalDate day;
+    private final long[] entries;
+    private final long[] exits;
+    private final long[] revenueCents;
+    private final long[] stayMinutes;
+    private final long[] peakOccupancy;
+    private final long totalPeakOccupancy;
+    private final long rowsRead;
+    private final long elapsedMillis;
+
+    public DailyReport(LocalDate day, long[] entries, long[] exits, long[] revenueCents, long[] stayMinutes,
+                       long[] peakOccupancy, long totalPeakOccupancy, long rowsRead, long elapsedMillis) {
+        this.day = day;
+        this.entries = entries.clone();
+        this.exits = exits.clone();
+        this.revenueCents = revenueCents.clone();
+        this.stayMinutes = stayMinutes.clone();
+        this.peakOccupancy = peakOccupancy.clone();
+        this.totalPeakOccupancy = totalPeakOccupancy;
+        this.rowsRead = rowsRead;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public long getEntries(ParkingType parkingType) {
+        return entries[parkingType.ordinal()];
+    }
+
+    public long getExits(ParkingType parkingType) {
+        return exits[parkingType.ordinal()];
+    }
+
+    public double getRevenue(ParkingType parkingType) {
+        return revenueCents[parkingType.ordinal()] / 100.0;
+    }
+
+    public double getAverageStayMinutes(ParkingType parkingType) {
+        return average(stayMinutes[parkingType.ordinal()], exits[parkingType.ordinal()]);
+    }
+
+    public long getPeakOccupancy(ParkingType parkingType) {
+        return peakOccupancy[parkingType.ordinal()];
+    }
+
+    public double getTotalRevenue() {
+        return sum(revenueCents) / 100.0;
+    }
+
+    public double getTotalAverageStayMinutes() {
+        return average(sum(stayMinutes), sum(exits));
+    }
+
+    /**
+     * Returns the most vehicles of any type parked at the same time, which may be less than the sum of the peaks of
+     * each type.
+     */
+    public long getTotalPeakOccupancy() {
+        return totalPeakOccupancy;
+    }
+
+    /**
+     * Returns the number of entry and exit events read to build the report.
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Writes one line per parking type, then a TOTAL line.
+     */
+    public void writeCsv(Writer out) throws IOException {
+        out.write("day,type,entries,exits,revenue,average_stay_minutes,peak_occupancy\n");
+        for (ParkingType parkingType : ParkingType.values()) {
+            writeCsvLine(out, parkingType.toString(), getEntries(parkingType), getExits(parkingType),
+                    getRevenue(parkingType), getAverageStayMinutes(parkingType), getPeakOccupancy(parkingType));
+        }
+        writeCsvLine(out, "TOTAL", sum(entries), sum(exits), getTotalRevenue(), getTotalAverageStayMinutes(),
+                totalPeakOccupancy);
+        out.flush();
+    }
+
+    private void writeCsvLine(Writer out, String type, long nbEntries, long nbExits, double revenue,
+                              double averageStayMinutes, long peak) throws IOException {
+        out.write(String.format(Locale.ROOT, "%s,%s,%d,%d,%.2f,%.1f,%d\n", day, type, nbEntries, nbExits, revenue,
+                averageStayMinutes, peak));
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    private static double average(long total, long count) {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    @Override
+    public String toString() {
+        return "day=" + day + ", exits=" + sum(exits) + ", revenue=" + getTotalRevenue() + ", peakOccupancy="
+                + totalPeakOccupancy + ", rowsRead=" + rowsRead + ", elapsedMillis=" + elapsedMillis;
+    }
+}
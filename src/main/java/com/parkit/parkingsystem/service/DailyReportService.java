@@ -0,0 +1,106 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Builds the end-of-day report from the ticket table without loading tickets in the app's memory.
+ * <p>
+ * The entries and exits touching the day are read as one time-ordered stream of events through a forward-only
+ * server-side cursor, {@code fetchSize} rows at a time, and folded in a single pass into a few counters per parking
+ * type: occupancy goes up at each entry and down at each exit, and its highest value is the peak. The app's memory
+ * use does not depend on the number of tickets; the sorted events are held by the database until they are read.
+ * <p>
+ * MySQL Connector/J only streams with {@code useCursorFetch=true} on the url, as {@link DataBaseConfig} sets it;
+ * without it the whole day is read into memory before the first row is returned.
+ */
+public class DailyReportService {
+
+    private static final Logger logger = LogManager.getLogger("DailyReportService");
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+
+    private final DataBaseConfig dataBaseConfig;
+    private final int fetchSize;
+
+    public DailyReportService(DataBaseConfig dataBaseConfig, int fetchSize) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Reports on {@code day}, from midnight to midnight in the default time zone.
+     */
+    public DailyReport report(LocalDate day) throws SQLException, ClassNotFoundException {
+        long start = System.currentTimeMillis();
+        ZoneId zone = ZoneId.systemDefault();
+        Timestamp dayStart = new Timestamp(day.atStartOfDay(zone).toInstant().toEpochMilli());
+        Timestamp dayEnd = new Timestamp(day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+
+        int types = ParkingType.values().length;
+        long[] entries = new long[types];
+        long[] exits = new long[types];
+        long[] revenueCents = new long[types];
+        long[] stayMinutes = new long[types];
+        long[] occupancy = new long[types];
+        long[] peakOccupancy = new long[types];
+        long totalOccupancy = 0;
+        long totalPeakOccupancy = 0;
+        long rowsRead = 0;
+
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET_EVENTS_OF_DAY,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // ignored by Connector/J unless the url has useCursorFetch=true, see the class comment
+            ps.setFetchSize(fetchSize);
+            ps.setTimestamp(1, dayEnd);
+            ps.setTimestamp(2, dayStart);
+            ps.setTimestamp(3, dayStart);
+            ps.setTimestamp(4, dayEnd);
+            ResultSet rs = ps.executeQuery();
+            // exits sort before entries of the same instant, so a spot handed over is not counted twice
+            while (rs.next()) {
+                rowsRead++;
+                long time = rs.getTimestamp(1).getTime();
+                int type = ParkingType.valueOf(rs.getString(3)).ordinal();
+                if (rs.getInt(2) > 0) {
+                    if (time >= dayStart.getTime()) {
+                        entries[type]++;
+                    }
+                    occupancy[type]++;
+                    totalOccupancy++;
+                    peakOccupancy[type] = Math.max(peakOccupancy[type], occupancy[type]);
+                    totalPeakOccupancy = Math.max(totalPeakOccupancy, totalOccupancy);
+                } else {
+                    exits[type]++;
+                    revenueCents[type] += Math.round(rs.getDouble(4) * 100);
+                    stayMinutes[type] += (time - rs.getTimestamp(5).getTime()) / MILLIS_PER_MINUTE;
+                    occupancy[type]--;
+                    totalOccupancy--;
+                }
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+
+        DailyReport report = new DailyReport(day, entries, exits, revenueCents, stayMinutes, peakOccupancy,
+                totalPeakOccupancy, rowsRead, System.currentTimeMillis() - start);
+        logger.info("Daily report done: " + report);
+        return report;
+    }
+}
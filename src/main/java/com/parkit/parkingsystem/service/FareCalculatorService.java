@@ -1,58 +1,77 @@
 package com.parkit.parkingsystem.service;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.Date;
+import java.util.TimeZone;
 
-import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.Metrics;
+import com.parkit.parkingsystem.util.Metrics.Operation;
 
 public class FareCalculatorService {
 
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+    private static final long MINUTES_PER_DAY = 24 * 60;
+
+    // Durations are counted in wall-clock minutes of the default time zone, read once
+    private static final TimeZone TIME_ZONE = TimeZone.getDefault();
+
+    // Shared by every calculator; replaced as a whole, so a calculation reads either the old or the new rates
+    private static volatile TariffTable tariffTable = TariffTable.defaults();
+
+    public static TariffTable getTariffTable() {
+        return tariffTable;
+    }
+
+    public static void setTariffTable(TariffTable table) {
+        tariffTable = table;
+    }
+
     public void calculateFare(Ticket ticket) {
         calculateFare(ticket, false);
     }
 
     public void calculateFare(Ticket ticket, boolean isDiscount) {
         if ((ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime()))) {
+            Metrics.recordError(Operation.FARE_CALCULATION);
             throw new IllegalArgumentException("Out time provided is incorrect");
         }
 
-        double discount = isDiscount ? Fare.DISCOUNT_RATE : 1;
-
-        long durationInMinutes = convertToMinutes(ticket.getInTime(), ticket.getOutTime());
+        long start = Metrics.start();
+        TariffTable table = tariffTable;
+        long inLocalMillis = toLocalMillis(ticket.getInTime().getTime());
+        long durationInMinutes = (toLocalMillis(ticket.getOutTime().getTime()) - inLocalMillis) / MILLIS_PER_MINUTE;
 
-        int thirtyMinutes = 30;
+        long priceInCents = 0;
+        if (durationInMinutes >= table.getFreeMinutes()) {
+            priceInCents = table.priceCents(ticket.getParkingSpot().getParkingType(), minuteOfDay(inLocalMillis),
+                    durationInMinutes, isDiscount);
+        }
 
-        double price = 0;
+        ticket.setPrice(priceInCents / 100.0);
+        Metrics.record(Operation.FARE_CALCULATION, start);
+    }
 
-        if (durationInMinutes >= thirtyMinutes) {
-            switch (ticket.getParkingSpot().getParkingType()) {
-                case CAR: {
-                    price = calculatePrice(durationInMinutes, Fare.CAR_RATE_PER_HOUR, discount);
-                    break;
-                }
-                case BIKE: {
-                    price = calculatePrice(durationInMinutes, Fare.BIKE_RATE_PER_HOUR, discount);
-                    break;
-                }
-                default:
-                    throw new IllegalArgumentException("Unknown Parking Type");
-            }
+    /**
+     * Returns the fare, in cents, of a stay between two epoch millis timestamps. It applies the same rules as
+     * {@link #calculateFare(Ticket, boolean)}, which returns exactly this amount divided by 100, and allocates
+     * nothing, so it can be called for every ticket of a bulk job.
+     */
+    public long calculateFareCents(ParkingType parkingType, long inMillis, long outMillis, boolean isDiscount) {
+        if (outMillis < inMillis) {
+            throw new IllegalArgumentException("Out time provided is incorrect");
         }
 
-        ticket.setPrice(price);
+        long inLocalMillis = toLocalMillis(inMillis);
+        long durationInMinutes = (toLocalMillis(outMillis) - inLocalMillis) / MILLIS_PER_MINUTE;
+        return tariffTable.priceCents(parkingType, minuteOfDay(inLocalMillis), durationInMinutes, isDiscount);
     }
 
-    private long convertToMinutes(Date inTime, Date outTime) {
-        LocalDateTime inLocalDateTime = inTime.toInstant().atZone(java.time.ZoneId.systemDefault()).toLocalDateTime();
-        LocalDateTime outLocalDateTime = outTime.toInstant().atZone(java.time.ZoneId.systemDefault()).toLocalDateTime();
-        return ChronoUnit.MINUTES.between(inLocalDateTime, outLocalDateTime);
+    private static long toLocalMillis(long millis) {
+        // wall-clock time, so a stay across a DST change is billed on the local times like on the ticket
+        return millis + TIME_ZONE.getOffset(millis);
     }
 
-    private double calculatePrice(long durationInMinutes, double fareInHours, double discount) {
-        double durationInHours = durationInMinutes / 60.0;
-        double calculate = durationInHours * fareInHours * discount;
-        return Math.round(calculate * 100.0) / 100.0;
+    private static int minuteOfDay(long localMillis) {
+        return (int) Math.floorMod(Math.floorDiv(localMillis, MILLIS_PER_MINUTE), MINUTES_PER_DAY);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,215 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Recomputes the price of every closed ticket with the current fare rules, e.g. after a tariff change or for an
+ * audit.
+ * <p>
+ * Tickets are read in ID order through a forward-only server-side cursor and handled in chunks of {@code chunkSize}:
+ * a chunk is priced in parallel on a fork-join pool, the changed prices are written back in one JDBC batch and
+ * committed, then the last ticket ID of the chunk is saved to the checkpoint file. A run started with an existing
+ * checkpoint file resumes after that ID; as a chunk is committed before its checkpoint, a crash in between only
+ * reprices it again.
+ * <p>
+ * A ticket gets the recurring user discount if its vehicle has an earlier ticket, as it did at exit.
+ */
+public class FareRepricingService {
+
+    private static final Logger logger = LogManager.getLogger("FareRepricingService");
+
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    // Below this many tickets a fork-join task prices them itself instead of splitting
+    private static final int PRICING_THRESHOLD = 1024;
+
+    private final DataBaseConfig dataBaseConfig;
+    private final FareCalculatorService fareCalculatorService;
+    private final int chunkSize;
+    private final int fetchSize;
+
+    public FareRepricingService(DataBaseConfig dataBaseConfig, FareCalculatorService fareCalculatorService,
+                                int chunkSize, int fetchSize) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.fareCalculatorService = fareCalculatorService;
+        this.chunkSize = chunkSize;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Reprices the closed tickets after the ID saved in {@code checkpointFile}, or all of them if the file does not
+     * exist yet.
+     */
+    public RepricingStats reprice(Path checkpointFile) throws SQLException, ClassNotFoundException, IOException {
+        long start = System.currentTimeMillis();
+        int lastTicketId = readCheckpoint(checkpointFile);
+        if (lastTicketId > 0) {
+            logger.info("Resuming repricing after ticket " + lastTicketId);
+        }
+        Chunk chunk = new Chunk(chunkSize);
+        long ticketsRead = 0;
+        long ticketsUpdated = 0;
+
+        Connection readCon = null;
+        Connection writeCon = null;
+        try {
+            readCon = dataBaseConfig.getConnection();
+            writeCon = dataBaseConfig.getConnection();
+            writeCon.setAutoCommit(false);
+            PreparedStatement ps = readCon.prepareStatement(DBConstants.GET_CLOSED_TICKETS_FROM,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // only streams with useCursorFetch=true on the MySQL url, see DataBaseConfig
+            ps.setFetchSize(fetchSize);
+            ps.setInt(1, lastTicketId);
+            ResultSet rs = ps.executeQuery();
+            PreparedStatement update = writeCon.prepareStatement(DBConstants.UPDATE_TICKET_PRICE);
+
+            boolean more = true;
+            while (more) {
+                chunk.size = 0;
+                while (chunk.size < chunkSize && (more = rs.next())) {
+                    chunk.add(rs.getInt(1), ParkingType.valueOf(rs.getString(2)), rs.getTimestamp(3).getTime(),
+                            rs.getTimestamp(4).getTime(), rs.getDouble(5), rs.getBoolean(6));
+                }
+                if (chunk.size == 0) {
+                    break;
+                }
+                ForkJoinPool.commonPool().invoke(new PricingTask(chunk, 0, chunk.size));
+                ticketsUpdated += writePrices(writeCon, update, chunk);
+                ticketsRead += chunk.size;
+                lastTicketId = chunk.ids[chunk.size - 1];
+                writeCheckpoint(checkpointFile, lastTicketId);
+                logger.info("Repriced " + ticketsRead + " tickets up to ticket " + lastTicketId + ", "
+                        + ticketsUpdated + " updated");
+            }
+            dataBaseConfig.closePreparedStatement(update);
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        } catch (SQLException | IOException e) {
+            if (writeCon != null) {
+                writeCon.rollback();
+            }
+            throw e;
+        } finally {
+            dataBaseConfig.closeConnection(readCon);
+            dataBaseConfig.closeConnection(writeCon);
+        }
+
+        RepricingStats stats = new RepricingStats(ticketsRead, ticketsUpdated, lastTicketId,
+                System.currentTimeMillis() - start);
+        logger.info("Repricing done: " + stats);
+        return stats;
+    }
+
+    private int writePrices(Connection writeCon, PreparedStatement update, Chunk chunk) throws SQLException {
+        int updated = 0;
+        for (int i = 0; i < chunk.size; i++) {
+            double price = chunk.priceCents[i] / 100.0;
+            if (price != chunk.oldPrices[i]) {
+                update.setDouble(1, price);
+                update.setInt(2, chunk.ids[i]);
+                update.addBatch();
+                updated++;
+            }
+        }
+        if (updated > 0) {
+            update.executeBatch();
+        }
+        writeCon.commit();
+        return updated;
+    }
+
+    private static int readCheckpoint(Path checkpointFile) throws IOException {
+        if (checkpointFile == null || !Files.exists(checkpointFile)) {
+            return 0;
+        }
+        return Integer.parseInt(new String(Files.readAllBytes(checkpointFile), StandardCharsets.UTF_8).trim());
+    }
+
+    private static void writeCheckpoint(Path checkpointFile, int lastTicketId) throws IOException {
+        if (checkpointFile == null) {
+            return;
+        }
+        // written aside then renamed, so a crash never leaves a truncated checkpoint
+        Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        Files.write(tmp, Integer.toString(lastTicketId).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Tickets of one chunk, column by column, reused from one chunk to the next.
+     */
+    private static final class Chunk {
+        private final int[] ids;
+        private final byte[] types;
+        private final long[] inTimes;
+        private final long[] outTimes;
+        private final double[] oldPrices;
+        private final boolean[] discounts;
+        private final long[] priceCents;
+        private int size;
+
+        private Chunk(int capacity) {
+            ids = new int[capacity];
+            types = new byte[capacity];
+            inTimes = new long[capacity];
+            outTimes = new long[capacity];
+            oldPrices = new double[capacity];
+            discounts = new boolean[capacity];
+            priceCents = new long[capacity];
+        }
+
+        private void add(int id, ParkingType type, long inTime, long outTime, double oldPrice, boolean discount) {
+            ids[size] = id;
+            types[size] = (byte) type.ordinal();
+            inTimes[size] = inTime;
+            outTimes[size] = outTime;
+            oldPrices[size] = oldPrice;
+            discounts[size] = discount;
+            size++;
+        }
+    }
+
+    private final class PricingTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Chunk chunk;
+        private final int from;
+        private final int to;
+
+        private PricingTask(Chunk chunk, int from, int to) {
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PRICING_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    chunk.priceCents[i] = fareCalculatorService.calculateFareCents(PARKING_TYPES[chunk.types[i]],
+                            chunk.inTimes[i], chunk.outTimes[i], chunk.discounts[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new PricingTask(chunk, from, middle), new PricingTask(chunk, middle, to));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Runs a log of gate events through {@link ParkingService}, one after the other and as fast as possible, e.g. to
+ * replay a day of real traffic for capacity planning or regression testing.
+ * <p>
+ * Each line is one event, {@code timestamp,ENTRY,type,plate} or {@code timestamp,EXIT,,plate}, where the timestamp
+ * is either epoch millis or a local date-time such as {@code 2024-05-01T08:15:00}. Blank lines and lines starting
+ * with {@code #} are skipped.
+ */
+public class GateEventReplayer {
+
+    private static final Logger logger = LogManager.getLogger("GateEventReplayer");
+
+    private final ParkingService parkingService;
+
+    public GateEventReplayer(ParkingService parkingService) {
+        this.parkingService = parkingService;
+    }
+
+    public ReplayStats replay(BufferedReader events) throws IOException {
+        long entries = 0;
+        long rejectedEntries = 0;
+        long exits = 0;
+        long rejectedExits = 0;
+        long invalidEvents = 0;
+        long[] latencies = new long[1024];
+        int nbLatencies = 0;
+
+        long start = System.nanoTime();
+        String line;
+        int lineNumber = 0;
+        while ((line = events.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",", -1);
+            long eventStart = System.nanoTime();
+            try {
+                if (fields.length != 4) {
+                    throw new IllegalArgumentException("Expected 4 fields");
+                }
+                Date time = parseTimestamp(fields[0].trim());
+                String vehicleRegNumber = fields[3].trim();
+                String action = fields[1].trim().toUpperCase(Locale.ROOT);
+                if ("ENTRY".equals(action)) {
+                    ParkingType parkingType = ParkingType.valueOf(fields[2].trim().toUpperCase(Locale.ROOT));
+                    if (parkingService.processIncomingVehicle(parkingType, vehicleRegNumber, time).isAccepted()) {
+                        entries++;
+                    } else {
+                        rejectedEntries++;
+                    }
+                } else if ("EXIT".equals(action)) {
+                    if (parkingService.processExitingVehicle(vehicleRegNumber, time).isAccepted()) {
+                        exits++;
+                    } else {
+                        rejectedExits++;
+                    }
+                } else {
+                    throw new IllegalArgumentException("Unknown action " + action);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Skipping invalid gate event at line " + lineNumber + ": " + line, e);
+                invalidEvents++;
+                continue;
+            }
+            if (nbLatencies == latencies.length) {
+                latencies = Arrays.copyOf(latencies, nbLatencies * 2);
+            }
+            latencies[nbLatencies++] = System.nanoTime() - eventStart;
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        Arrays.sort(latencies, 0, nbLatencies);
+        ReplayStats stats = new ReplayStats(entries, rejectedEntries, exits, rejectedExits, invalidEvents,
+                elapsedMillis, percentileMicros(latencies, nbLatencies, 50),
+                percentileMicros(latencies, nbLatencies, 99));
+        logger.info("Replay done: " + stats);
+        return stats;
+    }
+
+    private static Date parseTimestamp(String timestamp) {
+        if (!timestamp.isEmpty() && timestamp.chars().allMatch(Character::isDigit)) {
+            return new Date(Long.parseLong(timestamp));
+        }
+        return Date.from(LocalDateTime.parse(timestamp).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    static long percentileMicros(long[] sortedNanos, int size, int percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        return sortedNanos[Math.max(index, 0)] / 1000;
+    }
+}
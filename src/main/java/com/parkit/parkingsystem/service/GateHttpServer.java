@@ -0,0 +1,306 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.util.Metrics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves {@link ParkingService} to gate terminals over HTTP:
+ * <pre>
+ * POST /entry?type=CAR&amp;plate=AB123CD   parks a vehicle, 200 with its spot or 409 if it is refused
+ * POST /exit?plate=AB123CD              bills a vehicle, 200 with its fare or 409 if it is refused
+ * GET  /availability[?type=CAR]         free spots of each type, and the one a vehicle would be offered now
+ * GET  /metrics                         operation counters and latencies, in the Prometheus text format
+ * </pre>
+ * Parameters may also be sent as a form body. Entries and exits happen at the time the request is served; a server
+ * built with {@code clientTimeAllowed}, for replays and load tests, also takes a {@code time} (epoch millis) parameter
+ * instead. Responses other than {@code /metrics} are JSON.
+ * <p>
+ * A request spends most of its time waiting on the database, so each one runs on its own virtual thread when the JDK
+ * has them, and on a bounded pool of platform threads otherwise. When that pool and its queue are full, requests are
+ * answered 503 straight away.
+ */
+public class GateHttpServer {
+
+    private static final Logger logger = LogManager.getLogger("GateHttpServer");
+
+    private final ParkingService parkingService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean clientTimeAllowed;
+
+    // set while the accepting thread answers a request the executor had no room for
+    private final ThreadLocal<Boolean> overloaded = new ThreadLocal<>();
+
+    public GateHttpServer(ParkingService parkingService, InetSocketAddress address, int maxThreads)
+            throws IOException {
+        this(parkingService, address, maxThreads, false);
+    }
+
+    /**
+     * @param maxThreads        platform threads serving requests when virtual threads are not available
+     * @param clientTimeAllowed whether entries and exits take their time from the {@code time} parameter, which lets
+     *                          any caller backdate them: only for replays and load tests
+     */
+    public GateHttpServer(ParkingService parkingService, InetSocketAddress address, int maxThreads,
+                          boolean clientTimeAllowed) throws IOException {
+        this.parkingService = parkingService;
+        this.server = HttpServer.create(address, 0);
+        this.executor = newRequestExecutor(maxThreads);
+        this.clientTimeAllowed = clientTimeAllowed;
+        server.setExecutor(this::execute);
+        server.createContext("/entry", exchange -> handle(exchange, "POST", this::entry));
+        server.createContext("/exit", exchange -> handle(exchange, "POST", this::exit));
+        server.createContext("/availability", exchange -> handle(exchange, "GET", this::availability));
+        server.createContext("/metrics", exchange -> handle(exchange, "GET", parameters -> metrics()));
+    }
+
+    public void start() {
+        server.start();
+        logger.info("Gate API listening on port " + getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, waits up to {@code delaySeconds} for the ones in flight, then stops.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    static ExecutorService newRequestExecutor(int maxThreads) {
+        try {
+            // looked up by reflection, the app still targets JDKs without virtual threads
+            ExecutorService virtualThreads = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            logger.info("Serving gate requests on virtual threads");
+            return virtualThreads;
+        } catch (ReflectiveOperationException e) {
+            logger.info("Virtual threads not available, serving gate requests on " + maxThreads + " threads");
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        // when every thread is busy and the queue is full the request is rejected, see execute
+        return new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxThreads * 4), runnable -> {
+                    Thread thread = new Thread(runnable, "gate-http-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private void execute(Runnable exchange) {
+        try {
+            executor.execute(exchange);
+        } catch (RejectedExecutionException e) {
+            // the accepting thread only reads the request headers and answers 503, it must not wait on the database
+            // or every gate would stop being accepted
+            overloaded.set(Boolean.TRUE);
+            try {
+                exchange.run();
+            } finally {
+                overloaded.remove();
+            }
+        }
+    }
+
+    private interface Endpoint {
+        Response handle(Map<String, String> parameters);
+    }
+
+    private static final class Response {
+        private final int status;
+        private final String body;
+        private final String contentType;
+
+        private Response(int status, String body) {
+            this(status, body, "application/json; charset=utf-8");
+        }
+
+        private Response(int status, String body, String contentType) {
+            this.status = status;
+            this.body = body;
+            this.contentType = contentType;
+        }
+    }
+
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+        Response response;
+        try {
+            if (overloaded.get() != null) {
+                exchange.getResponseHeaders().set("Connection", "close");
+                response = new Response(503, error("Server busy, try again"));
+            } else if (!method.equals(exchange.getRequestMethod())) {
+                response = new Response(405, error("Method not allowed, use " + method));
+            } else {
+                response = endpoint.handle(readParameters(exchange));
+            }
+        } catch (IllegalArgumentException e) {
+            response = new Response(400, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            logger.error("Error serving " + exchange.getRequestURI(), e);
+            response = new Response(500, error("Internal error"));
+        }
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", response.contentType);
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private Response entry(Map<String, String> parameters) {
+        ParkingType parkingType = parseType(required(parameters, "type"));
+        GateResult result = parkingService.processIncomingVehicle(parkingType, required(parameters, "plate"),
+                parseTime(parameters));
+        return gateResponse(result);
+    }
+
+    private Response exit(Map<String, String> parameters) {
+        GateResult result = parkingService.processExitingVehicle(required(parameters, "plate"),
+                parseTime(parameters));
+        return gateResponse(result);
+    }
+
+    private Response availability(Map<String, String> parameters) {
+        String type = parameters.get("type");
+        ParkingType[] parkingTypes = type == null ? ParkingType.values() : new ParkingType[]{parseType(type)};
+        StringBuilder json = new StringBuilder("{");
+        for (ParkingType parkingType : parkingTypes) {
+            ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable(parkingType);
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(parkingType).append("\":{\"available\":").append(parkingSpot != null)
+                    .append(",\"spot\":").append(parkingSpot == null ? 0 : parkingSpot.getId())
+                    .append(",\"free\":").append(parkingService.getFreeSpots(parkingType)).append('}');
+        }
+        return new Response(200, json.append('}').toString());
+    }
+
+    private static Response metrics() {
+        return new Response(200, Metrics.toText(), "text/plain; version=0.0.4; charset=utf-8");
+    }
+
+    private static Response gateResponse(GateResult result) {
+        if (!result.isAccepted()) {
+            return new Response(409, "{\"accepted\":false,\"plate\":" + quote(result.getVehicleRegNumber())
+                    + ",\"reason\":" + quote(result.getRejectionReason()) + "}");
+        }
+        return new Response(200, "{\"accepted\":true,\"plate\":" + quote(result.getVehicleRegNumber())
+                + ",\"spot\":" + result.getParkingNumber()
+                + ",\"type\":" + (result.getParkingType() == null ? "null" : "\"" + result.getParkingType() + "\"")
+                + ",\"inTime\":" + (result.getInTime() == null ? "null" : result.getInTime().getTime())
+                + ",\"outTime\":" + (result.getOutTime() == null ? "null" : result.getOutTime().getTime())
+                + ",\"fare\":" + result.getFare() + ",\"discount\":" + result.isDiscount()
+                + ",\"pending\":" + result.isPending() + "}");
+    }
+
+    private static Map<String, String> readParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        parseQuery(exchange.getRequestURI().getRawQuery(), parameters);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        try (InputStream in = exchange.getRequestBody()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        parseQuery(new String(body.toByteArray(), StandardCharsets.UTF_8), parameters);
+        return parameters;
+    }
+
+    private static void parseQuery(String query, Map<String, String> parameters) throws UnsupportedEncodingException {
+        if (query == null || query.isEmpty()) {
+            return;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+                        URLDecoder.decode(pair.substring(separator + 1), "UTF-8").trim());
+            }
+        }
+    }
+
+    private static String required(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter " + name);
+        }
+        return value;
+    }
+
+    private static ParkingType parseType(String type) {
+        try {
+            return ParkingType.valueOf(type.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown vehicle type " + type);
+        }
+    }
+
+    private Date parseTime(Map<String, String> parameters) {
+        String time = parameters.get("time");
+        if (time == null) {
+            return new Date();
+        }
+        if (!clientTimeAllowed) {
+            throw new IllegalArgumentException("Parameter time is not accepted by this server");
+        }
+        try {
+            return new Date(Long.parseLong(time));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time " + time);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + quote(message) + "}";
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+}
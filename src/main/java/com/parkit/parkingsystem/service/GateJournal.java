@@ -0,0 +1,358 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.util.Metrics;
+import com.parkit.parkingsystem.util.Metrics.Operation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the vehicles let in and out by the gates, kept on local disk for audit and to write gate
+ * events to the database once it is back after an outage.
+ * <p>
+ * Events are 64-byte records written through a memory mapping into segment files of a fixed number of records, named
+ * after the sequence number of their first record; a full segment is forced to disk and the next one started.
+ * {@link #append} returns once its record is on disk. Appends made while the disk is being forced wait for the next
+ * force, which covers all of them at once, so a busy lot pays one fsync per batch of gate events rather than one per
+ * vehicle.
+ * <p>
+ * The sequence number up to which events have been replayed is saved in a {@code replayed} file next to the segments.
+ * The vehicles let in by a pending entry that is not replayed yet are kept in memory, and rebuilt from the pending
+ * events on open, so that a gate can let them out before the database knows about them.
+ * <p>
+ * Only the last {@code retainedSegments} segments whose events are all replayed are kept, for audit; older ones are
+ * deleted once replayed. Events that were never pending need no replay, so while there are no pending events the
+ * replayed sequence follows the last full segment.
+ */
+public class GateJournal implements Closeable {
+
+    static final int RECORD_SIZE = 64;
+
+    private static final Logger logger = LogManager.getLogger("GateJournal");
+
+    // sequence (8), time (8), spot (4), CRC32 of the record with this field zeroed (4), kind (1), type (1),
+    // pending (1), registration number length (1) and bytes
+    private static final int CRC_OFFSET = 20;
+    private static final int PLATE_OFFSET = 28;
+    private static final int MAX_PLATE_BYTES = RECORD_SIZE - PLATE_OFFSET;
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String REPLAYED_FILE = "replayed";
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final int retainedSegments;
+    private final Object syncLock = new Object();
+    // registration number to the sequence of its pending entry, until that entry is replayed or the vehicle left
+    private final Map<String, Long> pendingEntries = new ConcurrentHashMap<>();
+    private MappedByteBuffer segment;
+    private long segmentFirstSequence;
+    private int segmentCapacity;
+    private long lastSequence;
+    private boolean closed;
+    private volatile long durableSequence;
+    private volatile long lastPendingSequence;
+    private volatile long replayedSequence;
+
+    private GateJournal(Path directory, int recordsPerSegment, int retainedSegments) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.retainedSegments = retainedSegments;
+    }
+
+    /**
+     * Opens the journal in {@code directory}, creating it if needed, and positions it after its last complete record.
+     * New segments hold {@code recordsPerSegment} records, and {@code retainedSegments} fully replayed segments are
+     * kept.
+     */
+    public static GateJournal open(Path directory, int recordsPerSegment, int retainedSegments) throws IOException {
+        if (recordsPerSegment <= 0) {
+            throw new IllegalArgumentException("Invalid number of records per segment");
+        }
+        if (retainedSegments < 0) {
+            throw new IllegalArgumentException("Invalid number of retained segments");
+        }
+        Files.createDirectories(directory);
+        GateJournal journal = new GateJournal(directory, recordsPerSegment, retainedSegments);
+        journal.recover();
+        return journal;
+    }
+
+    private void recover() throws IOException {
+        Path replayedFile = directory.resolve(REPLAYED_FILE);
+        if (Files.exists(replayedFile)) {
+            replayedSequence = Long.parseLong(new String(Files.readAllBytes(replayedFile), StandardCharsets.UTF_8)
+                    .trim());
+        }
+        // only the events after the replayed ones are read, to find the last sequence and the pending events
+        lastSequence = replayedSequence;
+        GateJournalReader reader = new GateJournalReader(directory, replayedSequence);
+        JournalEvent event;
+        while ((event = reader.next()) != null) {
+            lastSequence = event.getSequence();
+            if (event.isPending()) {
+                lastPendingSequence = lastSequence;
+                trackPendingEntry(event.getKind(), event.getVehicleRegNumber(), lastSequence);
+            }
+        }
+        durableSequence = lastSequence;
+
+        List<Path> segments = segments(directory);
+        Path lastSegment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (lastSegment != null && firstSequence(lastSegment) <= lastSequence + 1) {
+            openSegment(lastSegment, firstSequence(lastSegment), (int) (Files.size(lastSegment) / RECORD_SIZE));
+        } else {
+            if (lastSegment != null) {
+                lastSequence = Math.max(lastSequence, firstSequence(lastSegment) - 1);
+            }
+            openSegment(directory.resolve(segmentName(lastSequence + 1)), lastSequence + 1, recordsPerSegment);
+        }
+        // a crash may have left records of unacknowledged appends past the last complete one
+        for (int offset = (int) (lastSequence + 1 - segmentFirstSequence) * RECORD_SIZE;
+             offset < segmentCapacity * RECORD_SIZE; offset++) {
+            segment.put(offset, (byte) 0);
+        }
+        segment.force();
+    }
+
+    private void openSegment(Path file, long firstSequence, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+        }
+        segmentFirstSequence = firstSequence;
+        segmentCapacity = capacity;
+    }
+
+    /**
+     * Appends an event and returns its sequence number once it is on disk.
+     */
+    public long append(JournalEvent.Kind kind, long timeMillis, String vehicleRegNumber, ParkingType parkingType,
+                       int parkingNumber, boolean pending) throws IOException {
+        long start = Metrics.start();
+        byte[] plate = vehicleRegNumber.getBytes(StandardCharsets.UTF_8);
+        if (plate.length > MAX_PLATE_BYTES) {
+            throw new IllegalArgumentException("Registration number too long for the journal: " + vehicleRegNumber);
+        }
+        long sequence;
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Gate journal is closed");
+            }
+            if (lastSequence + 1 - segmentFirstSequence >= segmentCapacity) {
+                segment.force();
+                openSegment(directory.resolve(segmentName(lastSequence + 1)), lastSequence + 1, recordsPerSegment);
+                if (!hasPendingEvents()) {
+                    markReplayed(lastSequence);
+                }
+            }
+            sequence = lastSequence + 1;
+            byte[] record = encode(sequence, kind, timeMillis, plate, parkingType, parkingNumber, pending);
+            int offset = (int) (sequence - segmentFirstSequence) * RECORD_SIZE;
+            for (int i = 0; i < RECORD_SIZE; i++) {
+                segment.put(offset + i, record[i]);
+            }
+            lastSequence = sequence;
+            if (pending) {
+                lastPendingSequence = sequence;
+                trackPendingEntry(kind, vehicleRegNumber, sequence);
+            }
+        }
+        sync(sequence);
+        Metrics.record(Operation.JOURNAL_APPEND, start);
+        return sequence;
+    }
+
+    private void sync(long sequence) {
+        if (durableSequence >= sequence) {
+            return;
+        }
+        synchronized (syncLock) {
+            // the previous force may have covered this record while we waited
+            if (durableSequence >= sequence) {
+                return;
+            }
+            MappedByteBuffer toForce;
+            long upTo;
+            synchronized (this) {
+                toForce = segment;
+                upTo = lastSequence;
+            }
+            // records of earlier segments were forced when their segment was full
+            toForce.force();
+            durableSequence = upTo;
+        }
+    }
+
+    /**
+     * Returns true if pending events were appended after the last replayed one.
+     */
+    public boolean hasPendingEvents() {
+        return lastPendingSequence > replayedSequence;
+    }
+
+    /**
+     * Returns true if the vehicle was let in by a pending entry that is not replayed yet, and has not been let out
+     * since.
+     */
+    public boolean hasPendingEntry(String vehicleRegNumber) {
+        return pendingEntries.containsKey(vehicleRegNumber);
+    }
+
+    private void trackPendingEntry(JournalEvent.Kind kind, String vehicleRegNumber, long sequence) {
+        if (kind == JournalEvent.Kind.ENTRY) {
+            pendingEntries.put(vehicleRegNumber, sequence);
+        } else if (kind == JournalEvent.Kind.EXIT) {
+            pendingEntries.remove(vehicleRegNumber);
+        }
+    }
+
+    public long getReplayedSequence() {
+        return replayedSequence;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Records that every event up to {@code sequence} has been replayed, and deletes the replayed segments past the
+     * retained ones.
+     */
+    public synchronized void markReplayed(long sequence) throws IOException {
+        if (sequence <= replayedSequence) {
+            return;
+        }
+        Path tmp = directory.resolve(REPLAYED_FILE + ".tmp");
+        Files.write(tmp, Long.toString(sequence).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, directory.resolve(REPLAYED_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        replayedSequence = sequence;
+        // the database has these vehicles now
+        pendingEntries.values().removeIf(entrySequence -> entrySequence <= sequence);
+        deleteReplayedSegments();
+    }
+
+    private void deleteReplayedSegments() throws IOException {
+        List<Path> segments = segments(directory);
+        // a segment is replayed once the next one starts right after the replayed sequence; the current one never is
+        int replayed = 0;
+        while (replayed + 1 < segments.size() && firstSequence(segments.get(replayed + 1)) <= replayedSequence + 1) {
+            replayed++;
+        }
+        for (Path file : segments.subList(0, Math.max(0, replayed - retainedSegments))) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // e.g. still mapped by a reader on some platforms, the next call tries again
+                logger.error("Unable to delete replayed journal segment " + file, e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        segment.force();
+        if (!hasPendingEvents() && replayedSequence < lastSequence) {
+            // nothing to replay, so the next start does not need to read these events
+            markReplayed(lastSequence);
+        }
+    }
+
+    private static byte[] encode(long sequence, JournalEvent.Kind kind, long timeMillis, byte[] plate,
+                                 ParkingType parkingType, int parkingNumber, boolean pending) {
+        byte[] record = new byte[RECORD_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.putLong(0, sequence);
+        buffer.putLong(8, timeMillis);
+        buffer.putInt(16, parkingNumber);
+        record[24] = (byte) (kind.ordinal() + 1);
+        record[25] = (byte) (parkingType == null ? 0 : parkingType.ordinal() + 1);
+        record[26] = (byte) (pending ? 1 : 0);
+        record[27] = (byte) plate.length;
+        System.arraycopy(plate, 0, record, PLATE_OFFSET, plate.length);
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        buffer.putInt(CRC_OFFSET, (int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * Returns the event of the record at {@code offset}, or null if it is not a complete record of that sequence.
+     */
+    static JournalEvent decode(ByteBuffer segment, int offset, long sequence) {
+        byte[] record = new byte[RECORD_SIZE];
+        for (int i = 0; i < RECORD_SIZE; i++) {
+            record[i] = segment.get(offset + i);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        int storedCrc = buffer.getInt(CRC_OFFSET);
+        buffer.putInt(CRC_OFFSET, 0);
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        JournalEvent.Kind[] kinds = JournalEvent.Kind.values();
+        ParkingType[] parkingTypes = ParkingType.values();
+        int kind = record[24];
+        int parkingType = record[25];
+        int plateLength = record[27];
+        if (buffer.getLong(0) != sequence || storedCrc != (int) crc.getValue() || kind < 1 || kind > kinds.length
+                || parkingType < 0 || parkingType > parkingTypes.length || plateLength < 0
+                || plateLength > MAX_PLATE_BYTES) {
+            return null;
+        }
+        return new JournalEvent(sequence, kinds[kind - 1], buffer.getLong(8),
+                new String(record, PLATE_OFFSET, plateLength, StandardCharsets.UTF_8),
+                parkingType == 0 ? null : parkingTypes[parkingType - 1], buffer.getInt(16), record[26] != 0);
+    }
+
+    /**
+     * Returns the segment files of a journal, in sequence order.
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        segments.sort(Comparator.comparingLong(GateJournal::firstSequence));
+        return segments;
+    }
+
+    static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static String segmentName(long firstSequence) {
+        return String.format("%020d%s", firstSequence, SEGMENT_SUFFIX);
+    }
+}
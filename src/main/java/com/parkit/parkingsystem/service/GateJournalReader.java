@@ -0,0 +1,64 @@
+package com.parkit.parkingsystem.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Reads the events of a {@link GateJournal} in sequence order. It only needs the segment files, so it can also read
+ * the journal of a stopped instance, e.g. for an audit.
+ */
+public class GateJournalReader {
+
+    private final List<Path> segments;
+    private int segmentIndex;
+    private MappedByteBuffer segment;
+    private long segmentFirstSequence;
+    private long segmentCapacity;
+    private long nextSequence;
+
+    /**
+     * Reads the events of the journal in {@code directory} that come after {@code afterSequence}.
+     */
+    public GateJournalReader(Path directory, long afterSequence) throws IOException {
+        this.segments = GateJournal.segments(directory);
+        this.nextSequence = afterSequence + 1;
+        // a segment ends where the next one starts
+        while (segmentIndex + 1 < segments.size()
+                && GateJournal.firstSequence(segments.get(segmentIndex + 1)) <= nextSequence) {
+            segmentIndex++;
+        }
+    }
+
+    /**
+     * Returns the next event, or null after the last complete one.
+     */
+    public JournalEvent next() throws IOException {
+        while (segmentIndex < segments.size()) {
+            if (segment == null) {
+                Path file = segments.get(segmentIndex);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    segmentCapacity = channel.size() / GateJournal.RECORD_SIZE;
+                }
+                segmentFirstSequence = GateJournal.firstSequence(file);
+                nextSequence = Math.max(nextSequence, segmentFirstSequence);
+            }
+            long index = nextSequence - segmentFirstSequence;
+            if (index < segmentCapacity) {
+                JournalEvent event = GateJournal.decode(segment, (int) index * GateJournal.RECORD_SIZE, nextSequence);
+                if (event != null) {
+                    nextSequence++;
+                    return event;
+                }
+            }
+            // past the last record of this segment
+            segment = null;
+            segmentIndex++;
+        }
+        return null;
+    }
+}
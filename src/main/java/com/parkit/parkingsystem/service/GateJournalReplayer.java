@@ -0,0 +1,175 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Writes the pending events of a {@link GateJournal}, the vehicles let through while the database was down, to the
+ * database through {@link TicketDAO}, in the order they happened.
+ * <p>
+ * Each event is applied in its own transaction and only if the database does not have it yet, so replaying an event
+ * twice is harmless. An entry reserves the spot the vehicle was given, if it is still free, and creates its ticket; a
+ * spot another writer took meanwhile is a conflict, logged and counted, and the ticket is still created so that the
+ * vehicle is billed. An exit closes the open ticket of the vehicle, billed as at the gate, and frees its spot. The
+ * replay stops at the first event the database cannot take, to resume from there on the next run.
+ */
+public class GateJournalReplayer {
+
+    private static final Logger logger = LogManager.getLogger("GateJournalReplayer");
+
+    private enum Outcome {
+        APPLIED,
+        CONFLICTING,
+        SKIPPED,
+        REJECTED
+    }
+
+    private final GateJournal gateJournal;
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final TicketDAO ticketDAO;
+    private final TransactionManager transactionManager;
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private Thread catchUpThread;
+    private volatile boolean running;
+
+    public GateJournalReplayer(GateJournal gateJournal, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO,
+                               TransactionManager transactionManager) {
+        this.gateJournal = gateJournal;
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.ticketDAO = ticketDAO;
+        this.transactionManager = transactionManager;
+    }
+
+    public synchronized JournalReplayStats replay() throws IOException {
+        long eventsRead = 0;
+        long eventsApplied = 0;
+        long eventsConflicting = 0;
+        long eventsSkipped = 0;
+        long eventsRejected = 0;
+        long replayedSequence = gateJournal.getReplayedSequence();
+        boolean complete = true;
+
+        GateJournalReader reader = new GateJournalReader(gateJournal.getDirectory(), replayedSequence);
+        JournalEvent event;
+        while ((event = reader.next()) != null) {
+            eventsRead++;
+            if (event.isPending()) {
+                JournalEvent pendingEvent = event;
+                Outcome outcome;
+                try {
+                    outcome = transactionManager.inTransaction(() -> apply(pendingEvent));
+                } catch (Exception e) {
+                    logger.error("Database unavailable, stopping journal replay at " + event, e);
+                    complete = false;
+                    break;
+                }
+                if (outcome == Outcome.APPLIED) {
+                    eventsApplied++;
+                } else if (outcome == Outcome.CONFLICTING) {
+                    logger.error("Spot " + event.getParkingNumber() + " of journal event " + event + " was taken in "
+                            + "the database meanwhile, the ticket is saved on it anyway: check the spot");
+                    eventsApplied++;
+                    eventsConflicting++;
+                } else if (outcome == Outcome.SKIPPED) {
+                    eventsSkipped++;
+                } else {
+                    logger.error("Leaving out journal event " + event + ", the vehicle has no open ticket");
+                    eventsRejected++;
+                }
+                gateJournal.markReplayed(event.getSequence());
+            }
+            replayedSequence = event.getSequence();
+        }
+        if (complete && replayedSequence > gateJournal.getReplayedSequence()) {
+            gateJournal.markReplayed(replayedSequence);
+        }
+
+        JournalReplayStats stats = new JournalReplayStats(eventsRead, eventsApplied, eventsConflicting, eventsSkipped,
+                eventsRejected, gateJournal.getReplayedSequence(), complete);
+        if (eventsApplied + eventsSkipped + eventsRejected > 0 || !complete) {
+            logger.info("Journal replay done: " + stats);
+        }
+        return stats;
+    }
+
+    // outcomes are returned rather than thrown, so that a failed query still fails the transaction
+    private Outcome apply(JournalEvent event) throws SQLException {
+        String vehicleRegNumber = event.getVehicleRegNumber();
+        Ticket openTicket = ticketDAO.getOpenTicket(vehicleRegNumber);
+        if (event.getKind() == JournalEvent.Kind.ENTRY) {
+            if (openTicket != null) {
+                return Outcome.SKIPPED;
+            }
+            ParkingSpot parkingSpot = new ParkingSpot(event.getParkingNumber(), event.getParkingType(), false);
+            // the conditional update leaves a spot another writer holds alone
+            boolean reserved = parkingSpotDAO.reserveSlot(parkingSpot.getId());
+            Ticket ticket = new Ticket();
+            ticket.setParkingSpot(parkingSpot);
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setPrice(0);
+            ticket.setInTime(event.getTime());
+            ticketDAO.saveTicket(ticket);
+            return reserved ? Outcome.APPLIED : Outcome.CONFLICTING;
+        }
+        if (openTicket == null || openTicket.getInTime().after(event.getTime())) {
+            return Outcome.REJECTED;
+        }
+        openTicket.setOutTime(event.getTime());
+        fareCalculatorService.calculateFare(openTicket, ticketDAO.getNbTicket(vehicleRegNumber) > 1);
+        if (!ticketDAO.updateTicket(openTicket)) {
+            throw new SQLException("Unable to update ticket information");
+        }
+        ParkingSpot parkingSpot = openTicket.getParkingSpot();
+        parkingSpot.setAvailable(true);
+        parkingSpotDAO.updateParking(parkingSpot);
+        return Outcome.APPLIED;
+    }
+
+    /**
+     * Replays pending events in the background, checking for them every {@code pollMillis}.
+     */
+    public synchronized void start(long pollMillis) {
+        running = true;
+        catchUpThread = new Thread(() -> catchUpLoop(pollMillis), "gate-journal-replayer");
+        catchUpThread.setDaemon(true);
+        catchUpThread.start();
+    }
+
+    public void close() {
+        running = false;
+        Thread thread = catchUpThread;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void catchUpLoop(long pollMillis) {
+        while (running) {
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (gateJournal.hasPendingEvents()) {
+                try {
+                    replay();
+                } catch (IOException e) {
+                    logger.error("Error reading gate journal " + gateJournal.getDirectory(), e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.parkit.parkingsystem.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Load test of a {@link GateHttpServer}: each worker stands for a gate, parking then billing its own vehicle over and
+ * over, as fast as the server answers.
+ */
+public class GateLoadClient {
+
+    private static final Logger logger = LogManager.getLogger("GateLoadClient");
+
+    private final String baseUrl;
+    private final int workers;
+
+    public GateLoadClient(String baseUrl, int workers) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.workers = workers;
+    }
+
+    /**
+     * Runs {@code visitsPerWorker} entries and exits on each worker, and returns the latency of the requests.
+     */
+    public LoadTestStats run(int visitsPerWorker) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        List<Future<Worker>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            for (int i = 1; i <= workers; i++) {
+                Worker worker = new Worker("LOAD" + i, visitsPerWorker);
+                futures.add(executor.submit(worker, worker));
+            }
+            long requests = 0;
+            long rejectedRequests = 0;
+            long failedRequests = 0;
+            long[] latencies = new long[2 * workers * visitsPerWorker];
+            int nbLatencies = 0;
+            for (Future<Worker> future : futures) {
+                Worker worker = future.get();
+                requests += worker.requests;
+                rejectedRequests += worker.rejectedRequests;
+                failedRequests += worker.failedRequests;
+                System.arraycopy(worker.latencies, 0, latencies, nbLatencies, worker.nbLatencies);
+                nbLatencies += worker.nbLatencies;
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+            Arrays.sort(latencies, 0, nbLatencies);
+            LoadTestStats stats = new LoadTestStats(requests, rejectedRequests, failedRequests, elapsedMillis,
+                    GateEventReplayer.percentileMicros(latencies, nbLatencies, 50),
+                    GateEventReplayer.percentileMicros(latencies, nbLatencies, 99));
+            logger.info("Load test done: " + stats);
+            return stats;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Load test worker failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final String vehicleRegNumber;
+        private final int visits;
+        private final long[] latencies;
+        private int nbLatencies;
+        private long requests;
+        private long rejectedRequests;
+        private long failedRequests;
+
+        private Worker(String vehicleRegNumber, int visits) {
+            this.vehicleRegNumber = vehicleRegNumber;
+            this.visits = visits;
+            this.latencies = new long[2 * visits];
+        }
+
+        @Override
+        public void run() {
+            try {
+                String plate = URLEncoder.encode(vehicleRegNumber, "UTF-8");
+                for (int i = 0; i < visits; i++) {
+                    post("/entry?type=CAR&plate=" + plate);
+                    post("/exit?plate=" + plate);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void post(String path) {
+            requests++;
+            long requestStart = System.nanoTime();
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+                connection.setRequestMethod("POST");
+                int status = connection.getResponseCode();
+                // the body is read to the end so that the connection is kept alive for the next request
+                try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                    if (body != null) {
+                        byte[] buffer = new byte[512];
+                        while (body.read(buffer) != -1) {
+                            // drained
+                        }
+                    }
+                }
+                latencies[nbLatencies++] = System.nanoTime() - requestStart;
+                if (status == 409) {
+                    rejectedRequests++;
+                } else if (status != 200) {
+                    failedRequests++;
+                }
+            } catch (IOException e) {
+                logger.error("Request " + path + " failed", e);
+                failedRequests++;
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.Date;
+
+/**
+ * Outcome of a vehicle entering or leaving through {@link ParkingService}: the spot, times and fare of the ticket if
+ * the vehicle was let through, or the reason it was not.
+ */
+public class GateResult {
+    private final boolean accepted;
+    private final String vehicleRegNumber;
+    private final int parkingNumber;
+    private final ParkingType parkingType;
+    private final Date inTime;
+    private final Date outTime;
+    private final double fare;
+    private final boolean discount;
+    private final String rejectionReason;
+    private final boolean pending;
+
+    private GateResult(boolean accepted, String vehicleRegNumber, int parkingNumber, ParkingType parkingType,
+                       Date inTime, Date outTime, double fare, boolean discount, String rejectionReason,
+                       boolean pending) {
+        this.accepted = accepted;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.parkingNumber = parkingNumber;
+        this.parkingType = parkingType;
+        this.inTime = inTime;
+        this.outTime = outTime;
+        this.fare = fare;
+        this.discount = discount;
+        this.rejectionReason = rejectionReason;
+        this.pending = pending;
+    }
+
+    /**
+     * Result of a vehicle let through with {@code ticket}; {@code discount} tells if its fare is, or will be,
+     * discounted as a recurring user.
+     */
+    public static GateResult accepted(Ticket ticket, boolean discount) {
+        return new GateResult(true, ticket.getVehicleRegNumber(), ticket.getParkingSpot().getId(),
+                ticket.getParkingSpot().getParkingType(), ticket.getInTime(), ticket.getOutTime(), ticket.getPrice(),
+                discount, null, false);
+    }
+
+    /**
+     * Result of a vehicle let through while the database was down, with what is known of its ticket: the spot and
+     * in-time of an entry, the out-time of an exit. The ticket is written, and an exit billed, once the database is
+     * back.
+     */
+    public static GateResult pending(Ticket ticket) {
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        return new GateResult(true, ticket.getVehicleRegNumber(), parkingSpot == null ? 0 : parkingSpot.getId(),
+                parkingSpot == null ? null : parkingSpot.getParkingType(), ticket.getInTime(), ticket.getOutTime(), 0,
+                false, null, true);
+    }
+
+    public static GateResult rejected(String vehicleRegNumber, String reason) {
+        return new GateResult(false, vehicleRegNumber, 0, null, null, null, 0, false, reason, false);
+    }
+
+    public boolean isAccepted() {
+        return accepted;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public int getParkingNumber() {
+        return parkingNumber;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    public Date getInTime() {
+        return inTime;
+    }
+
+    public Date getOutTime() {
+        return outTime;
+    }
+
+    public double getFare() {
+        return fare;
+    }
+
+    public boolean isDiscount() {
+        return discount;
+    }
+
+    public String getRejectionReason() {
+        return rejectionReason;
+    }
+
+    /**
+     * Returns true if the vehicle was let through while the database was down and its ticket is not written yet.
+     */
+    public boolean isPending() {
+        return pending;
+    }
+
+    @Override
+    public String toString() {
+        if (!accepted) {
+            return "GateResult{vehicle=" + vehicleRegNumber + ", rejected=" + rejectionReason + "}";
+        }
+        return "GateResult{vehicle=" + vehicleRegNumber + ", spot=" + parkingNumber + ", type=" + parkingType
+                + ", in=" + inTime + ", out=" + outTime + ", fare=" + fare + ", discount=" + discount
+                + (pending ? ", pending" : "") + "}";
+    }
+}
@@ -1,11 +1,18 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Date;
+
 public class InteractiveShell {
 
     private static final Logger logger = LogManager.getLogger("InteractiveShell");
@@ -18,18 +25,18 @@ public class InteractiveShell {
         InputReaderUtil inputReaderUtil = new InputReaderUtil();
         ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
         TicketDAO ticketDAO = new TicketDAO();
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        ParkingService parkingService = createParkingService(parkingSpotDAO, ticketDAO);
 
         while(continueApp){
             loadMenu();
             int option = inputReaderUtil.readSelection();
             switch(option){
                 case 1: {
-                    parkingService.processIncomingVehicle();
+                    processIncomingVehicle(inputReaderUtil, parkingService);
                     break;
                 }
                 case 2: {
-                    parkingService.processExitingVehicle();
+                    processExitingVehicle(inputReaderUtil, parkingService);
                     break;
                 }
                 case 3: {
@@ -40,6 +47,153 @@ public class InteractiveShell {
                 default: System.out.println("Unsupported option. Please enter a number corresponding to the provided menu");
             }
         }
+        parkingService.closeJournal();
+        ticketDAO.closeWriteBehind();
+        ticketDAO.saveKnownVehicleFilter();
+        parkingSpotDAO.closeSnapshots();
+    }
+
+    /**
+     * Sets the DAOs up as configured by the system properties and returns a service driving them. The caller closes
+     * the ticket write-behind queue, if any, with {@link TicketDAO#closeWriteBehind()}, then saves the known vehicle
+     * filter with {@link TicketDAO#saveKnownVehicleFilter()} and the spot snapshot with
+     * {@link ParkingSpotDAO#closeSnapshots()}, after closing the gate journal of the service, if any, with
+     * {@link ParkingService#closeJournal()}.
+     */
+    public static ParkingService createParkingService(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+        String spotSnapshotFile = System.getProperty("parkit.spots.snapshotFile");
+        if (spotSnapshotFile != null) {
+            parkingSpotDAO.enableSnapshots(Paths.get(spotSnapshotFile),
+                    Long.getLong("parkit.spots.snapshotIntervalMillis", 10000),
+                    Integer.getInteger("parkit.spots.reconcileChunkSize", 500));
+        } else {
+            parkingSpotDAO.loadFreeSpotIndex();
+            parkingSpotDAO.loadOccupancy();
+        }
+        int recurringUserCacheSize = Integer.getInteger("parkit.ticket.recurringUserCacheSize", 10000);
+        if (recurringUserCacheSize > 0) {
+            ticketDAO.enableRecurringUserCache(recurringUserCacheSize,
+                    Long.getLong("parkit.ticket.recurringUserCacheTtlMillis", 24 * 60 * 60 * 1000L));
+            ticketDAO.warmRecurringUserCache(recurringUserCacheSize);
+        }
+        // off by default: the filter only learns the tickets this process saves, see enableKnownVehicleFilter
+        long knownVehicles = Long.getLong("parkit.ticket.knownVehicles", 0);
+        if (knownVehicles > 0) {
+            String knownVehiclesFile = System.getProperty("parkit.ticket.knownVehiclesFile");
+            ticketDAO.enableKnownVehicleFilter(knownVehicles,
+                    Double.parseDouble(System.getProperty("parkit.ticket.knownVehiclesFpp", "0.01")),
+                    knownVehiclesFile == null ? null : Paths.get(knownVehiclesFile));
+        }
+        int writeBehindBatchSize = Integer.getInteger("parkit.ticket.writeBehindBatchSize", 0);
+        if (writeBehindBatchSize > 0) {
+            ticketDAO.enableWriteBehind(writeBehindBatchSize,
+                    Long.getLong("parkit.ticket.writeBehindMaxDelayMillis", 50));
+        }
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO,
+                new TransactionManager(ticketDAO.dataBaseConfig));
+        String journalDir = System.getProperty("parkit.journal.dir");
+        if (journalDir != null) {
+            try {
+                parkingService.enableJournal(Paths.get(journalDir),
+                        Integer.getInteger("parkit.journal.segmentRecords", 65536),
+                        Integer.getInteger("parkit.journal.retainedSegments", 16),
+                        Long.getLong("parkit.journal.replayPollMillis", 5000));
+            } catch (IOException e) {
+                logger.error("Unable to open gate journal " + journalDir + ", running without it", e);
+            }
+        }
+        // only now that the journal is replayed, so that the reconcile does not undo the spots it wrote
+        parkingSpotDAO.startSnapshots();
+        return parkingService;
+    }
+
+    /**
+     * Asks for the type and plate of an entering vehicle, parks it and prints its ticket.
+     */
+    public static GateResult processIncomingVehicle(InputReaderUtil inputReaderUtil, ParkingService parkingService) {
+        ParkingType parkingType;
+        try {
+            parkingType = readVehicleType(inputReaderUtil);
+        } catch (IllegalArgumentException ie) {
+            logger.error("Error parsing user input for type of vehicle", ie);
+            return null;
+        }
+        ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable(parkingType);
+        if (parkingSpot == null) {
+            return null;
+        }
+        String vehicleRegNumber = readVehicleRegNumber(inputReaderUtil);
+        if (vehicleRegNumber == null) {
+            return null;
+        }
+
+        GateResult result = parkingService.processIncomingVehicle(parkingType, vehicleRegNumber, new Date());
+        if (result.isAccepted()) {
+            if (result.isDiscount()) {
+                System.out.println(
+                        "Welcome! As a recurring user of our parking lot, you'll benefit from a 5% discount.");
+            }
+            System.out.println(result.isPending() ? "Generated Ticket, it will be saved in DB once it is back"
+                    : "Generated Ticket and saved in DB");
+            System.out.println("Please park your vehicle in spot number:" + result.getParkingNumber());
+            System.out.println("Recorded in-time for vehicle number:" + vehicleRegNumber + " is:"
+                    + result.getInTime());
+        }
+        return result;
+    }
+
+    /**
+     * Asks for the plate of an exiting vehicle, bills it and prints the fare.
+     */
+    public static GateResult processExitingVehicle(InputReaderUtil inputReaderUtil, ParkingService parkingService) {
+        String vehicleRegNumber = readVehicleRegNumber(inputReaderUtil);
+        if (vehicleRegNumber == null) {
+            return null;
+        }
+
+        GateResult result = parkingService.processExitingVehicle(vehicleRegNumber, new Date());
+        if (result.isAccepted() && result.isPending()) {
+            System.out.println("The parking fare will be billed later");
+            System.out.println("Recorded out-time for vehicle number:" + vehicleRegNumber + " is:"
+                    + result.getOutTime());
+        } else if (result.isAccepted()) {
+            System.out.println("Please pay the parking fare:" + result.getFare());
+            System.out.println("Recorded out-time for vehicle number:" + vehicleRegNumber + " is:"
+                    + result.getOutTime());
+        } else {
+            System.out.println("Unable to update ticket information. Error occurred");
+        }
+        return result;
+    }
+
+    public static ParkingType readVehicleType(InputReaderUtil inputReaderUtil) {
+        System.out.println("Please select vehicle type from menu");
+        System.out.println("1 CAR");
+        System.out.println("2 BIKE");
+
+        int input = inputReaderUtil.readSelection();
+        switch (input) {
+            case 1: {
+                return ParkingType.CAR;
+            }
+            case 2: {
+                return ParkingType.BIKE;
+            }
+            default: {
+                System.out.println("Incorrect input provided");
+                throw new IllegalArgumentException("Entered input is invalid");
+            }
+        }
+    }
+
+    private static String readVehicleRegNumber(InputReaderUtil inputReaderUtil) {
+        System.out.println("Please type the vehicle registration number and press enter key");
+        try {
+            return inputReaderUtil.readVehicleRegistrationNumber();
+        } catch (Exception e) {
+            logger.error("Error reading the vehicle registration number", e);
+            return null;
+        }
     }
 
     private static void loadMenu(){
@@ -0,0 +1,84 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.Date;
+
+/**
+ * A vehicle let in or out by a gate, as recorded in the {@link GateJournal}.
+ * <p>
+ * A pending event was let through while the database could not be written: it is only in the journal until
+ * {@link GateJournalReplayer} writes it to the database. A {@link Kind#CANCEL} event records that the last event of
+ * its vehicle, journaled just before its transaction was committed, was rolled back: the gate refused the vehicle.
+ */
+public class JournalEvent {
+
+    public enum Kind {
+        ENTRY,
+        EXIT,
+        CANCEL
+    }
+
+    private final long sequence;
+    private final Kind kind;
+    private final long timeMillis;
+    private final String vehicleRegNumber;
+    private final ParkingType parkingType;
+    private final int parkingNumber;
+    private final boolean pending;
+
+    public JournalEvent(long sequence, Kind kind, long timeMillis, String vehicleRegNumber, ParkingType parkingType,
+                        int parkingNumber, boolean pending) {
+        this.sequence = sequence;
+        this.kind = kind;
+        this.timeMillis = timeMillis;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.parkingType = parkingType;
+        this.parkingNumber = parkingNumber;
+        this.pending = pending;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Date getTime() {
+        return new Date(timeMillis);
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    /**
+     * Returns the type of the spot, or null for a pending exit, whose spot is not known until it is replayed.
+     */
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    /**
+     * Returns the spot taken or freed by the vehicle, or 0 for a pending exit.
+     */
+    public int getParkingNumber() {
+        return parkingNumber;
+    }
+
+    public boolean isPending() {
+        return pending;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalEvent{sequence=" + sequence + ", " + kind + ", vehicle=" + vehicleRegNumber + ", time="
+                + timeMillis + ", type=" + parkingType + ", spot=" + parkingNumber + ", pending=" + pending + "}";
+    }
+}
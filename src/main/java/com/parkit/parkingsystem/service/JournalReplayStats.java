@@ -0,0 +1,74 @@
+package com.parkit.parkingsystem.service;
+
+public class JournalReplayStats {
+    private final long eventsRead;
+    private final long eventsApplied;
+    private final long eventsConflicting;
+    private final long eventsSkipped;
+    private final long eventsRejected;
+    private final long replayedSequence;
+    private final boolean complete;
+
+    public JournalReplayStats(long eventsRead, long eventsApplied, long eventsConflicting, long eventsSkipped,
+                              long eventsRejected, long replayedSequence, boolean complete) {
+        this.eventsRead = eventsRead;
+        this.eventsApplied = eventsApplied;
+        this.eventsConflicting = eventsConflicting;
+        this.eventsSkipped = eventsSkipped;
+        this.eventsRejected = eventsRejected;
+        this.replayedSequence = replayedSequence;
+        this.complete = complete;
+    }
+
+    public long getEventsRead() {
+        return eventsRead;
+    }
+
+    /**
+     * Returns the number of pending events written to the database.
+     */
+    public long getEventsApplied() {
+        return eventsApplied;
+    }
+
+    /**
+     * Returns the number of applied entries whose spot was taken in the database meanwhile. Their ticket is saved on
+     * that spot anyway and they are logged, for the spot to be checked.
+     */
+    public long getEventsConflicting() {
+        return eventsConflicting;
+    }
+
+    /**
+     * Returns the number of pending events the database already had.
+     */
+    public long getEventsSkipped() {
+        return eventsSkipped;
+    }
+
+    /**
+     * Returns the number of pending events that do not match the database, e.g. the exit of a vehicle with no
+     * open ticket. They are logged and left out.
+     */
+    public long getEventsRejected() {
+        return eventsRejected;
+    }
+
+    public long getReplayedSequence() {
+        return replayedSequence;
+    }
+
+    /**
+     * Returns false if the replay stopped because the database could still not be written.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        return "read=" + eventsRead + ", applied=" + eventsApplied + ", conflicting=" + eventsConflicting
+                + ", skipped=" + eventsSkipped + ", rejected="
+                + eventsRejected + ", replayedSequence=" + replayedSequence + ", complete=" + complete;
+    }
+}
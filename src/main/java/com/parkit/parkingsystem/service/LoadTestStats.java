@@ -0,0 +1,55 @@
+package com.parkit.parkingsystem.service;
+
+public class LoadTestStats {
+    private final long requests;
+    private final long rejectedRequests;
+    private final long failedRequests;
+    private final long elapsedMillis;
+    private final long p50Micros;
+    private final long p99Micros;
+
+    public LoadTestStats(long requests, long rejectedRequests, long failedRequests, long elapsedMillis,
+                         long p50Micros, long p99Micros) {
+        this.requests = requests;
+        this.rejectedRequests = rejectedRequests;
+        this.failedRequests = failedRequests;
+        this.elapsedMillis = elapsedMillis;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getRejectedRequests() {
+        return rejectedRequests;
+    }
+
+    public long getFailedRequests() {
+        return failedRequests;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getRequestsPerSecond() {
+        return elapsedMillis == 0 ? requests : requests * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "requests=" + requests + ", rejectedRequests=" + rejectedRequests + ", failedRequests="
+                + failedRequests + ", elapsedMillis=" + elapsedMillis + ", requestsPerSecond="
+                + Math.round(getRequestsPerSecond()) + ", p50Micros=" + p50Micros + ", p99Micros=" + p99Micros;
+    }
+}
@@ -1,85 +1,183 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.config.TransactionManager;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
-import com.parkit.parkingsystem.util.InputReaderUtil;
+import com.parkit.parkingsystem.util.Metrics;
+import com.parkit.parkingsystem.util.Metrics.Operation;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
 import java.util.Date;
 
+/**
+ * Lets vehicles in and out of the parking lot. It neither reads input nor prints anything, so it can be driven by
+ * any number of gates at once: each call returns a {@link GateResult} for the caller to show.
+ */
 public class ParkingService {
 
     private static final Logger logger = LogManager.getLogger("ParkingService");
 
     private static final FareCalculatorService fareCalculatorService = new FareCalculatorService();
 
-    private final InputReaderUtil inputReaderUtil;
     private final ParkingSpotDAO parkingSpotDAO;
     private final TicketDAO ticketDAO;
+    private final TransactionManager transactionManager;
 
-    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
-        this.inputReaderUtil = inputReaderUtil;
+    // Journal of the vehicles let through; null means no journal, and gates close while the database is down
+    private volatile GateJournal gateJournal;
+    private GateJournalReplayer gateJournalReplayer;
+
+    public ParkingService(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+        this(parkingSpotDAO, ticketDAO, TransactionManager.autoCommit());
+    }
+
+    public ParkingService(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO, TransactionManager transactionManager) {
         this.parkingSpotDAO = parkingSpotDAO;
         this.ticketDAO = ticketDAO;
+        this.transactionManager = transactionManager;
     }
 
-    public void processIncomingVehicle() {
-        try {
-            ParkingSpot parkingSpot = getNextParkingNumberIfAvailable();
-            if (parkingSpot != null && parkingSpot.getId() > 0) {
-                String vehicleRegNumber = getVehicleRegNumber();
-                parkingSpot.setAvailable(false);
-
-                parkingSpotDAO.updateParking(parkingSpot);
+    /**
+     * Records every vehicle let in or out in a {@link GateJournal} in {@code directory}, before its transaction
+     * commits: a vehicle whose event cannot be journaled is refused, and an event whose transaction then rolls back is
+     * followed by a {@link JournalEvent.Kind#CANCEL} record. While the database cannot be reached, gates keep running
+     * on the spots known in memory: vehicles are let through and only recorded in the journal, then written to the
+     * database by a {@link GateJournalReplayer} that checks for them every {@code replayPollMillis}. Events left
+     * pending by a previous run are replayed first.
+     */
+    public void enableJournal(Path directory, int recordsPerSegment, int retainedSegments, long replayPollMillis)
+            throws IOException {
+        GateJournal journal = GateJournal.open(directory, recordsPerSegment, retainedSegments);
+        GateJournalReplayer replayer = new GateJournalReplayer(journal, parkingSpotDAO, ticketDAO, transactionManager);
+        if (journal.hasPendingEvents()) {
+            replayer.replay();
+        }
+        replayer.start(replayPollMillis);
+        gateJournalReplayer = replayer;
+        gateJournal = journal;
+    }
 
-                if (ticketDAO.getNbTicket(vehicleRegNumber) > 0) {
-                    System.out.println(
-                            "Welcome! As a recurring user of our parking lot, you'll benefit from a 5% discount.");
-                }
+    /**
+     * Stops the background replay and closes the journal; pending events are replayed on the next start.
+     */
+    public void closeJournal() {
+        GateJournal journal = gateJournal;
+        if (journal == null) {
+            return;
+        }
+        gateJournal = null;
+        gateJournalReplayer.close();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.error("Error closing gate journal " + journal.getDirectory(), e);
+        }
+    }
 
-                Date inTime = new Date();
+    /**
+     * Parks a vehicle entering at {@code inTime} in the first free spot of its type.
+     */
+    public GateResult processIncomingVehicle(ParkingType parkingType, String vehicleRegNumber, Date inTime) {
+        long start = Metrics.start();
+        GateResult result = enter(parkingType, vehicleRegNumber, inTime);
+        if (!result.isAccepted()) {
+            Metrics.recordError(Operation.GATE_ENTRY);
+        }
+        Metrics.record(Operation.GATE_ENTRY, start);
+        return result;
+    }
 
-                Ticket ticket = new Ticket();
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(0);
-                ticket.setInTime(inTime);
-                ticket.setOutTime(null);
+    private GateResult enter(ParkingType parkingType, String vehicleRegNumber, Date inTime) {
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(0);
+        ticket.setInTime(inTime);
+        ticket.setOutTime(null);
 
+        if (parkingSpotDAO.isFull(parkingType)) {
+            return GateResult.rejected(vehicleRegNumber, "No free " + parkingType + " spot, the parking lot is full");
+        }
+        Boolean recurringUser;
+        try {
+            // spot reservation, recurring user lookup and ticket insert are committed together
+            recurringUser = transactionManager.inTransaction(() -> {
+                // claim whichever spot is free now, another gate may have taken the one last offered
+                int reservedNumber = parkingSpotDAO.reserveNextAvailableSlot(parkingType);
+                if (reservedNumber <= 0) {
+                    // returned rather than thrown, so that a failed reservation query still fails the transaction
+                    return null;
+                }
+                ticket.setParkingSpot(new ParkingSpot(reservedNumber, parkingType, false));
+                boolean hasPreviousTickets = ticketDAO.getNbTicket(vehicleRegNumber) > 0;
                 ticketDAO.saveTicket(ticket);
-
-                System.out.println("Generated Ticket and saved in DB");
-                System.out.println("Please park your vehicle in spot number:" + parkingSpot.getId());
-                System.out.println("Recorded in-time for vehicle number:" + vehicleRegNumber + " is:" + inTime);
+                journalBeforeCommit(JournalEvent.Kind.ENTRY, inTime, vehicleRegNumber, parkingType, reservedNumber);
+                return hasPreviousTickets;
+            });
+        } catch (SQLException e) {
+            if (gateJournal != null && isConnectionFailure(e)) {
+                return enterOffline(ticket, parkingType, e);
             }
+            logger.error("Unable to process incoming vehicle", e);
+            return GateResult.rejected(vehicleRegNumber, e.getMessage());
         } catch (Exception e) {
             logger.error("Unable to process incoming vehicle", e);
+            return GateResult.rejected(vehicleRegNumber, e.getMessage());
+        }
+        if (recurringUser == null) {
+            String reason = "Unable to reserve a parking spot. Parking slots might be full";
+            logger.error("Unable to process incoming vehicle: " + reason);
+            return GateResult.rejected(vehicleRegNumber, reason);
         }
+        return GateResult.accepted(ticket, recurringUser);
     }
 
-    private String getVehicleRegNumber() throws Exception {
-        System.out.println("Please type the vehicle registration number and press enter key");
-        return inputReaderUtil.readVehicleRegistrationNumber();
+    private GateResult enterOffline(Ticket ticket, ParkingType parkingType, SQLException cause) {
+        String vehicleRegNumber = ticket.getVehicleRegNumber();
+        int parkingNumber = parkingSpotDAO.claimOfflineSlot(parkingType);
+        if (parkingNumber <= 0) {
+            logger.error("Unable to process incoming vehicle", cause);
+            return GateResult.rejected(vehicleRegNumber, cause.getMessage());
+        }
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+        try {
+            gateJournal.append(JournalEvent.Kind.ENTRY, ticket.getInTime().getTime(), vehicleRegNumber, parkingType,
+                    parkingNumber, true);
+        } catch (IOException | RuntimeException e) {
+            parkingSpotDAO.releaseOfflineSlot(parkingNumber);
+            logger.error("Unable to process incoming vehicle, the journal could not be written", e);
+            return GateResult.rejected(vehicleRegNumber, cause.getMessage());
+        }
+        logger.warn("Database unavailable, vehicle " + vehicleRegNumber + " let in on spot " + parkingNumber
+                + " and kept in the journal", cause);
+        return GateResult.pending(ticket);
     }
 
-    public ParkingSpot getNextParkingNumberIfAvailable() {
-        int parkingNumber;
+    /**
+     * Returns the spot a vehicle of this type would be offered now, or null if there is none. The spot is not
+     * reserved: {@link #processIncomingVehicle(ParkingType, String, Date)} takes whichever is free when it runs.
+     */
+    public ParkingSpot getNextParkingNumberIfAvailable(ParkingType parkingType) {
         ParkingSpot parkingSpot = null;
+        if (parkingSpotDAO.isFull(parkingType)) {
+            return null;
+        }
 
         try {
-            ParkingType parkingType = getVehicleType();
-            parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
+            int parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
             if (parkingNumber > 0) {
                 parkingSpot = new ParkingSpot(parkingNumber, parkingType, true);
             } else {
                 throw new Exception("Error fetching parking number from DB. Parking slots might be full");
             }
-        } catch (IllegalArgumentException ie) {
-            logger.error("Error parsing user input for type of vehicle", ie);
         } catch (Exception e) {
             logger.error("Error fetching next available parking slot", e);
         }
@@ -87,55 +185,134 @@ public class ParkingService {
         return parkingSpot;
     }
 
-    private ParkingType getVehicleType() {
-        System.out.println("Please select vehicle type from menu");
-        System.out.println("1 CAR");
-        System.out.println("2 BIKE");
+    /**
+     * Returns the number of free spots of the given type, or -1 if it could not be counted.
+     */
+    public long getFreeSpots(ParkingType parkingType) {
+        return parkingSpotDAO.getFreeSpots(parkingType);
+    }
 
-        int input = inputReaderUtil.readSelection();
-        switch (input) {
-            case 1: {
-                return ParkingType.CAR;
-            }
-            case 2: {
-                return ParkingType.BIKE;
-            }
-            default: {
-                System.out.println("Incorrect input provided");
-                throw new IllegalArgumentException("Entered input is invalid");
-            }
+    /**
+     * Bills and releases the spot of a vehicle leaving at {@code outTime}.
+     */
+    public GateResult processExitingVehicle(String vehicleRegNumber, Date outTime) {
+        long start = Metrics.start();
+        GateResult result = exit(vehicleRegNumber, outTime);
+        if (!result.isAccepted()) {
+            Metrics.recordError(Operation.GATE_EXIT);
         }
+        Metrics.record(Operation.GATE_EXIT, start);
+        return result;
     }
 
-    public void processExitingVehicle() {
+    private GateResult exit(String vehicleRegNumber, Date outTime) {
+        GateResult result;
         try {
-            String vehicleRegNumber = getVehicleRegNumber();
-            Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
-
-            Date outTime = new Date();
-            ticket.setOutTime(outTime);
+            // ticket lookup, fare, ticket update and spot release are committed together
+            result = transactionManager.inTransaction(() -> {
+                Ticket ticket = ticketDAO.getOpenTicket(vehicleRegNumber);
+                if (ticket == null) {
+                    // returned rather than thrown, so that a failed lookup still fails the transaction
+                    return null;
+                }
+                ticket.setOutTime(outTime);
 
-            int nbTicket = ticketDAO.getNbTicket(vehicleRegNumber);
+                boolean discount = ticketDAO.getNbTicket(vehicleRegNumber) > 1;
+                fareCalculatorService.calculateFare(ticket, discount);
 
-            if (nbTicket > 1) {
-                fareCalculatorService.calculateFare(ticket, true);
-            } else {
-                fareCalculatorService.calculateFare(ticket);
-            }
-
-            if (ticketDAO.updateTicket(ticket)) {
+                if (!ticketDAO.updateTicket(ticket)) {
+                    return GateResult.rejected(vehicleRegNumber, "Unable to update ticket information");
+                }
                 ParkingSpot parkingSpot = ticket.getParkingSpot();
                 parkingSpot.setAvailable(true);
                 parkingSpotDAO.updateParking(parkingSpot);
-
-                System.out.println("Please pay the parking fare:" + ticket.getPrice());
-                System.out.println(
-                        "Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:" + outTime);
-            } else {
-                System.out.println("Unable to update ticket information. Error occurred");
+                journalBeforeCommit(JournalEvent.Kind.EXIT, outTime, vehicleRegNumber, parkingSpot.getParkingType(),
+                        parkingSpot.getId());
+                return GateResult.accepted(ticket, discount);
+            });
+        } catch (SQLException e) {
+            if (gateJournal != null && isConnectionFailure(e)) {
+                return exitOffline(vehicleRegNumber, outTime, e.getMessage(), e);
             }
+            logger.error("Unable to process exiting vehicle", e);
+            return GateResult.rejected(vehicleRegNumber, e.getMessage());
         } catch (Exception e) {
             logger.error("Unable to process exiting vehicle", e);
+            return GateResult.rejected(vehicleRegNumber, e.getMessage());
+        }
+        if (result == null) {
+            String reason = "No parked vehicle found with registration number " + vehicleRegNumber;
+            GateJournal journal = gateJournal;
+            if (journal != null && journal.hasPendingEntry(vehicleRegNumber)) {
+                // let in while the database was down, its ticket is only in the journal until replayed
+                return exitOffline(vehicleRegNumber, outTime, reason, null);
+            }
+            logger.error("Unable to process exiting vehicle: " + reason);
+            return GateResult.rejected(vehicleRegNumber, reason);
+        }
+        return result;
+    }
+
+    private GateResult exitOffline(String vehicleRegNumber, Date outTime, String reason, SQLException cause) {
+        try {
+            gateJournal.append(JournalEvent.Kind.EXIT, outTime.getTime(), vehicleRegNumber, null, 0, true);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Unable to process exiting vehicle, the journal could not be written", e);
+            return GateResult.rejected(vehicleRegNumber, reason);
+        }
+        logger.warn("Vehicle " + vehicleRegNumber + " let out and kept in the journal, to be billed once it is "
+                + "written to the database", cause);
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setOutTime(outTime);
+        return GateResult.pending(ticket);
+    }
+
+    /**
+     * Journals the event of the running transaction once its work has succeeded, before it commits, so that the
+     * journal has every event the database has; an append that fails rolls the transaction back.
+     */
+    private void journalBeforeCommit(JournalEvent.Kind kind, Date time, String vehicleRegNumber,
+                                     ParkingType parkingType, int parkingNumber) throws Exception {
+        GateJournal journal = gateJournal;
+        if (journal == null) {
+            return;
+        }
+        TransactionManager.runBeforeCommit(() -> {
+            long sequence = journal.append(kind, time.getTime(), vehicleRegNumber, parkingType, parkingNumber, false);
+            // the commit may still fail, and the journal must not keep an event the gate refused
+            TransactionManager.runAfterRollback(() -> cancel(journal, sequence, time, vehicleRegNumber, parkingType,
+                    parkingNumber));
+            return sequence;
+        });
+    }
+
+    private void cancel(GateJournal journal, long sequence, Date time, String vehicleRegNumber,
+                        ParkingType parkingType, int parkingNumber) {
+        try {
+            journal.append(JournalEvent.Kind.CANCEL, time.getTime(), vehicleRegNumber, parkingType, parkingNumber,
+                    false);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Unable to journal the cancellation of event " + sequence + " of vehicle "
+                    + vehicleRegNumber, e);
+        }
+    }
+
+    /**
+     * Returns true if {@code e} means the database could not be reached, as opposed to a statement it refused: only
+     * then are vehicles let through on the journal alone.
+     */
+    private static boolean isConnectionFailure(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientConnectionException || t instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            // SQLState class 08 is "connection exception"
+            if (t instanceof SQLException && ((SQLException) t).getSQLState() != null
+                    && ((SQLException) t).getSQLState().startsWith("08")) {
+                return true;
+            }
         }
+        return false;
     }
 }
@@ -0,0 +1,72 @@
+package com.parkit.parkingsystem.service;
+
+public class ReplayStats {
+    private final long entries;
+    private final long rejectedEntries;
+    private final long exits;
+    private final long rejectedExits;
+    private final long invalidEvents;
+    private final long elapsedMillis;
+    private final long p50Micros;
+    private final long p99Micros;
+
+    public ReplayStats(long entries, long rejectedEntries, long exits, long rejectedExits, long invalidEvents,
+                       long elapsedMillis, long p50Micros, long p99Micros) {
+        this.entries = entries;
+        this.rejectedEntries = rejectedEntries;
+        this.exits = exits;
+        this.rejectedExits = rejectedExits;
+        this.invalidEvents = invalidEvents;
+        this.elapsedMillis = elapsedMillis;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public long getRejectedEntries() {
+        return rejectedEntries;
+    }
+
+    public long getExits() {
+        return exits;
+    }
+
+    public long getRejectedExits() {
+        return rejectedExits;
+    }
+
+    public long getInvalidEvents() {
+        return invalidEvents;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public long getEvents() {
+        return entries + rejectedEntries + exits + rejectedExits;
+    }
+
+    public double getEventsPerSecond() {
+        return elapsedMillis == 0 ? getEvents() : getEvents() * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "events=" + getEvents() + ", entries=" + entries + ", rejectedEntries=" + rejectedEntries + ", exits="
+                + exits + ", rejectedExits=" + rejectedExits + ", invalidEvents=" + invalidEvents + ", elapsedMillis="
+                + elapsedMillis + ", eventsPerSecond=" + Math.round(getEventsPerSecond()) + ", p50Micros=" + p50Micros
+                + ", p99Micros=" + p99Micros;
+    }
+}
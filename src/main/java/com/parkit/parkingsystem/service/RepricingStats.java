@@ -0,0 +1,41 @@
+package com.parkit.parkingsystem.service;
+
+public class RepricingStats {
+    private final long ticketsRead;
+    private final long ticketsUpdated;
+    private final int lastTicketId;
+    private final long elapsedMillis;
+
+    public RepricingStats(long ticketsRead, long ticketsUpdated, int lastTicketId, long elapsedMillis) {
+        this.ticketsRead = ticketsRead;
+        this.ticketsUpdated = ticketsUpdated;
+        this.lastTicketId = lastTicketId;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getTicketsRead() {
+        return ticketsRead;
+    }
+
+    public long getTicketsUpdated() {
+        return ticketsUpdated;
+    }
+
+    public int getLastTicketId() {
+        return lastTicketId;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getTicketsPerSecond() {
+        return elapsedMillis == 0 ? ticketsRead : ticketsRead * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "read=" + ticketsRead + ", updated=" + ticketsUpdated + ", lastTicketId=" + lastTicketId
+                + ", elapsedMillis=" + elapsedMillis + ", ticketsPerSecond=" + Math.round(getTicketsPerSecond());
+    }
+}
@@ -0,0 +1,43 @@
+package com.parkit.parkingsystem.service;
+
+public class SummaryCheckStats {
+    private final long mismatches;
+    private final long orphans;
+    private final long repaired;
+    private final long elapsedMillis;
+
+    public SummaryCheckStats(long mismatches, long orphans, long repaired, long elapsedMillis) {
+        this.mismatches = mismatches;
+        this.orphans = orphans;
+        this.repaired = repaired;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Returns the number of vehicles whose summary row is missing or differs from their ticket history.
+     */
+    public long getMismatches() {
+        return mismatches;
+    }
+
+    /**
+     * Returns the number of summary rows of vehicles without any ticket.
+     */
+    public long getOrphans() {
+        return orphans;
+    }
+
+    public long getRepaired() {
+        return repaired;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "mismatches=" + mismatches + ", orphans=" + orphans + ", repaired=" + repaired + ", elapsedMillis="
+                + elapsedMillis;
+    }
+}
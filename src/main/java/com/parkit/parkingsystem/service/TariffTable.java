@@ -0,0 +1,224 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Parking rates compiled into flat arrays, so that pricing a stay is a handful of array reads.
+ * <p>
+ * Rules are read from properties:
+ * <pre>
+ * freeMinutes=30
+ * discountRate=0.95
+ * CAR.rate=1.5           hourly rate for the hours without a band
+ * CAR.rate.7-10=2.0      hourly rate from 7:00 to 10:00, local time; bands may wrap midnight (22-6)
+ * CAR.dailyCap=20        most charged for each 24 hours of a stay, before discount
+ * lot.north.CAR.rate=2.0 overrides CAR.rate when the table is loaded for lot "north"
+ * </pre>
+ * A table is immutable: a new set of rules is compiled into a new table.
+ */
+public final class TariffTable {
+
+    private static final int HOURS_PER_DAY = 24;
+    private static final int MINUTES_PER_HOUR = 60;
+    private static final int MINUTES_PER_DAY = HOURS_PER_DAY * MINUTES_PER_HOUR;
+    private static final String LOT_PREFIX = "lot.";
+
+    private static final TariffTable DEFAULTS = new TariffTable(30, Fare.DISCOUNT_RATE,
+            uniformRates(Fare.CAR_RATE_PER_HOUR, Fare.BIKE_RATE_PER_HOUR), noCaps());
+
+    private final long freeMinutes;
+    private final double discountRate;
+    // hourly rate of each type when it is the same all day, NaN otherwise
+    private final double[] uniformRates;
+    // most charged per 24 hours, by type; infinite when there is no cap
+    private final double[] dailyCaps;
+    // by type, rate-minutes charged from 0:00 to each minute of the day (MINUTES_PER_DAY + 1 entries per type)
+    private final double[] cumulativeRateMinutes;
+
+    private TariffTable(long freeMinutes, double discountRate, double[] hourlyRates, double[] dailyCaps) {
+        int types = ParkingType.values().length;
+        this.freeMinutes = freeMinutes;
+        this.discountRate = discountRate;
+        this.dailyCaps = dailyCaps;
+        this.uniformRates = new double[types];
+        this.cumulativeRateMinutes = new double[types * (MINUTES_PER_DAY + 1)];
+        for (int type = 0; type < types; type++) {
+            double uniformRate = hourlyRates[type * HOURS_PER_DAY];
+            int base = type * (MINUTES_PER_DAY + 1);
+            for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+                double rate = hourlyRates[type * HOURS_PER_DAY + minute / MINUTES_PER_HOUR];
+                if (rate != uniformRate) {
+                    uniformRate = Double.NaN;
+                }
+                cumulativeRateMinutes[base + minute + 1] = cumulativeRateMinutes[base + minute] + rate;
+            }
+            uniformRates[type] = uniformRate;
+        }
+    }
+
+    /**
+     * Rates of the {@link Fare} constants, all day long, without cap.
+     */
+    public static TariffTable defaults() {
+        return DEFAULTS;
+    }
+
+    public static TariffTable load(Path file, String lot) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        return compile(properties, lot);
+    }
+
+    /**
+     * Compiles the rules for the given lot, or the rules without lot override if {@code lot} is null.
+     *
+     * @throws IllegalArgumentException if a rule is missing or invalid
+     */
+    public static TariffTable compile(Properties rules, String lot) {
+        Properties effective = new Properties();
+        for (String key : rules.stringPropertyNames()) {
+            if (!key.startsWith(LOT_PREFIX)) {
+                effective.setProperty(key, rules.getProperty(key).trim());
+            }
+        }
+        if (lot != null) {
+            String lotPrefix = LOT_PREFIX + lot + ".";
+            for (String key : rules.stringPropertyNames()) {
+                if (key.startsWith(lotPrefix)) {
+                    effective.setProperty(key.substring(lotPrefix.length()), rules.getProperty(key).trim());
+                }
+            }
+        }
+
+        long freeMinutes = Long.parseLong(effective.getProperty("freeMinutes", "30"));
+        double discountRate = Double.parseDouble(effective.getProperty("discountRate",
+                Double.toString(Fare.DISCOUNT_RATE)));
+        if (freeMinutes < 0 || discountRate <= 0 || discountRate > 1) {
+            throw new IllegalArgumentException("Invalid freeMinutes or discountRate");
+        }
+
+        ParkingType[] types = ParkingType.values();
+        double[] hourlyRates = new double[types.length * HOURS_PER_DAY];
+        double[] dailyCaps = noCaps();
+        for (ParkingType type : types) {
+            compileRates(effective, type, hourlyRates);
+            String dailyCap = effective.getProperty(type + ".dailyCap");
+            if (dailyCap != null) {
+                dailyCaps[type.ordinal()] = parseAmount(type + ".dailyCap", dailyCap);
+            }
+        }
+        return new TariffTable(freeMinutes, discountRate, hourlyRates, dailyCaps);
+    }
+
+    private static void compileRates(Properties rules, ParkingType type, double[] hourlyRates) {
+        String rateKey = type + ".rate";
+        String rate = rules.getProperty(rateKey);
+        if (rate == null) {
+            throw new IllegalArgumentException("Missing " + rateKey);
+        }
+        int base = type.ordinal() * HOURS_PER_DAY;
+        double defaultRate = parseAmount(rateKey, rate);
+        for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+            hourlyRates[base + hour] = defaultRate;
+        }
+        boolean[] banded = new boolean[HOURS_PER_DAY];
+        for (String key : rules.stringPropertyNames()) {
+            if (!key.startsWith(rateKey + ".")) {
+                continue;
+            }
+            String[] band = key.substring(rateKey.length() + 1).split("-");
+            int from = band.length == 2 ? parseHour(key, band[0]) : -1;
+            int to = band.length == 2 ? parseHour(key, band[1]) : -1;
+            if (from < 0 || to < 0 || from == to) {
+                throw new IllegalArgumentException("Invalid time band " + key);
+            }
+            double bandRate = parseAmount(key, rules.getProperty(key));
+            for (int hour = from; hour != to; hour = (hour + 1) % HOURS_PER_DAY) {
+                if (banded[hour]) {
+                    throw new IllegalArgumentException("Overlapping time band " + key);
+                }
+                banded[hour] = true;
+                hourlyRates[base + hour] = bandRate;
+            }
+        }
+    }
+
+    private static int parseHour(String key, String hour) {
+        try {
+            int value = Integer.parseInt(hour.trim());
+            return value >= 0 && value <= HOURS_PER_DAY ? value % HOURS_PER_DAY : -1;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time band " + key, e);
+        }
+    }
+
+    private static double parseAmount(String key, String value) {
+        double amount = Double.parseDouble(value);
+        if (amount < 0 || Double.isNaN(amount) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("Invalid amount for " + key + ": " + value);
+        }
+        return amount;
+    }
+
+    private static double[] uniformRates(double carRate, double bikeRate) {
+        double[] hourlyRates = new double[ParkingType.values().length * HOURS_PER_DAY];
+        for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+            hourlyRates[ParkingType.CAR.ordinal() * HOURS_PER_DAY + hour] = carRate;
+            hourlyRates[ParkingType.BIKE.ordinal() * HOURS_PER_DAY + hour] = bikeRate;
+        }
+        return hourlyRates;
+    }
+
+    private static double[] noCaps() {
+        double[] dailyCaps = new double[ParkingType.values().length];
+        Arrays.fill(dailyCaps, Double.POSITIVE_INFINITY);
+        return dailyCaps;
+    }
+
+    public long getFreeMinutes() {
+        return freeMinutes;
+    }
+
+    /**
+     * Returns the price in cents of a stay of {@code durationInMinutes} starting at {@code startMinuteOfDay}
+     * (0 to 1439, local time).
+     */
+    public long priceCents(ParkingType parkingType, int startMinuteOfDay, long durationInMinutes, boolean isDiscount) {
+        if (durationInMinutes < freeMinutes) {
+            return 0;
+        }
+        int type = parkingType.ordinal();
+        double discount = isDiscount ? discountRate : 1;
+        double dailyCap = dailyCaps[type];
+        double uniformRate = uniformRates[type];
+        if (!Double.isNaN(uniformRate) && dailyCap == Double.POSITIVE_INFINITY) {
+            double durationInHours = durationInMinutes / 60.0;
+            return Math.round(durationInHours * uniformRate * discount * 100.0);
+        }
+        long days = durationInMinutes / MINUTES_PER_DAY;
+        int rest = (int) (durationInMinutes % MINUTES_PER_DAY);
+        int base = type * (MINUTES_PER_DAY + 1);
+        double dayPrice = Math.min(cumulativeRateMinutes[base + MINUTES_PER_DAY] / MINUTES_PER_HOUR, dailyCap);
+        double restRateMinutes;
+        int end = startMinuteOfDay + rest;
+        if (end <= MINUTES_PER_DAY) {
+            restRateMinutes = cumulativeRateMinutes[base + end] - cumulativeRateMinutes[base + startMinuteOfDay];
+        } else {
+            restRateMinutes = cumulativeRateMinutes[base + MINUTES_PER_DAY]
+                    - cumulativeRateMinutes[base + startMinuteOfDay]
+                    + cumulativeRateMinutes[base + end - MINUTES_PER_DAY];
+        }
+        double restPrice = Math.min(restRateMinutes / MINUTES_PER_HOUR, dailyCap);
+        return Math.round((days * dayPrice + restPrice) * discount * 100.0);
+    }
+}
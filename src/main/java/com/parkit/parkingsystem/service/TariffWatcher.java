@@ -0,0 +1,81 @@
+package com.parkit.parkingsystem.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Loads the tariff file into {@link FareCalculatorService} and reloads it whenever it changes, without a restart.
+ * <p>
+ * A file that fails to load or compile is reported and ignored: the calculators keep the last good table.
+ */
+public class TariffWatcher {
+
+    private static final Logger logger = LogManager.getLogger("TariffWatcher");
+
+    private final Path tariffFile;
+    private final String lot;
+    private final long pollMillis;
+    private final Thread watcherThread;
+    private volatile boolean running = true;
+    private FileTime lastModified;
+    private long lastSize = -1;
+
+    public TariffWatcher(Path tariffFile, String lot, long pollMillis) {
+        this.tariffFile = tariffFile;
+        this.lot = lot;
+        this.pollMillis = pollMillis;
+        this.watcherThread = new Thread(this::watchLoop, "tariff-watcher");
+        watcherThread.setDaemon(true);
+    }
+
+    /**
+     * Loads the tariff file once, then keeps watching it in the background.
+     */
+    public boolean start() {
+        boolean loaded = reloadIfChanged();
+        watcherThread.start();
+        return loaded;
+    }
+
+    public void close() {
+        running = false;
+        watcherThread.interrupt();
+    }
+
+    /**
+     * Loads the tariff file if it changed since the last check, and returns true if new rates were installed.
+     */
+    public boolean reloadIfChanged() {
+        try {
+            FileTime modified = Files.getLastModifiedTime(tariffFile);
+            long size = Files.size(tariffFile);
+            if (modified.equals(lastModified) && size == lastSize) {
+                return false;
+            }
+            lastModified = modified;
+            lastSize = size;
+            FareCalculatorService.setTariffTable(TariffTable.load(tariffFile, lot));
+            logger.info("Loaded tariff " + tariffFile + (lot == null ? "" : " for lot " + lot));
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Error loading tariff " + tariffFile + ", keeping the current rates", e);
+            return false;
+        }
+    }
+
+    private void watchLoop() {
+        while (running) {
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            reloadIfChanged();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Moves closed tickets older than a given age from the {@code ticket} table to {@code ticket_archive}, so that the
+ * table the gates work on only holds recent history.
+ * <p>
+ * Tickets are moved in ID order, by chunks of {@code chunkSize}, each in its own short transaction: the chunk's
+ * tickets are locked, copied to the archive, added to the per-vehicle {@code ticket_archive_summary} that repricing
+ * reads, then deleted. The lock keeps a price update, e.g. from repricing, from landing between the copy and the
+ * delete and being lost. Only closed tickets are locked and at read committed, so the gates, which write open
+ * tickets and append new ones, are not held up. An interrupted run leaves whole chunks behind and is resumed by the
+ * next one.
+ */
+public class TicketArchiver {
+
+    private static final Logger logger = LogManager.getLogger("TicketArchiver");
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    private final DataBaseConfig dataBaseConfig;
+    private final int chunkSize;
+    private final long pauseMillis;
+
+    /**
+     * @param pauseMillis time to wait between two chunks, to leave the database to the gates
+     */
+    public TicketArchiver(DataBaseConfig dataBaseConfig, int chunkSize, long pauseMillis) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    /**
+     * Archives the tickets closed more than {@code maxAgeDays} days ago.
+     */
+    public ArchiveStats archiveOlderThan(int maxAgeDays) throws SQLException, ClassNotFoundException,
+            InterruptedException {
+        return archive(new Timestamp(System.currentTimeMillis() - maxAgeDays * MILLIS_PER_DAY));
+    }
+
+    /**
+     * Archives the tickets closed before {@code cutoff}.
+     */
+    public ArchiveStats archive(Timestamp cutoff) throws SQLException, ClassNotFoundException, InterruptedException {
+        long start = System.currentTimeMillis();
+        long ticketsArchived = 0;
+        long chunks = 0;
+        int lastTicketId = 0;
+
+        Connection con = null;
+        int isolation = Connection.TRANSACTION_NONE;
+        try {
+            con = dataBaseConfig.getConnection();
+            isolation = con.getTransactionIsolation();
+            con.setAutoCommit(false);
+            // no gap locks, so the chunk ranges never block the inserts of the gates
+            con.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            while (true) {
+                int toTicketId = getChunkEnd(con, cutoff, lastTicketId);
+                if (toTicketId <= lastTicketId) {
+                    break;
+                }
+                ticketsArchived += archiveChunk(con, cutoff, lastTicketId, toTicketId);
+                chunks++;
+                lastTicketId = toTicketId;
+                logger.info("Archived " + ticketsArchived + " tickets up to ticket " + lastTicketId);
+                if (pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+        } catch (SQLException e) {
+            if (con != null) {
+                con.rollback();
+            }
+            throw e;
+        } finally {
+            if (con != null) {
+                con.setAutoCommit(true);
+                con.setTransactionIsolation(isolation);
+            }
+            dataBaseConfig.closeConnection(con);
+        }
+
+        ArchiveStats stats = new ArchiveStats(ticketsArchived, chunks, lastTicketId,
+                System.currentTimeMillis() - start);
+        logger.info("Archival done: " + stats);
+        return stats;
+    }
+
+    private int getChunkEnd(Connection con, Timestamp cutoff, int fromTicketId) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(DBConstants.GET_ARCHIVABLE_TICKET_IDS);
+        ps.setTimestamp(1, cutoff);
+        ps.setInt(2, fromTicketId);
+        ps.setInt(3, chunkSize);
+        ResultSet rs = ps.executeQuery();
+        int toTicketId = fromTicketId;
+        while (rs.next()) {
+            toTicketId = rs.getInt(1);
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        // the chunk ends with its last archivable ticket, so there is nothing to archive below it afterwards
+        con.commit();
+        return toTicketId;
+    }
+
+    private int archiveChunk(Connection con, Timestamp cutoff, int fromTicketId, int toTicketId)
+            throws SQLException {
+        // at read committed the copy does not lock what it reads: without this, an update committed between the
+        // copy and the delete would be deleted without having been copied
+        PreparedStatement lock = con.prepareStatement(DBConstants.LOCK_ARCHIVE_CHUNK);
+        setRange(lock, 1, cutoff, fromTicketId, toTicketId);
+        ResultSet locked = lock.executeQuery();
+        int nbLocked = 0;
+        while (locked.next()) {
+            nbLocked++;
+        }
+        dataBaseConfig.closeResultSet(locked);
+        dataBaseConfig.closePreparedStatement(lock);
+
+        PreparedStatement copy = con.prepareStatement(DBConstants.ARCHIVE_TICKETS);
+        setRange(copy, 1, cutoff, fromTicketId, toTicketId);
+        int copied = copy.executeUpdate();
+        dataBaseConfig.closePreparedStatement(copy);
+
+        PreparedStatement counts = con.prepareStatement(DBConstants.GET_ARCHIVED_COUNTS);
+        setRange(counts, 1, cutoff, fromTicketId, toTicketId);
+        ResultSet rs = counts.executeQuery();
+        PreparedStatement update = con.prepareStatement(DBConstants.UPDATE_ARCHIVE_SUMMARY);
+        PreparedStatement insert = con.prepareStatement(DBConstants.SAVE_ARCHIVE_SUMMARY);
+        while (rs.next()) {
+            update.setInt(1, rs.getInt(2));
+            update.setTimestamp(2, rs.getTimestamp(3));
+            update.setTimestamp(3, rs.getTimestamp(4));
+            update.setString(4, rs.getString(1));
+            if (update.executeUpdate() == 0) {
+                insert.setInt(1, rs.getInt(2));
+                insert.setTimestamp(2, rs.getTimestamp(3));
+                insert.setTimestamp(3, rs.getTimestamp(4));
+                insert.setString(4, rs.getString(1));
+                insert.addBatch();
+            }
+        }
+        insert.executeBatch();
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(counts);
+        dataBaseConfig.closePreparedStatement(update);
+        dataBaseConfig.closePreparedStatement(insert);
+
+        PreparedStatement delete = con.prepareStatement(DBConstants.DELETE_ARCHIVED_TICKETS);
+        setRange(delete, 1, cutoff, fromTicketId, toTicketId);
+        int deleted = delete.executeUpdate();
+        dataBaseConfig.closePreparedStatement(delete);
+
+        // a ticket closed since the lock would be copied or deleted without being locked
+        if (copied != nbLocked || deleted != nbLocked) {
+            throw new SQLException("Tickets " + fromTicketId + " to " + toTicketId + " changed while archived: "
+                    + nbLocked + " locked, " + copied + " copied, " + deleted + " deleted");
+        }
+        con.commit();
+        return copied;
+    }
+
+    private static void setRange(PreparedStatement ps, int index, Timestamp cutoff, int fromTicketId, int toTicketId)
+            throws SQLException {
+        ps.setTimestamp(index, cutoff);
+        ps.setInt(index + 1, fromTicketId);
+        ps.setInt(index + 2, toTicketId);
+    }
+}
@@ -0,0 +1,132 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the {@code vehicle_summary} table with the ticket history it is derived from, live and archived tickets,
+ * and optionally rebuilds the rows that differ.
+ * <p>
+ * The comparison is one streamed query, so it does not block the gates, but it may see a ticket saved while it runs
+ * as a mismatch. A row is therefore only repaired after being recomputed under its row lock, in its own transaction,
+ * and left alone if it turns out to be right. Mismatches are handled as they are read, never collected, so memory
+ * use does not depend on how many there are; with MySQL Connector/J this needs {@code useCursorFetch=true} on the
+ * url, as {@link DataBaseConfig} sets it.
+ */
+public class VehicleSummaryChecker {
+
+    private static final Logger logger = LogManager.getLogger("VehicleSummaryChecker");
+
+    private final DataBaseConfig dataBaseConfig;
+    private final TransactionManager transactionManager;
+    private final int fetchSize;
+
+    public VehicleSummaryChecker(DataBaseConfig dataBaseConfig, int fetchSize) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.transactionManager = new TransactionManager(dataBaseConfig);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Checks every vehicle and, if {@code repair} is set, rebuilds the summary rows that differ from the history.
+     */
+    public SummaryCheckStats check(boolean repair) throws Exception {
+        long start = System.currentTimeMillis();
+        AtomicLong repaired = new AtomicLong();
+        long mismatches = checkVehicles(DBConstants.GET_VEHICLE_SUMMARY_MISMATCHES, "does not match its tickets",
+                repair, repaired);
+        long orphans = checkVehicles(DBConstants.GET_ORPHAN_VEHICLE_SUMMARIES, "has no ticket", repair, repaired);
+
+        SummaryCheckStats stats = new SummaryCheckStats(mismatches, orphans, repaired.get(),
+                System.currentTimeMillis() - start);
+        logger.info("Vehicle summary check done: " + stats);
+        return stats;
+    }
+
+    /**
+     * Logs, and repairs if asked to, each vehicle returned by {@code sql} as it is read, and returns how many there
+     * were. Repairs run on their own connection while the query is still being read.
+     */
+    private long checkVehicles(String sql, String problem, boolean repair, AtomicLong repaired) throws Exception {
+        long found = 0;
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            // ignored by Connector/J unless the url has useCursorFetch=true, see the class comment
+            ps.setFetchSize(fetchSize);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                String vehicleRegNumber = rs.getString(1);
+                found++;
+                logger.warn("Vehicle summary of " + vehicleRegNumber + " " + problem);
+                if (repair && transactionManager.inTransaction(() -> rebuild(vehicleRegNumber))) {
+                    repaired.incrementAndGet();
+                }
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        return found;
+    }
+
+    /**
+     * Recomputes the summary row of one vehicle, and returns true if it had to be changed.
+     */
+    private boolean rebuild(String vehicleRegNumber) throws SQLException, ClassNotFoundException {
+        Connection con = dataBaseConfig.getConnection();
+        PreparedStatement lock = con.prepareStatement(DBConstants.LOCK_VEHICLE_SUMMARY);
+        lock.setString(1, vehicleRegNumber);
+        ResultSet rs = lock.executeQuery();
+        boolean hasSummary = rs.next();
+        int summaryVisits = hasSummary ? rs.getInt(1) : 0;
+        Timestamp summaryLastVisit = hasSummary ? rs.getTimestamp(2) : null;
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(lock);
+
+        PreparedStatement history = con.prepareStatement(DBConstants.GET_VEHICLE_HISTORY);
+        history.setString(1, vehicleRegNumber);
+        history.setString(2, vehicleRegNumber);
+        rs = history.executeQuery();
+        rs.next();
+        int visits = rs.getInt(1);
+        Timestamp lastVisit = rs.getTimestamp(2);
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(history);
+
+        if (hasSummary == (visits > 0) && visits == summaryVisits
+                && (visits == 0 || lastVisit.equals(summaryLastVisit))) {
+            return false;
+        }
+        if (visits == 0) {
+            PreparedStatement delete = con.prepareStatement(DBConstants.DELETE_VEHICLE_SUMMARY);
+            delete.setString(1, vehicleRegNumber);
+            delete.executeUpdate();
+            dataBaseConfig.closePreparedStatement(delete);
+        } else {
+            PreparedStatement repair = con.prepareStatement(DBConstants.REPAIR_VEHICLE_SUMMARY);
+            repair.setString(1, vehicleRegNumber);
+            repair.setInt(2, visits);
+            repair.setTimestamp(3, lastVisit);
+            repair.setInt(4, visits);
+            repair.setTimestamp(5, lastVisit);
+            repair.executeUpdate();
+            dataBaseConfig.closePreparedStatement(repair);
+        }
+        logger.info("Rebuilt vehicle summary of " + vehicleRegNumber + ": " + visits + " visit(s)");
+        return true;
+    }
+}
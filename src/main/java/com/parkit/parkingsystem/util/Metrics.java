@@ -0,0 +1,162 @@
+package com.parkit.parkingsystem.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Built-in instrumentation of the gate operations, the fare calculation and the DAO calls.
+ * <p>
+ * Instrumented code calls {@link #start()} then {@link #record(Operation, long)}, plus {@link #recordError} where it
+ * fails and {@link #recordDbCall} before each query, so that round trips that fail are counted too. Metrics are on
+ * unless the JVM is started with {@code -Dparkit.metrics.enabled=false}; the flag is a constant, so when it is off the
+ * JIT compiles these calls away, clock reads included.
+ */
+public final class Metrics {
+
+    public enum Operation {
+        GATE_ENTRY("gate_entry"),
+        GATE_EXIT("gate_exit"),
+        FARE_CALCULATION("fare_calculation"),
+        JOURNAL_APPEND("journal_append"),
+        TICKET_SAVE("ticket_save"),
+        TICKET_GET("ticket_get"),
+        TICKET_GET_OPEN("ticket_get_open"),
+        TICKET_UPDATE("ticket_update"),
+        TICKET_COUNT("ticket_count"),
+        TICKET_WARM_CACHE("ticket_warm_cache"),
+        TICKET_LOAD_KNOWN_VEHICLES("ticket_load_known_vehicles"),
+        SPOT_LOAD_INDEX("spot_load_index"),
+        SPOT_LOAD_OCCUPANCY("spot_load_occupancy"),
+        SPOT_RECONCILE("spot_reconcile"),
+        SPOT_LAST_TICKET_ID("spot_last_ticket_id"),
+        SPOT_COUNT_FREE("spot_count_free"),
+        SPOT_GET_NEXT("spot_get_next"),
+        SPOT_UPDATE("spot_update"),
+        SPOT_RESERVE("spot_reserve");
+
+        private final String metricName;
+
+        Operation(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    public static final boolean ENABLED =
+            Boolean.parseBoolean(System.getProperty("parkit.metrics.enabled", "true"));
+
+    private static final Logger logger = LogManager.getLogger("Metrics");
+
+    private static final OperationMetrics[] OPERATIONS = new OperationMetrics[Operation.values().length];
+
+    static {
+        for (Operation operation : Operation.values()) {
+            OPERATIONS[operation.ordinal()] = new OperationMetrics(operation.getMetricName());
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns the start time to pass to {@link #record(Operation, long)}.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public static void record(Operation operation, long start) {
+        if (ENABLED) {
+            OPERATIONS[operation.ordinal()].getLatency().record(System.nanoTime() - start);
+        }
+    }
+
+    public static void recordError(Operation operation) {
+        if (ENABLED) {
+            OPERATIONS[operation.ordinal()].recordError();
+        }
+    }
+
+    public static void recordDbCall(Operation operation) {
+        if (ENABLED) {
+            OPERATIONS[operation.ordinal()].recordDbCall();
+        }
+    }
+
+    public static OperationMetrics get(Operation operation) {
+        return OPERATIONS[operation.ordinal()];
+    }
+
+    /**
+     * Registers one MBean per operation, named {@code com.parkit.parkingsystem:type=Metrics,operation=<name>}.
+     */
+    public static void registerMBeans() {
+        if (!ENABLED) {
+            return;
+        }
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        for (OperationMetrics operationMetrics : OPERATIONS) {
+            try {
+                ObjectName name = new ObjectName("com.parkit.parkingsystem:type=Metrics,operation="
+                        + operationMetrics.getName());
+                if (!mBeanServer.isRegistered(name)) {
+                    mBeanServer.registerMBean(operationMetrics, name);
+                }
+            } catch (JMException e) {
+                logger.error("Error registering metrics MBean of " + operationMetrics.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Writes every metric in the Prometheus text exposition format.
+     */
+    public static String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append("# TYPE parkit_operation_latency_seconds summary\n");
+        for (OperationMetrics operationMetrics : OPERATIONS) {
+            LatencyHistogram latency = operationMetrics.getLatency();
+            String labels = "operation=\"" + operationMetrics.getName() + "\"";
+            appendSample(text, "parkit_operation_latency_seconds", labels + ",quantile=\"0.5\"",
+                    seconds(latency.getPercentileNanos(50)));
+            appendSample(text, "parkit_operation_latency_seconds", labels + ",quantile=\"0.99\"",
+                    seconds(latency.getPercentileNanos(99)));
+            appendSample(text, "parkit_operation_latency_seconds_sum", labels, seconds(latency.getSumNanos()));
+            appendSample(text, "parkit_operation_latency_seconds_count", labels, Long.toString(latency.getCount()));
+        }
+        text.append("# TYPE parkit_operation_latency_max_seconds gauge\n");
+        for (OperationMetrics operationMetrics : OPERATIONS) {
+            appendSample(text, "parkit_operation_latency_max_seconds",
+                    "operation=\"" + operationMetrics.getName() + "\"",
+                    seconds(operationMetrics.getLatency().getMaxNanos()));
+        }
+        text.append("# TYPE parkit_operation_errors_total counter\n");
+        for (OperationMetrics operationMetrics : OPERATIONS) {
+            appendSample(text, "parkit_operation_errors_total", "operation=\"" + operationMetrics.getName() + "\"",
+                    Long.toString(operationMetrics.getErrors()));
+        }
+        text.append("# TYPE parkit_operation_db_calls_total counter\n");
+        for (OperationMetrics operationMetrics : OPERATIONS) {
+            appendSample(text, "parkit_operation_db_calls_total", "operation=\"" + operationMetrics.getName() + "\"",
+                    Long.toString(operationMetrics.getDbCalls()));
+        }
+        return text.toString();
+    }
+
+    private static void appendSample(StringBuilder text, String name, String labels, String value) {
+        text.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
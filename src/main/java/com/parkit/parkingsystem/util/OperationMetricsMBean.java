@@ -0,0 +1,21 @@
+package com.parkit.parkingsystem.util;
+
+/**
+ * JMX view of the {@link OperationMetrics} of one operation.
+ */
+public interface OperationMetricsMBean {
+
+    long getCount();
+
+    long getErrors();
+
+    long getDbCalls();
+
+    double getMeanMicros();
+
+    long getP50Micros();
+
+    long getP99Micros();
+
+    long getMaxMicros();
+}
@@ -0,0 +1,2 @@
+/* Ticket lookups and counts per vehicle (GET_TICKET, GET_NUMBER_TICKET), open tickets first */
+create index TICKET_VEHICLE_OUT_IN_IDX on ticket(VEHICLE_REG_NUMBER, OUT_TIME, IN_TIME);
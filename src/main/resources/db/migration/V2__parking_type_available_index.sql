@@ -0,0 +1,2 @@
+/* Lowest free spot of a type (GET_NEXT_PARKING_SPOT, LOCK_NEXT_PARKING_SPOT) */
+create index PARKING_TYPE_AVAILABLE_NUMBER_IDX on parking(TYPE, AVAILABLE, PARKING_NUMBER);
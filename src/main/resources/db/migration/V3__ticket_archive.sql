@@ -0,0 +1,15 @@
+/* Closed tickets moved out of the ticket table by the archival job (TicketArchiver) */
+create table ticket_archive(
+ ID int PRIMARY KEY,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL);
+create index TICKET_ARCHIVE_VEHICLE_IN_IDX on ticket_archive(VEHICLE_REG_NUMBER, IN_TIME);
+/* Archived tickets per vehicle, kept by the archival job so ticket counts never scan the archive */
+create table ticket_archive_summary(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ ARCHIVED_TICKETS int NOT NULL,
+ FIRST_IN_TIME DATETIME NOT NULL,
+ LAST_OUT_TIME DATETIME NOT NULL);
@@ -0,0 +1,13 @@
+/* Visits per vehicle, kept by TicketDAO.saveTicket so that ticket counts are a primary key lookup */
+create table vehicle_summary(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ VISITS int NOT NULL,
+ LAST_VISIT DATETIME NOT NULL);
+/* Most recently seen vehicles (GET_RECENT_TICKET_COUNTS) */
+create index VEHICLE_SUMMARY_LAST_VISIT_IDX on vehicle_summary(LAST_VISIT);
+insert into vehicle_summary(VEHICLE_REG_NUMBER, VISITS, LAST_VISIT)
+ select VEHICLE_REG_NUMBER, count(*), max(IN_TIME) from (
+  select VEHICLE_REG_NUMBER, IN_TIME from ticket
+  union all
+  select VEHICLE_REG_NUMBER, IN_TIME from ticket_archive) history
+ group by VEHICLE_REG_NUMBER;
@@ -0,0 +1,98 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.integration.config.InMemoryDataBaseTestConfig;
+import com.parkit.parkingsystem.service.DailyReport;
+import com.parkit.parkingsystem.service.DailyReportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DailyReportServiceTest {
+
+    private static final InMemoryDataBaseTestConfig dataBaseConfig = new InMemoryDataBaseTestConfig("report");
+    private static final LocalDate DAY = LocalDate.of(2024, 5, 1);
+
+    private DailyReportService dailyReportService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataBaseConfig.createSchema(3, 1);
+        dailyReportService = new DailyReportService(dataBaseConfig, 2);
+    }
+
+    @Test
+    public void testDayIsAggregatedByType() throws Exception {
+        insertTicket(2, "OLD", at(-2, 8), at(-1, 8), 36);
+        insertTicket(1, "NIGHT", at(-1, 22), at(0, 9), 16.5);
+        insertTicket(2, "MORNING", at(0, 8), at(0, 10), 3);
+        insertTicket(1, "HANDOVER", at(0, 9), null, 0);
+        insertTicket(4, "BIKE", at(0, 12), at(1, 1), 13);
+        insertTicket(3, "TOMORROW", at(1, 8), null, 0);
+
+        DailyReport report = dailyReportService.report(DAY);
+
+        assertEquals(2, report.getEntries(ParkingType.CAR));
+        assertEquals(2, report.getExits(ParkingType.CAR));
+        assertEquals(19.5, report.getRevenue(ParkingType.CAR));
+        assertEquals(390, report.getAverageStayMinutes(ParkingType.CAR));
+        assertEquals(2, report.getPeakOccupancy(ParkingType.CAR));
+        assertEquals(1, report.getEntries(ParkingType.BIKE));
+        assertEquals(0, report.getExits(ParkingType.BIKE));
+        assertEquals(0, report.getRevenue(ParkingType.BIKE));
+        assertEquals(1, report.getPeakOccupancy(ParkingType.BIKE));
+        assertEquals(2, report.getTotalPeakOccupancy());
+        assertEquals(6, report.getRowsRead());
+
+        StringWriter csv = new StringWriter();
+        report.writeCsv(csv);
+        assertEquals("day,type,entries,exits,revenue,average_stay_minutes,peak_occupancy\n"
+                + "2024-05-01,CAR,2,2,19.50,390.0,2\n"
+                + "2024-05-01,BIKE,1,0,0.00,0.0,1\n"
+                + "2024-05-01,TOTAL,3,2,19.50,390.0,2\n", csv.toString());
+    }
+
+    @Test
+    public void testEmptyDay() throws Exception {
+        DailyReport report = dailyReportService.report(DAY);
+
+        assertEquals(0, report.getRowsRead());
+        assertEquals(0, report.getTotalRevenue());
+        assertEquals(0, report.getTotalAverageStayMinutes());
+        assertEquals(0, report.getTotalPeakOccupancy());
+    }
+
+    private static long at(int dayOffset, int hour) {
+        return LocalDateTime.of(DAY.plusDays(dayOffset), LocalTime.of(hour, 0))
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void insertTicket(int parkingNumber, String vehicleRegNumber, long inTime, Long outTime, double price)
+            throws Exception {
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            PreparedStatement ps = connection.prepareStatement("insert into ticket(PARKING_NUMBER, "
+                    + "VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)");
+            ps.setInt(1, parkingNumber);
+            ps.setString(2, vehicleRegNumber);
+            ps.setDouble(3, price);
+            ps.setTimestamp(4, new Timestamp(inTime));
+            ps.setTimestamp(5, outTime == null ? null : new Timestamp(outTime));
+            ps.execute();
+            dataBaseConfig.closePreparedStatement(ps);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
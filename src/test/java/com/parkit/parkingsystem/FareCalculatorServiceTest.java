@@ -12,6 +12,9 @@ import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.Date;
 
 public class FareCalculatorServiceTest {
@@ -184,4 +187,54 @@ public class FareCalculatorServiceTest {
         ticket.setParkingSpot(null);
         assertThrows(NullPointerException.class, () -> new FareCalculatorService().calculateFare(ticket));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void calculateFareCentsCar() {
+        long cents = new FareCalculatorService().calculateFareCents(ParkingType.CAR, oneHour.getTime(),
+                now.getTime(), false);
+        assertEquals(Math.round(Fare.CAR_RATE_PER_HOUR * 100), cents);
+    }
+
+    @Test
+    public void calculateFareCentsWithLessThan30minutesParkingTime() {
+        assertEquals(0, new FareCalculatorService().calculateFareCents(ParkingType.BIKE,
+                twentyNineMinutes.getTime(), now.getTime(), true));
+    }
+
+    @Test
+    public void calculateFareCentsWithFutureInTime() {
+        assertThrows(IllegalArgumentException.class, () -> new FareCalculatorService()
+                .calculateFareCents(ParkingType.CAR, now.getTime(), oneHour.getTime(), false));
+    }
+
+    @Test
+    public void calculateFareCentsMatchesWallClockMinutes() {
+        FareCalculatorService fareCalculatorService = new FareCalculatorService();
+        for (long minutes = 0; minutes < 3 * 24 * 60; minutes += 7) {
+            long inMillis = currentTimeMillis - minutes * 60 * 1000 - 1234;
+            long wallClockMinutes = ChronoUnit.MINUTES.between(toLocalDateTime(inMillis),
+                    toLocalDateTime(currentTimeMillis));
+            for (ParkingType parkingType : ParkingType.values()) {
+                double rate = parkingType == ParkingType.CAR ? Fare.CAR_RATE_PER_HOUR : Fare.BIKE_RATE_PER_HOUR;
+                for (boolean isDiscount : new boolean[]{false, true}) {
+                    double discount = isDiscount ? Fare.DISCOUNT_RATE : 1;
+                    long expected = wallClockMinutes < 30 ? 0
+                            : Math.round(wallClockMinutes / 60.0 * rate * discount * 100.0);
+
+                    assertEquals(expected, fareCalculatorService.calculateFareCents(parkingType, inMillis,
+                            currentTimeMillis, isDiscount));
+
+                    ticket.setInTime(new Date(inMillis));
+                    ticket.setOutTime(now);
+                    ticket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+                    fareCalculatorService.calculateFare(ticket, isDiscount);
+                    assertEquals(expected / 100.0, ticket.getPrice());
+                }
+            }
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return new Date(millis).toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime();
+    }
+}
@@ -0,0 +1,108 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.integration.config.InMemoryDataBaseTestConfig;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.FareRepricingService;
+import com.parkit.parkingsystem.service.RepricingStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FareRepricingServiceTest {
+
+    private static final InMemoryDataBaseTestConfig dataBaseConfig = new InMemoryDataBaseTestConfig("repricing");
+    private static final long ONE_HOUR = 60 * 60 * 1000;
+
+    private Path tempDir;
+
+    private FareRepricingService fareRepricingService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataBaseConfig.createSchema(2, 1);
+        tempDir = Files.createTempDirectory("repricing");
+        tempDir.toFile().deleteOnExit();
+        fareRepricingService = new FareRepricingService(dataBaseConfig, new FareCalculatorService(), 3, 2);
+    }
+
+    @Test
+    public void testClosedTicketsAreRepriced() throws Exception {
+        long start = System.currentTimeMillis() - 100 * ONE_HOUR;
+        insertTicket(1, "AAA111", start, start + ONE_HOUR, 0);
+        insertTicket(3, "BBB222", start, start + 2 * ONE_HOUR, 99);
+        insertTicket(1, "AAA111", start + 10 * ONE_HOUR, start + 11 * ONE_HOUR, 0);
+        insertTicket(2, "CCC333", start, start + 15 * 60 * 1000, 1);
+        insertTicket(2, "DDD444", start, start + ONE_HOUR, Fare.CAR_RATE_PER_HOUR);
+        insertTicket(1, "AAA111", start + 20 * ONE_HOUR, null, 0);
+
+        RepricingStats stats = fareRepricingService.reprice(tempDir.resolve("checkpoint"));
+
+        assertEquals(5, stats.getTicketsRead());
+        assertEquals(4, stats.getTicketsUpdated());
+        assertEquals(5, stats.getLastTicketId());
+        assertEquals(Fare.CAR_RATE_PER_HOUR, getPrice(1));
+        assertEquals(2 * Fare.BIKE_RATE_PER_HOUR, getPrice(2));
+        assertEquals(Math.round(Fare.CAR_RATE_PER_HOUR * Fare.DISCOUNT_RATE * 100) / 100.0, getPrice(3));
+        assertEquals(0, getPrice(4));
+        assertEquals(0, getPrice(6));
+        assertEquals("5", new String(Files.readAllBytes(tempDir.resolve("checkpoint"))));
+    }
+
+    @Test
+    public void testRepricingResumesAfterCheckpoint() throws Exception {
+        long start = System.currentTimeMillis() - 100 * ONE_HOUR;
+        for (int i = 0; i < 7; i++) {
+            insertTicket(1, "CAR" + i, start, start + ONE_HOUR, 0);
+        }
+        Path checkpoint = tempDir.resolve("checkpoint");
+        Files.write(checkpoint, "4".getBytes());
+
+        RepricingStats stats = fareRepricingService.reprice(checkpoint);
+
+        assertEquals(3, stats.getTicketsRead());
+        assertEquals(0, getPrice(4));
+        assertEquals(Fare.CAR_RATE_PER_HOUR, getPrice(5));
+        assertEquals(Fare.CAR_RATE_PER_HOUR, getPrice(7));
+        assertEquals(0, fareRepricingService.reprice(checkpoint).getTicketsRead());
+    }
+
+    private void insertTicket(int parkingNumber, String vehicleRegNumber, long inTime, Long outTime, double price)
+            throws Exception {
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            PreparedStatement ps = connection.prepareStatement("insert into ticket(PARKING_NUMBER, "
+                    + "VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)");
+            ps.setInt(1, parkingNumber);
+            ps.setString(2, vehicleRegNumber);
+            ps.setDouble(3, price);
+            ps.setTimestamp(4, new Timestamp(inTime));
+            ps.setTimestamp(5, outTime == null ? null : new Timestamp(outTime));
+            ps.execute();
+            dataBaseConfig.closePreparedStatement(ps);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    private double getPrice(int ticketId) throws Exception {
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            ResultSet rs = connection.createStatement().executeQuery("select PRICE from ticket where ID = " + ticketId);
+            assertTrue(rs.next());
+            return rs.getDouble(1);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.InMemoryDataBaseTestConfig;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.GateEventReplayer;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.ReplayStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GateEventReplayerTest {
+
+    private static final InMemoryDataBaseTestConfig dataBaseConfig = new InMemoryDataBaseTestConfig("replay");
+
+    private TicketDAO ticketDAO;
+    private GateEventReplayer gateEventReplayer;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataBaseConfig.createSchema(2, 1);
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        gateEventReplayer = new GateEventReplayer(new ParkingService(parkingSpotDAO, ticketDAO,
+                new TransactionManager(dataBaseConfig)));
+    }
+
+    @Test
+    public void testGateEventsAreReplayedWithTheirTimestamps() throws Exception {
+        String events = "# day of 2024-05-01\n"
+                + "2024-05-01T08:00:00,ENTRY,CAR,AAA111\n"
+                + "2024-05-01T08:05:00,ENTRY,car,BBB222\n"
+                + "2024-05-01T08:10:00,ENTRY,CAR,CCC333\n"
+                + "2024-05-01T09:00:00,ENTRY,BIKE,DDD444\n"
+                + "\n"
+                + "2024-05-01T10:00:00,EXIT,,AAA111\n"
+                + "2024-05-01T10:05:00,EXIT,CAR,BBB222\n"
+                + "2024-05-01T10:10:00,EXIT,,ZZZ999\n"
+                + "2024-05-01T11:00:00,PARK,CAR,AAA111\n"
+                + "2024-05-01T12:00:00,ENTRY,CAR,AAA111\n"
+                + "2024-05-01T13:00:00,EXIT,,AAA111\n";
+
+        ReplayStats stats = gateEventReplayer.replay(new BufferedReader(new StringReader(events)));
+
+        assertEquals(4, stats.getEntries());
+        assertEquals(1, stats.getRejectedEntries());
+        assertEquals(3, stats.getExits());
+        assertEquals(1, stats.getRejectedExits());
+        assertEquals(1, stats.getInvalidEvents());
+        assertEquals(9, stats.getEvents());
+        assertTrue(stats.getP99Micros() >= stats.getP50Micros());
+
+        Ticket ticket = ticketDAO.getTicket("AAA111");
+        assertEquals(Fare.CAR_RATE_PER_HOUR * Fare.DISCOUNT_RATE, ticket.getPrice(), 0.01);
+        assertEquals(2 * Fare.CAR_RATE_PER_HOUR, ticketDAO.getTicket("BBB222").getPrice());
+        assertNotNull(ticketDAO.getOpenTicket("DDD444"));
+        assertNull(ticketDAO.getTicket("CCC333"));
+    }
+}
@@ -0,0 +1,214 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.InMemoryDataBaseTestConfig;
+import com.parkit.parkingsystem.service.GateHttpServer;
+import com.parkit.parkingsystem.service.GateResult;
+import com.parkit.parkingsystem.service.GateLoadClient;
+import com.parkit.parkingsystem.service.LoadTestStats;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GateHttpServerTest {
+
+    private static final InMemoryDataBaseTestConfig dataBaseConfig = new InMemoryDataBaseTestConfig("gateHttp");
+    private static final long ONE_HOUR = 60 * 60 * 1000;
+
+    private ParkingService parkingService;
+    private GateHttpServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataBaseConfig.createSchema(4, 1);
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.loadOccupancy();
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        parkingService = new ParkingService(parkingSpotDAO, ticketDAO, new TransactionManager(dataBaseConfig));
+        startServer(new GateHttpServer(parkingService, new InetSocketAddress("localhost", 0), 4));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void startServer(GateHttpServer gateHttpServer) {
+        if (server != null) {
+            server.stop(0);
+        }
+        server = gateHttpServer;
+        server.start();
+        baseUrl = "http://localhost:" + server.getPort();
+    }
+
+    @Test
+    public void testVehicleEntersAndLeaves() throws Exception {
+        String entry = request("POST", "/entry?type=car&plate=AB%20123", 200);
+        assertTrue(entry.contains("\"accepted\":true"));
+        assertTrue(entry.contains("\"spot\":1"));
+        assertTrue(entry.contains("\"plate\":\"AB 123\""));
+        assertTrue(request("GET", "/availability?type=CAR", 200)
+                .contains("\"CAR\":{\"available\":true,\"spot\":2,\"free\":3}"));
+
+        String exit = request("POST", "/exit?plate=AB%20123", 200);
+        assertTrue(exit.contains("\"accepted\":true"));
+        assertFalse(exit.contains("\"outTime\":null"));
+        assertTrue(request("GET", "/availability", 200)
+                .contains("\"CAR\":{\"available\":true,\"spot\":1,\"free\":4}"));
+    }
+
+    @Test
+    public void testClientTimeIsOnlyTakenWhenAllowed() throws Exception {
+        long inTime = System.currentTimeMillis() - 2 * ONE_HOUR;
+        assertTrue(request("POST", "/entry?type=CAR&plate=BACKDATE&time=" + inTime, 400)
+                .contains("Parameter time is not accepted"));
+
+        startServer(new GateHttpServer(parkingService, new InetSocketAddress("localhost", 0), 4, true));
+        request("POST", "/entry?type=CAR&plate=REPLAY&time=" + inTime, 200);
+        String exit = request("POST", "/exit?plate=REPLAY&time=" + (inTime + ONE_HOUR), 200);
+
+        assertTrue(exit.contains("\"outTime\":" + (inTime + ONE_HOUR)));
+    }
+
+    @Test
+    public void testRequestsBeyondThePoolAreAnswered503() throws Exception {
+        assumeFalse(hasVirtualThreads(), "virtual threads never reject a request");
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ParkingService blockedService = mock(ParkingService.class);
+        when(blockedService.processIncomingVehicle(any(ParkingType.class), anyString(), any(Date.class)))
+                .thenAnswer(invocation -> {
+                    entered.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                    return GateResult.rejected(invocation.getArgument(1), "blocked");
+                });
+        // one thread and a queue of four: the first request holds the thread, the next four wait in the queue
+        startServer(new GateHttpServer(blockedService, new InetSocketAddress("localhost", 0), 1));
+        ExecutorService clients = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<Integer>> statuses = new ArrayList<>();
+            statuses.add(clients.submit(() -> status("/entry?type=CAR&plate=HOLD")));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 5; i++) {
+                statuses.add(clients.submit(() -> status("/entry?type=CAR&plate=QUEUED")));
+            }
+            // the rejected request is answered while the others are still blocked
+            long deadline = System.currentTimeMillis() + 5000;
+            while (statuses.stream().noneMatch(Future::isDone) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            int busy = 0;
+            for (Future<Integer> status : statuses) {
+                if (status.isDone()) {
+                    assertEquals(503, status.get().intValue());
+                    busy++;
+                }
+            }
+            assertEquals(1, busy);
+            release.countDown();
+            for (Future<Integer> status : statuses) {
+                assertNotEquals(500, status.get(5, TimeUnit.SECONDS).intValue());
+            }
+        } finally {
+            release.countDown();
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRefusedAndInvalidRequests() throws Exception {
+        assertTrue(request("POST", "/exit?plate=NOPE", 409).contains("\"accepted\":false"));
+        assertTrue(request("POST", "/entry?type=BUS&plate=AB123", 400).contains("Unknown vehicle type BUS"));
+        assertTrue(request("POST", "/entry?type=CAR", 400).contains("Missing parameter plate"));
+        request("GET", "/entry?type=CAR&plate=AB123", 405);
+
+        request("POST", "/entry?type=BIKE&plate=BIKE1", 200);
+        assertTrue(request("POST", "/entry?type=BIKE&plate=BIKE2", 409).contains("\"reason\":"));
+        assertTrue(request("GET", "/availability?type=BIKE", 200)
+                .contains("\"BIKE\":{\"available\":false,\"spot\":0,\"free\":0}"));
+    }
+
+    @Test
+    public void testMetricsCountGateRequests() throws Exception {
+        request("POST", "/entry?type=CAR&plate=METRICS1", 200);
+
+        String metrics = request("GET", "/metrics", 200);
+
+        assertTrue(metrics.contains("parkit_operation_latency_seconds_count{operation=\"gate_entry\"} "));
+        assertTrue(metrics.contains("parkit_operation_db_calls_total{operation=\"spot_reserve\"} "));
+        assertFalse(metrics.contains("parkit_operation_latency_seconds_count{operation=\"gate_entry\"} 0\n"));
+        request("POST", "/metrics", 405);
+    }
+
+    @Test
+    public void testLoadClientReportsEveryRequest() throws Exception {
+        LoadTestStats stats = new GateLoadClient(baseUrl + "/", 3).run(5);
+
+        assertEquals(30, stats.getRequests());
+        assertEquals(0, stats.getRejectedRequests());
+        assertEquals(0, stats.getFailedRequests());
+        assertTrue(stats.getP50Micros() > 0);
+        assertTrue(stats.getP99Micros() >= stats.getP50Micros());
+    }
+
+    private int status(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod("POST");
+        return connection.getResponseCode();
+    }
+
+    private static boolean hasVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private String request(String method, String path, int expectedStatus) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        assertEquals(expectedStatus, connection.getResponseCode());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = expectedStatus < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
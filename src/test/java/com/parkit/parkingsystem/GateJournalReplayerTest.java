@@ -0,0 +1,196 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.InMemoryDataBaseTestConfig;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.GateJournal;
+import com.parkit.parkingsystem.service.GateJournalReader;
+import com.parkit.parkingsystem.service.GateJournalReplayer;
+import com.parkit.parkingsystem.service.GateResult;
+import com.parkit.parkingsystem.service.JournalEvent;
+import com.parkit.parkingsystem.service.JournalReplayStats;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GateJournalReplayerTest {
+
+    private static final long ONE_HOUR = 60 * 60 * 1000;
+
+    private static volatile boolean databaseDown;
+
+    private static final InMemoryDataBaseTestConfig dataBaseConfig = new InMemoryDataBaseTestConfig("journal") {
+        @Override
+        public Connection getConnection() throws ClassNotFoundException, SQLException {
+            if (databaseDown) {
+                throw new SQLNonTransientConnectionException("Database unavailable", "08001");
+            }
+            return super.getConnection();
+        }
+    };
+
+    private Path journalDir;
+    private TicketDAO ticketDAO;
+    private ParkingService parkingService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        databaseDown = false;
+        dataBaseConfig.createSchema(2, 1);
+        journalDir = Files.createTempDirectory("journal");
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.loadFreeSpotIndex();
+        parkingSpotDAO.loadOccupancy();
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        parkingService = new ParkingService(parkingSpotDAO, ticketDAO, new TransactionManager(dataBaseConfig));
+        parkingService.enableJournal(journalDir, 4, 16, 60000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        databaseDown = false;
+        parkingService.closeJournal();
+    }
+
+    @Test
+    public void testGatesKeepRunningWhileDatabaseIsDown() throws Exception {
+        long start = System.currentTimeMillis() - 3 * ONE_HOUR;
+        assertFalse(parkingService.processIncomingVehicle(ParkingType.CAR, "AAA111", new Date(start)).isPending());
+
+        databaseDown = true;
+        GateResult entry = parkingService.processIncomingVehicle(ParkingType.CAR, "BBB222", new Date(start + ONE_HOUR));
+        GateResult exit = parkingService.processExitingVehicle("AAA111", new Date(start + 2 * ONE_HOUR));
+        GateResult full = parkingService.processIncomingVehicle(ParkingType.CAR, "CCC333", new Date(start + ONE_HOUR));
+
+        assertTrue(entry.isAccepted());
+        assertTrue(entry.isPending());
+        assertEquals(2, entry.getParkingNumber());
+        assertTrue(exit.isAccepted());
+        assertTrue(exit.isPending());
+        assertFalse(full.isAccepted());
+
+        databaseDown = false;
+        // a restart replays the events left pending
+        parkingService.closeJournal();
+        parkingService.enableJournal(journalDir, 4, 16, 60000);
+
+        Ticket parked = ticketDAO.getOpenTicket("BBB222");
+        assertNotNull(parked);
+        assertEquals(2, parked.getParkingSpot().getId());
+        Ticket left = ticketDAO.getTicket("AAA111");
+        assertEquals(start + 2 * ONE_HOUR, left.getOutTime().getTime());
+        assertTrue(left.getPrice() > 0);
+        assertTrue(isAvailable(1));
+        assertFalse(isAvailable(2));
+    }
+
+    @Test
+    public void testExitOfVehicleLetInOfflineWaitsForReplay() throws Exception {
+        long start = System.currentTimeMillis() - 3 * ONE_HOUR;
+        databaseDown = true;
+        assertTrue(parkingService.processIncomingVehicle(ParkingType.BIKE, "BIKE1", new Date(start)).isPending());
+        databaseDown = false;
+
+        // the database is back but the entry is not replayed yet; only that vehicle may leave before the replay
+        assertFalse(parkingService.processExitingVehicle("NOPE", new Date(start + ONE_HOUR)).isAccepted());
+        GateResult exit = parkingService.processExitingVehicle("BIKE1", new Date(start + ONE_HOUR));
+        assertTrue(exit.isAccepted());
+        assertTrue(exit.isPending());
+        parkingService.closeJournal();
+        parkingService.enableJournal(journalDir, 4, 16, 60000);
+
+        Ticket ticket = ticketDAO.getTicket("BIKE1");
+        assertEquals(start + ONE_HOUR, ticket.getOutTime().getTime());
+        assertTrue(isAvailable(3));
+        assertFalse(parkingService.processExitingVehicle("NOPE", new Date()).isAccepted());
+    }
+
+    @Test
+    public void testStatementFailureIsRejectedWhileDatabaseIsUp() throws Exception {
+        // longer than the ticket column, so the insert fails although the database is reachable
+        GateResult entry = parkingService.processIncomingVehicle(ParkingType.CAR, "TOOLONGPLATE", new Date());
+
+        assertFalse(entry.isAccepted());
+        assertFalse(entry.isPending());
+        assertTrue(isAvailable(1));
+        assertEquals(2, parkingService.getFreeSpots(ParkingType.CAR));
+        GateJournalReader reader = new GateJournalReader(journalDir, 0);
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testEntriesAreJournaledBeforeCommit() throws Exception {
+        assertTrue(parkingService.processIncomingVehicle(ParkingType.CAR, "AAA111", new Date()).isAccepted());
+
+        JournalEvent event = new GateJournalReader(journalDir, 0).next();
+        assertEquals(JournalEvent.Kind.ENTRY, event.getKind());
+        assertEquals("AAA111", event.getVehicleRegNumber());
+        assertEquals(1, event.getParkingNumber());
+        assertFalse(event.isPending());
+    }
+
+    @Test
+    public void testSpotTakenBeforeReplayIsAConflict() throws Exception {
+        databaseDown = true;
+        assertEquals(1, parkingService.processIncomingVehicle(ParkingType.CAR, "AAA111", new Date())
+                .getParkingNumber());
+        databaseDown = false;
+        parkingService.closeJournal();
+        // written by another instance while this one was offline
+        execute("update parking set AVAILABLE = false where PARKING_NUMBER = 1");
+
+        GateJournal journal = GateJournal.open(journalDir, 4, 16);
+        try {
+            ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+            parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+            JournalReplayStats stats = new GateJournalReplayer(journal, parkingSpotDAO, ticketDAO,
+                    new TransactionManager(dataBaseConfig)).replay();
+
+            assertEquals(1, stats.getEventsApplied());
+            assertEquals(1, stats.getEventsConflicting());
+            assertNotNull(ticketDAO.getOpenTicket("AAA111"));
+        } finally {
+            journal.close();
+        }
+        parkingService.enableJournal(journalDir, 4, 16, 60000);
+    }
+
+    private void execute(String sql) throws Exception {
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            connection.createStatement().execute(sql);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    private boolean isAvailable(int parkingNumber) throws Exception {
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            ResultSet rs = connection.createStatement()
+                    .executeQuery("select AVAILABLE from parking where PARKING_NUMBER = " + parkingNumber);
+            assertTrue(rs.next());
+            return rs.getBoolean(1);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.GateJournal;
+import com.parkit.parkingsystem.service.GateJournalReader;
+import com.parkit.parkingsystem.service.JournalEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GateJournalTest {
+
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @Test
+    public void testEventsAreReadBackAcrossSegments() throws Exception {
+        GateJournal gateJournal = GateJournal.open(directory, 2, 16);
+        gateJournal.append(JournalEvent.Kind.ENTRY, 1000, "AAA111", ParkingType.CAR, 1, false);
+        gateJournal.append(JournalEvent.Kind.ENTRY, 2000, "BBB222", ParkingType.BIKE, 4, true);
+        gateJournal.append(JournalEvent.Kind.EXIT, 3000, "AAA111", null, 0, true);
+        gateJournal.close();
+
+        List<JournalEvent> events = readAll(0);
+
+        assertEquals(3, events.size());
+        assertEquals(2, Files.list(directory).filter(file -> file.toString().endsWith(".journal")).count());
+        JournalEvent entry = events.get(1);
+        assertEquals(2, entry.getSequence());
+        assertEquals(JournalEvent.Kind.ENTRY, entry.getKind());
+        assertEquals("BBB222", entry.getVehicleRegNumber());
+        assertEquals(ParkingType.BIKE, entry.getParkingType());
+        assertEquals(4, entry.getParkingNumber());
+        assertEquals(2000, entry.getTimeMillis());
+        assertTrue(entry.isPending());
+        assertNull(events.get(2).getParkingType());
+        assertEquals(1, readAll(2).size());
+    }
+
+    @Test
+    public void testJournalResumesAfterLastCompleteRecord() throws Exception {
+        GateJournal gateJournal = GateJournal.open(directory, 10, 16);
+        gateJournal.append(JournalEvent.Kind.ENTRY, 1000, "AAA111", ParkingType.CAR, 1, true);
+        gateJournal.append(JournalEvent.Kind.ENTRY, 2000, "BBB222", ParkingType.CAR, 2, true);
+        gateJournal.close();
+        // a crash in the middle of the second record
+        try (RandomAccessFile segment = new RandomAccessFile(
+                directory.resolve(String.format("%020d.journal", 1)).toFile(), "rw")) {
+            segment.seek(64 + 40);
+            segment.write(0x7f);
+        }
+
+        GateJournal reopened = GateJournal.open(directory, 10, 16);
+        assertEquals(1, reopened.getLastSequence());
+        assertTrue(reopened.hasPendingEvents());
+        assertEquals(2, reopened.append(JournalEvent.Kind.EXIT, 3000, "AAA111", null, 0, false));
+        reopened.markReplayed(2);
+        assertFalse(reopened.hasPendingEvents());
+        reopened.close();
+
+        List<JournalEvent> events = readAll(0);
+        assertEquals(2, events.size());
+        assertEquals(JournalEvent.Kind.EXIT, events.get(1).getKind());
+        assertEquals(2, GateJournal.open(directory, 10, 16).getReplayedSequence());
+    }
+
+    @Test
+    public void testOnlyRetainedReplayedSegmentsAreKept() throws Exception {
+        GateJournal gateJournal = GateJournal.open(directory, 2, 1);
+        gateJournal.append(JournalEvent.Kind.ENTRY, 1000, "AAA111", ParkingType.CAR, 1, true);
+        for (int i = 0; i < 6; i++) {
+            gateJournal.append(JournalEvent.Kind.ENTRY, 2000 + i, "CAR" + i, ParkingType.CAR, 2, false);
+        }
+
+        // the pending entry is not replayed yet, so every segment is kept
+        assertEquals(4, segmentCount());
+        gateJournal.markReplayed(1);
+        assertEquals(4, segmentCount());
+        gateJournal.append(JournalEvent.Kind.EXIT, 3000, "CAR0", null, 0, false);
+        gateJournal.append(JournalEvent.Kind.EXIT, 3001, "CAR1", null, 0, false);
+
+        assertEquals(8, gateJournal.getReplayedSequence());
+        assertEquals(2, segmentCount());
+        assertEquals(3, readAll(0).size());
+        gateJournal.close();
+        assertEquals(9, GateJournal.open(directory, 2, 1).getLastSequence());
+    }
+
+    @Test
+    public void testConcurrentAppendsGetConsecutiveSequences() throws Exception {
+        GateJournal gateJournal = GateJournal.open(directory, 64, 16);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Long>> sequences = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String vehicleRegNumber = "CAR" + i;
+            sequences.add(executor.submit(() -> gateJournal.append(JournalEvent.Kind.ENTRY,
+                    System.currentTimeMillis(), vehicleRegNumber, ParkingType.CAR, 1, false)));
+        }
+        for (Future<Long> sequence : sequences) {
+            sequence.get();
+        }
+        executor.shutdown();
+        gateJournal.close();
+
+        List<JournalEvent> events = readAll(0);
+        assertEquals(200, events.size());
+        assertEquals(200, events.stream().map(JournalEvent::getVehicleRegNumber).collect(Collectors.toSet()).size());
+        assertEquals(200, events.get(199).getSequence());
+    }
+
+    private long segmentCount() throws Exception {
+        return Files.list(directory).filter(file -> file.toString().endsWith(".journal")).count();
+    }
+
+    private List<JournalEvent> readAll(long afterSequence) throws Exception {
+        GateJournalReader reader = new GateJournalReader(directory, afterSequence);
+        List<JournalEvent> events = new ArrayList<>();
+        JournalEvent event;
+        while ((event = reader.next()) != null) {
+            events.add(event);
+        }
+        return events;
+    }
+}
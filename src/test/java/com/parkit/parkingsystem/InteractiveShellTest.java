@@ -0,0 +1,84 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.GateResult;
+import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class InteractiveShellTest {
+
+    private static final String vehicleRegNumber = "ABCDEF";
+
+    @Mock
+    private InputReaderUtil inputReaderUtil;
+    @Mock
+    private ParkingService parkingService;
+    @Mock
+    private GateResult gateResult;
+
+    @Test
+    public void testIncomingVehicleIsParkedWithTheTypedTypeAndPlate() {
+        when(inputReaderUtil.readSelection()).thenReturn(2);
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn(vehicleRegNumber);
+        when(parkingService.getNextParkingNumberIfAvailable(ParkingType.BIKE))
+                .thenReturn(new ParkingSpot(4, ParkingType.BIKE, true));
+        when(parkingService.processIncomingVehicle(eq(ParkingType.BIKE), eq(vehicleRegNumber), any(Date.class)))
+                .thenReturn(gateResult);
+
+        assertSame(gateResult, InteractiveShell.processIncomingVehicle(inputReaderUtil, parkingService));
+    }
+
+    @Test
+    public void testIncomingVehicleIsNotAskedForItsPlateWhenTheLotIsFull() {
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+
+        assertNull(InteractiveShell.processIncomingVehicle(inputReaderUtil, parkingService));
+
+        verify(inputReaderUtil, never()).readVehicleRegistrationNumber();
+        verify(parkingService, never()).processIncomingVehicle(any(ParkingType.class), anyString(), any(Date.class));
+    }
+
+    @Test
+    public void testIncomingVehicleWithWrongType() {
+        when(inputReaderUtil.readSelection()).thenReturn(-1);
+
+        assertNull(InteractiveShell.processIncomingVehicle(inputReaderUtil, parkingService));
+
+        verifyNoMoreInteractions(parkingService);
+    }
+
+    @Test
+    public void testExitingVehicleIsBilledWithTheTypedPlate() {
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn(vehicleRegNumber);
+        when(parkingService.processExitingVehicle(eq(vehicleRegNumber), any(Date.class))).thenReturn(gateResult);
+
+        assertSame(gateResult, InteractiveShell.processExitingVehicle(inputReaderUtil, parkingService));
+    }
+
+    @Test
+    public void testReadVehicleType() {
+        when(inputReaderUtil.readSelection()).thenReturn(1, 2, 3);
+
+        assertEquals(ParkingType.CAR, InteractiveShell.readVehicleType(inputReaderUtil));
+        assertEquals(ParkingType.BIKE, InteractiveShell.readVehicleType(inputReaderUtil));
+        assertThrows(IllegalArgumentException.class, () -> InteractiveShell.readVehicleType(inputReaderUtil));
+    }
+}
@@ -5,23 +5,26 @@ import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.GateResult;
 import com.parkit.parkingsystem.service.ParkingService;
-import com.parkit.parkingsystem.util.InputReaderUtil;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Date;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -39,8 +42,6 @@ public class ParkingServiceTest {
 
     private static final String vehicleRegNumber = "ABCDEF";
 
-    @Mock
-    private static InputReaderUtil inputReaderUtil;
     @Mock
     private static ParkingSpotDAO parkingSpotDAO;
     @Mock
@@ -56,54 +57,144 @@ public class ParkingServiceTest {
 
     @BeforeEach
     public void setUpPerTest() {
-        parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
     }
 
     @Test
-    public void processExitingCarTest() throws Exception {
+    public void processExitingCarTest() {
         Ticket ticket = new Ticket();
         ticket.setInTime(oneHourAgo);
         ticket.setParkingSpot(carParkingSpot);
         ticket.setVehicleRegNumber(vehicleRegNumber);
 
-        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn(vehicleRegNumber);
-        when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
+        when(ticketDAO.getOpenTicket(anyString())).thenReturn(ticket);
         when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
 
-        parkingService.processExitingVehicle();
+        GateResult result = parkingService.processExitingVehicle(vehicleRegNumber, new Date());
 
-        verify(ticketDAO, times(1)).getTicket(anyString());
+        assertTrue(result.isAccepted());
+        verify(ticketDAO, times(1)).getOpenTicket(anyString());
         verify(ticketDAO, times(1)).updateTicket(any(Ticket.class));
         verify(parkingSpotDAO, times(1)).updateParking(any(ParkingSpot.class));
     }
 
     @Test
-    public void processExitingBikeTest() throws Exception {
+    public void processExitingBikeTest() {
         Ticket ticket = new Ticket();
         ticket.setInTime(oneHourAgo);
         ticket.setParkingSpot(bikeParkingSpot);
         ticket.setVehicleRegNumber(vehicleRegNumber);
 
-        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn(vehicleRegNumber);
-        when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
+        when(ticketDAO.getOpenTicket(anyString())).thenReturn(ticket);
         when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
 
-        parkingService.processExitingVehicle();
+        GateResult result = parkingService.processExitingVehicle(vehicleRegNumber, new Date());
 
-        verify(ticketDAO, times(1)).getTicket(anyString());
+        assertTrue(result.isAccepted());
+        verify(ticketDAO, times(1)).getOpenTicket(anyString());
         verify(ticketDAO, times(1)).updateTicket(any(Ticket.class));
         verify(parkingSpotDAO, times(1)).updateParking(any(ParkingSpot.class));
     }
 
+    @Test
+    public void processExitingVehicleReturnsFare() {
+        Ticket ticket = new Ticket();
+        ticket.setInTime(oneHourAgo);
+        ticket.setParkingSpot(carParkingSpot);
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        Date outTime = new Date(oneHourAgo.getTime() + 2 * 60 * 60 * 1000);
+        when(ticketDAO.getOpenTicket(vehicleRegNumber)).thenReturn(ticket);
+        when(ticketDAO.updateTicket(ticket)).thenReturn(true);
+
+        GateResult result = parkingService.processExitingVehicle(vehicleRegNumber, outTime);
+
+        assertEquals(outTime, result.getOutTime());
+        assertEquals(oneHourAgo, result.getInTime());
+        assertEquals(1, result.getParkingNumber());
+        assertEquals(2 * 1.5, result.getFare());
+        assertFalse(result.isDiscount());
+    }
+
+    @Test
+    public void processExitingVehicleOfRecurringUser() {
+        Ticket ticket = new Ticket();
+        ticket.setInTime(oneHourAgo);
+        ticket.setParkingSpot(carParkingSpot);
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        when(ticketDAO.getOpenTicket(vehicleRegNumber)).thenReturn(ticket);
+        when(ticketDAO.getNbTicket(vehicleRegNumber)).thenReturn(2);
+        when(ticketDAO.updateTicket(ticket)).thenReturn(true);
+
+        GateResult result = parkingService.processExitingVehicle(vehicleRegNumber,
+                new Date(oneHourAgo.getTime() + 60 * 60 * 1000));
+
+        assertTrue(result.isDiscount());
+        assertEquals(1.5 * 0.95, result.getFare(), 0.01);
+    }
+
+    @Test
+    public void processExitingVehicleNotParked() {
+        when(ticketDAO.getOpenTicket(vehicleRegNumber)).thenReturn(null);
+
+        GateResult result = parkingService.processExitingVehicle(vehicleRegNumber, new Date());
+
+        assertFalse(result.isAccepted());
+        assertEquals(vehicleRegNumber, result.getVehicleRegNumber());
+        assertTrue(result.getRejectionReason().contains(vehicleRegNumber));
+        verify(ticketDAO, never()).updateTicket(any(Ticket.class));
+        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
+    }
+
     @Test
     public void processIncomingVehicleTest() {
-        when(inputReaderUtil.readSelection()).thenReturn(1);
-        when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
+        Date inTime = new Date();
+        when(parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        ArgumentCaptor<Ticket> ticketCaptor = ArgumentCaptor.forClass(Ticket.class);
+
+        GateResult result = parkingService.processIncomingVehicle(ParkingType.CAR, vehicleRegNumber, inTime);
+
+        assertTrue(result.isAccepted());
+        assertEquals(1, result.getParkingNumber());
+        assertEquals(ParkingType.CAR, result.getParkingType());
+        assertEquals(inTime, result.getInTime());
+        assertFalse(result.isDiscount());
+        verify(ticketDAO, times(1)).saveTicket(ticketCaptor.capture());
+        assertEquals(inTime, ticketCaptor.getValue().getInTime());
+        assertEquals(vehicleRegNumber, ticketCaptor.getValue().getVehicleRegNumber());
+        assertFalse(ticketCaptor.getValue().getParkingSpot().isAvailable());
+    }
+
+    @Test
+    public void processIncomingVehicleOfRecurringUser() {
+        when(parkingSpotDAO.reserveNextAvailableSlot(ParkingType.BIKE)).thenReturn(4);
+        when(ticketDAO.getNbTicket(vehicleRegNumber)).thenReturn(1);
 
-        parkingService.processIncomingVehicle();
+        GateResult result = parkingService.processIncomingVehicle(ParkingType.BIKE, vehicleRegNumber, new Date());
 
-        verify(parkingSpotDAO, times(1)).updateParking(any(ParkingSpot.class));
-        verify(ticketDAO, times(1)).saveTicket(any(Ticket.class));
+        assertTrue(result.isAccepted());
+        assertEquals(4, result.getParkingNumber());
+        assertTrue(result.isDiscount());
+    }
+
+    @Test
+    public void processIncomingVehicleWhenLotIsFull() {
+        when(parkingSpotDAO.isFull(ParkingType.CAR)).thenReturn(true);
+
+        GateResult result = parkingService.processIncomingVehicle(ParkingType.CAR, vehicleRegNumber, new Date());
+
+        assertFalse(result.isAccepted());
+        verify(parkingSpotDAO, never()).reserveNextAvailableSlot(any(ParkingType.class));
+        verifyNoMoreInteractions(ticketDAO);
+    }
+
+    @Test
+    public void processIncomingVehicleWhenReservationFails() {
+        when(parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR)).thenReturn(-1);
+
+        GateResult result = parkingService.processIncomingVehicle(ParkingType.CAR, vehicleRegNumber, new Date());
+
+        assertFalse(result.isAccepted());
+        verify(ticketDAO, never()).saveTicket(any(Ticket.class));
     }
 
     @Test
@@ -113,10 +204,11 @@ public class ParkingServiceTest {
         ticket.setParkingSpot(carParkingSpot);
         ticket.setVehicleRegNumber(vehicleRegNumber);
 
-        when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
+        when(ticketDAO.getOpenTicket(anyString())).thenReturn(ticket);
 
-        parkingService.processExitingVehicle();
+        GateResult result = parkingService.processExitingVehicle(vehicleRegNumber, new Date());
 
+        assertFalse(result.isAccepted());
         verify(parkingSpotDAO, times(0)).updateParking(any(ParkingSpot.class));
     }
 
@@ -127,19 +219,19 @@ public class ParkingServiceTest {
         ticket.setParkingSpot(bikeParkingSpot);
         ticket.setVehicleRegNumber(vehicleRegNumber);
 
-        when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
+        when(ticketDAO.getOpenTicket(anyString())).thenReturn(ticket);
 
-        parkingService.processExitingVehicle();
+        GateResult result = parkingService.processExitingVehicle(vehicleRegNumber, new Date());
 
+        assertFalse(result.isAccepted());
         verify(parkingSpotDAO, times(0)).updateParking(any(ParkingSpot.class));
     }
 
     @Test
     public void testGetNextParkingCarNumberIfAvailable() {
-        when(inputReaderUtil.readSelection()).thenReturn(1);
         when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
 
-        ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable();
+        ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable(ParkingType.CAR);
 
         assertEquals(1, parkingSpot.getId());
         assertEquals(ParkingType.CAR, parkingSpot.getParkingType());
@@ -150,10 +242,9 @@ public class ParkingServiceTest {
 
     @Test
     public void testGetNextParkingBikeNumberIfAvailable() {
-        when(inputReaderUtil.readSelection()).thenReturn(2);
         when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(3);
 
-        ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable();
+        ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable(ParkingType.BIKE);
 
         assertEquals(3, parkingSpot.getId());
         assertEquals(ParkingType.BIKE, parkingSpot.getParkingType());
@@ -164,34 +255,30 @@ public class ParkingServiceTest {
 
     @Test
     public void testGetNextParkingCarNumberIfAvailableParkingNumberNotFound() {
-        when(inputReaderUtil.readSelection()).thenReturn(1);
         when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(-1);
 
-        ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable();
+        ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable(ParkingType.CAR);
         assertNull(parkingSpot);
 
         verify(parkingSpotDAO, times(1)).getNextAvailableSlot(any(ParkingType.class));
     }
 
     @Test
-    public void testGetNextParkingBikeNumberIfAvailableParkingNumberNotFound() {
-        when(inputReaderUtil.readSelection()).thenReturn(2);
-        when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(-1);
+    public void testGetNextParkingNumberIfAvailableWhenLotIsFull() {
+        when(parkingSpotDAO.isFull(ParkingType.BIKE)).thenReturn(true);
 
-        ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable();
-        assertNull(parkingSpot);
+        assertNull(parkingService.getNextParkingNumberIfAvailable(ParkingType.BIKE));
 
-        verify(parkingSpotDAO, times(1)).getNextAvailableSlot(any(ParkingType.class));
+        verify(parkingSpotDAO, never()).getNextAvailableSlot(any(ParkingType.class));
     }
 
     @Test
-    public void testGetNextParkingNumberIfAvailableParkingNumberWrongArgument() {
-        when(inputReaderUtil.readSelection()).thenReturn(-1);
-
-        ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable();
+    public void testGetNextParkingBikeNumberIfAvailableParkingNumberNotFound() {
+        when(parkingSpotDAO.getNextAvailableSlot(any(ParkingType.class))).thenReturn(-1);
 
+        ParkingSpot parkingSpot = parkingService.getNextParkingNumberIfAvailable(ParkingType.BIKE);
         assertNull(parkingSpot);
-        verifyNoMoreInteractions(parkingSpotDAO);
-        verify(parkingSpotDAO, times(0)).getNextAvailableSlot(any(ParkingType.class));
+
+        verify(parkingSpotDAO, times(1)).getNextAvailableSlot(any(ParkingType.class));
     }
-}
\ No newline at end of file
+}
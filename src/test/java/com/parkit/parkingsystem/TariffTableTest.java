@@ -0,0 +1,111 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.TariffTable;
+import com.parkit.parkingsystem.service.TariffWatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TariffTableTest {
+
+    private static final int SEVEN_AM = 7 * 60;
+
+    @AfterEach
+    public void tearDown() {
+        FareCalculatorService.setTariffTable(TariffTable.defaults());
+    }
+
+    @Test
+    public void defaultsMatchFareConstants() {
+        TariffTable table = TariffTable.defaults();
+
+        assertEquals(Math.round(Fare.CAR_RATE_PER_HOUR * 100), table.priceCents(ParkingType.CAR, 0, 60, false));
+        assertEquals(Math.round(Fare.BIKE_RATE_PER_HOUR * 100), table.priceCents(ParkingType.BIKE, 0, 60, false));
+        assertEquals(0, table.priceCents(ParkingType.CAR, 0, 29, false));
+    }
+
+    @Test
+    public void stayIsPricedPerTimeBand() {
+        TariffTable table = TariffTable.compile(rules("CAR.rate=1", "CAR.rate.8-10=3", "BIKE.rate=1"), null);
+
+        // 7:00 to 9:00: one hour at 1 then one hour at 3
+        assertEquals(400, table.priceCents(ParkingType.CAR, SEVEN_AM, 120, false));
+        // 23:00 to 1:00 wraps midnight at the base rate
+        assertEquals(200, table.priceCents(ParkingType.CAR, 23 * 60, 120, false));
+        // a full day plus one hour from 7:00: 22h at 1 + 2h at 3, then 1h at 1
+        assertEquals(2900, table.priceCents(ParkingType.CAR, SEVEN_AM, 25 * 60, false));
+        assertEquals(100, table.priceCents(ParkingType.BIKE, SEVEN_AM, 60, false));
+    }
+
+    @Test
+    public void dailyCapLimitsEachDay() {
+        TariffTable table = TariffTable.compile(rules("CAR.rate=2", "CAR.dailyCap=10", "BIKE.rate=1",
+                "discountRate=0.5"), null);
+
+        assertEquals(400, table.priceCents(ParkingType.CAR, 0, 120, false));
+        assertEquals(1000, table.priceCents(ParkingType.CAR, 0, 10 * 60, false));
+        assertEquals(1400, table.priceCents(ParkingType.CAR, 0, 26 * 60, false));
+        assertEquals(700, table.priceCents(ParkingType.CAR, 0, 26 * 60, true));
+    }
+
+    @Test
+    public void lotRulesOverrideDefaults() {
+        Properties rules = rules("CAR.rate=1", "BIKE.rate=1", "freeMinutes=0", "lot.north.CAR.rate=2");
+
+        assertEquals(100, TariffTable.compile(rules, null).priceCents(ParkingType.CAR, 0, 60, false));
+        assertEquals(200, TariffTable.compile(rules, "north").priceCents(ParkingType.CAR, 0, 60, false));
+        assertEquals(10, TariffTable.compile(rules, "north").priceCents(ParkingType.BIKE, 0, 6, false));
+    }
+
+    @Test
+    public void invalidRulesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> TariffTable.compile(rules("CAR.rate=1"), null));
+        assertThrows(IllegalArgumentException.class, () -> TariffTable.compile(
+                rules("CAR.rate=1", "BIKE.rate=1", "CAR.rate.8-12=2", "CAR.rate.11-13=3"), null));
+        assertThrows(IllegalArgumentException.class, () -> TariffTable.compile(
+                rules("CAR.rate=1", "BIKE.rate=-1"), null));
+    }
+
+    @Test
+    public void watcherReloadsChangedTariffFile() throws Exception {
+        Path tariffFile = Files.createTempFile("tariff", ".properties");
+        tariffFile.toFile().deleteOnExit();
+        Files.write(tariffFile, "CAR.rate=2\nBIKE.rate=1\n".getBytes());
+        TariffWatcher tariffWatcher = new TariffWatcher(tariffFile, null, 60000);
+        FareCalculatorService fareCalculatorService = new FareCalculatorService();
+        try {
+            assertTrue(tariffWatcher.start());
+            assertEquals(200, fareCalculatorService.calculateFareCents(ParkingType.CAR, 0, 60 * 60 * 1000, false));
+
+            Files.write(tariffFile, "CAR.rate=3\nBIKE.rate=1\n".getBytes());
+            Files.setLastModifiedTime(tariffFile, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+            assertTrue(tariffWatcher.reloadIfChanged());
+            assertEquals(300, fareCalculatorService.calculateFareCents(ParkingType.CAR, 0, 60 * 60 * 1000, false));
+
+            Files.write(tariffFile, "CAR.rate=oops\n".getBytes());
+            Files.setLastModifiedTime(tariffFile, FileTime.fromMillis(System.currentTimeMillis() + 2000));
+            assertFalse(tariffWatcher.reloadIfChanged());
+            assertEquals(300, fareCalculatorService.calculateFareCents(ParkingType.CAR, 0, 60 * 60 * 1000, false));
+        } finally {
+            tariffWatcher.close();
+        }
+    }
+
+    private static Properties rules(String... rules) {
+        Properties properties = new Properties();
+        for (String rule : rules) {
+            String[] keyValue = rule.split("=");
+            properties.setProperty(keyValue[0], keyValue[1]);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,123 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.InMemoryDataBaseTestConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ArchiveStats;
+import com.parkit.parkingsystem.service.TicketArchiver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketArchiverTest {
+
+    private static final InMemoryDataBaseTestConfig dataBaseConfig = new InMemoryDataBaseTestConfig("archive");
+    private static final long ONE_DAY = 24 * 60 * 60 * 1000;
+
+    private TicketArchiver ticketArchiver;
+    private TicketDAO ticketDAO;
+    private long now;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataBaseConfig.createSchema(3, 1);
+        ticketArchiver = new TicketArchiver(dataBaseConfig, 2, 0);
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        now = System.currentTimeMillis();
+    }
+
+    @Test
+    public void testOldClosedTicketsAreMovedToArchive() throws Exception {
+        insertTicket(1, "AAA111", now - 100 * ONE_DAY, now - 99 * ONE_DAY);
+        insertTicket(2, "BBB222", now - 95 * ONE_DAY, null);
+        insertTicket(1, "AAA111", now - 90 * ONE_DAY, now - 90 * ONE_DAY);
+        insertTicket(3, "CCC333", now - 80 * ONE_DAY, now - 79 * ONE_DAY);
+        insertTicket(1, "AAA111", now - 70 * ONE_DAY, now - 70 * ONE_DAY);
+        insertTicket(1, "AAA111", now - 2 * ONE_DAY, now - ONE_DAY);
+
+        ArchiveStats stats = ticketArchiver.archiveOlderThan(30);
+
+        assertEquals(4, stats.getTicketsArchived());
+        assertEquals(2, stats.getChunks());
+        assertEquals(5, stats.getLastTicketId());
+        assertEquals(2, countRows("select count(*) from ticket"));
+        assertEquals(4, countRows("select count(*) from ticket_archive"));
+        assertEquals(3, countRows("select ARCHIVED_TICKETS from ticket_archive_summary "
+                + "where VEHICLE_REG_NUMBER = 'AAA111'"));
+        assertEquals(0, ticketArchiver.archiveOlderThan(30).getTicketsArchived());
+    }
+
+    @Test
+    public void testTicketCountsIncludeArchivedTickets() throws Exception {
+        insertTicket(1, "AAA111", now - 100 * ONE_DAY, now - 99 * ONE_DAY);
+        insertTicket(1, "AAA111", now - 2 * ONE_DAY, now - ONE_DAY);
+        insertTicket(2, "BBB222", now - 90 * ONE_DAY, now - 90 * ONE_DAY);
+        assertEquals(2, ticketDAO.getNbTicket("AAA111"));
+
+        ticketArchiver.archiveOlderThan(30);
+        insertTicket(3, "AAA111", now - 80 * ONE_DAY, now - 79 * ONE_DAY);
+        ticketArchiver.archiveOlderThan(30);
+
+        assertEquals(3, ticketDAO.getNbTicket("AAA111"));
+        assertEquals(1, ticketDAO.getNbTicket("BBB222"));
+        assertEquals(0, ticketDAO.getNbTicket("CCC333"));
+        assertEquals(2, countRows("select ARCHIVED_TICKETS from ticket_archive_summary "
+                + "where VEHICLE_REG_NUMBER = 'AAA111'"));
+    }
+
+    @Test
+    public void testPriceUpdatedDuringArchivalIsArchived() throws Exception {
+        insertTicket(1, "AAA111", now - 100 * ONE_DAY, now - 99 * ONE_DAY);
+        Connection repricing = dataBaseConfig.getConnection();
+        ExecutorService archival = Executors.newSingleThreadExecutor();
+        try {
+            repricing.setAutoCommit(false);
+            repricing.createStatement().executeUpdate("update ticket set PRICE = 42 where ID = 1");
+            Future<ArchiveStats> stats = archival.submit(() -> ticketArchiver.archiveOlderThan(30));
+            // the archival waits for the repricing to commit instead of copying the old price
+            Thread.sleep(200);
+            repricing.commit();
+
+            assertEquals(1, stats.get(5, TimeUnit.SECONDS).getTicketsArchived());
+        } finally {
+            repricing.setAutoCommit(true);
+            dataBaseConfig.closeConnection(repricing);
+            archival.shutdownNow();
+        }
+        assertEquals(42, countRows("select PRICE from ticket_archive where ID = 1"));
+    }
+
+    private void insertTicket(int parkingNumber, String vehicleRegNumber, long inTime, Long outTime) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingNumber == 4 ? ParkingType.BIKE : ParkingType.CAR,
+                false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(inTime));
+        ticket.setOutTime(outTime == null ? null : new Date(outTime));
+        ticketDAO.saveTicket(ticket);
+    }
+
+    private int countRows(String sql) throws Exception {
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            ResultSet rs = connection.createStatement().executeQuery(sql);
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
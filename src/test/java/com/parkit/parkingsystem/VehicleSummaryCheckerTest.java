@@ -0,0 +1,92 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.InMemoryDataBaseTestConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.SummaryCheckStats;
+import com.parkit.parkingsystem.service.VehicleSummaryChecker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VehicleSummaryCheckerTest {
+
+    private static final InMemoryDataBaseTestConfig dataBaseConfig = new InMemoryDataBaseTestConfig("summary");
+    private static final long ONE_HOUR = 60 * 60 * 1000;
+
+    private TicketDAO ticketDAO;
+    private VehicleSummaryChecker vehicleSummaryChecker;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataBaseConfig.createSchema(3, 1);
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        vehicleSummaryChecker = new VehicleSummaryChecker(dataBaseConfig, 100);
+    }
+
+    @Test
+    public void testSavedTicketsKeepSummaryConsistent() throws Exception {
+        long now = System.currentTimeMillis();
+        saveTicket("AAA111", now - 3 * ONE_HOUR);
+        saveTicket("AAA111", now - ONE_HOUR);
+        saveTicket("BBB222", now - 2 * ONE_HOUR);
+
+        assertEquals(2, ticketDAO.getNbTicket("AAA111"));
+        assertEquals(1, ticketDAO.getNbTicket("BBB222"));
+        assertEquals(0, ticketDAO.getNbTicket("CCC333"));
+        SummaryCheckStats stats = vehicleSummaryChecker.check(false);
+        assertEquals(0, stats.getMismatches());
+        assertEquals(0, stats.getOrphans());
+    }
+
+    @Test
+    public void testSummaryIsRebuiltFromHistory() throws Exception {
+        long now = System.currentTimeMillis();
+        saveTicket("AAA111", now - 3 * ONE_HOUR);
+        saveTicket("AAA111", now - ONE_HOUR);
+        saveTicket("BBB222", now - 2 * ONE_HOUR);
+        saveTicket("CCC333", now - 2 * ONE_HOUR);
+        execute("update vehicle_summary set VISITS = 5 where VEHICLE_REG_NUMBER = 'AAA111'");
+        execute("delete from vehicle_summary where VEHICLE_REG_NUMBER = 'BBB222'");
+        execute("insert into vehicle_summary(VEHICLE_REG_NUMBER, VISITS, LAST_VISIT) values('GHOST', 1, now())");
+
+        SummaryCheckStats report = vehicleSummaryChecker.check(false);
+        assertEquals(2, report.getMismatches());
+        assertEquals(1, report.getOrphans());
+        assertEquals(0, report.getRepaired());
+        assertEquals(5, ticketDAO.getNbTicket("AAA111"));
+
+        assertEquals(3, vehicleSummaryChecker.check(true).getRepaired());
+        assertEquals(2, ticketDAO.getNbTicket("AAA111"));
+        assertEquals(1, ticketDAO.getNbTicket("BBB222"));
+        assertEquals(0, ticketDAO.getNbTicket("GHOST"));
+        SummaryCheckStats after = vehicleSummaryChecker.check(true);
+        assertEquals(0, after.getMismatches() + after.getOrphans() + after.getRepaired());
+    }
+
+    private void saveTicket(String vehicleRegNumber, long inTime) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(inTime));
+        ticket.setOutTime(new Date(inTime + ONE_HOUR));
+        ticketDAO.saveTicket(ticket);
+    }
+
+    private void execute(String sql) throws Exception {
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            connection.createStatement().execute(sql);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.parkit.parkingsystem.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ConnectionPoolTest {
+
+    private final List<Connection> physicalConnections = new ArrayList<>();
+
+    private ConnectionPool connectionPool;
+
+    @BeforeEach
+    public void setUp() {
+        PoolConfig poolConfig = new PoolConfig();
+        poolConfig.setMinIdle(0);
+        poolConfig.setMaxSize(2);
+        poolConfig.setBorrowTimeoutMillis(50);
+        poolConfig.setValidationIntervalMillis(0);
+
+        connectionPool = new ConnectionPool("test", () -> {
+            Connection connection = mock(Connection.class);
+            when(connection.isValid(anyInt())).thenReturn(true);
+            when(connection.getAutoCommit()).thenReturn(true);
+            when(connection.prepareStatement(anyString())).thenAnswer(invocation -> mock(PreparedStatement.class));
+            physicalConnections.add(connection);
+            return connection;
+        }, poolConfig);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        connectionPool.close();
+    }
+
+    @Test
+    public void testClosedConnectionIsReused() throws Exception {
+        Connection first = connectionPool.borrow();
+        first.close();
+        Connection second = connectionPool.borrow();
+        second.close();
+
+        assertEquals(1, physicalConnections.size());
+        verify(physicalConnections.get(0), never()).close();
+        assertTrue(first.isClosed());
+    }
+
+    @Test
+    public void testBorrowTimesOutWhenPoolExhausted() throws Exception {
+        connectionPool.borrow();
+        connectionPool.borrow();
+
+        assertThrows(SQLTimeoutException.class, () -> connectionPool.borrow());
+
+        PoolStats poolStats = connectionPool.getStats();
+        assertEquals(2, poolStats.getActive());
+        assertEquals(0, poolStats.getIdle());
+        assertEquals(2, poolStats.getBorrowCount());
+        assertEquals(1, poolStats.getBorrowFailures());
+    }
+
+    @Test
+    public void testInvalidIdleConnectionIsDiscarded() throws Exception {
+        connectionPool.borrow().close();
+        when(physicalConnections.get(0).isValid(anyInt())).thenReturn(false);
+
+        connectionPool.borrow();
+
+        assertEquals(2, physicalConnections.size());
+        verify(physicalConnections.get(0), times(1)).close();
+    }
+
+    @Test
+    public void testUncommittedWorkIsRolledBackOnRelease() throws Exception {
+        Connection connection = connectionPool.borrow();
+        when(physicalConnections.get(0).getAutoCommit()).thenReturn(false);
+
+        connection.close();
+
+        verify(physicalConnections.get(0), times(1)).rollback();
+        verify(physicalConnections.get(0), times(1)).setAutoCommit(true);
+        assertEquals(1, connectionPool.getStats().getIdle());
+    }
+
+    @Test
+    public void testReturnedConnectionCannotBeUsed() throws Exception {
+        Connection connection = connectionPool.borrow();
+        connection.close();
+
+        assertThrows(SQLException.class, () -> connection.prepareStatement("select 1"));
+    }
+
+    @Test
+    public void testPreparedStatementIsReusedAcrossBorrows() throws Exception {
+        Connection first = connectionPool.borrow();
+        Connection physical = physicalConnections.get(0);
+        PreparedStatement physicalStatement = mock(PreparedStatement.class);
+        when(physical.prepareStatement("select 1")).thenReturn(physicalStatement);
+        PreparedStatement firstStatement = first.prepareStatement("select 1");
+        firstStatement.setInt(1, 1);
+        firstStatement.setMaxRows(10);
+        firstStatement.close();
+        first.close();
+        Connection second = connectionPool.borrow();
+        second.prepareStatement("select 1").executeQuery();
+        second.close();
+
+        verify(physical, times(1)).prepareStatement("select 1");
+        verify(physicalStatement, times(1)).setInt(1, 1);
+        verify(physicalStatement, times(2)).clearParameters();
+        verify(physicalStatement, times(2)).setFetchSize(0);
+        verify(physicalStatement, times(2)).setMaxRows(0);
+        verify(physicalStatement, times(2)).setQueryTimeout(0);
+        verify(physicalStatement, never()).close();
+        assertTrue(firstStatement.isClosed());
+        assertThrows(SQLException.class, () -> firstStatement.setInt(1, 2));
+        assertEquals(1, connectionPool.getStats().getStatementCacheHits());
+        assertEquals(1, connectionPool.getStats().getStatementCacheMisses());
+    }
+
+    @Test
+    public void testStatementLeftOpenIsReturnedWithItsConnection() throws Exception {
+        Connection first = connectionPool.borrow();
+        PreparedStatement leaked = first.prepareStatement("select 1");
+        first.close();
+
+        Connection second = connectionPool.borrow();
+        second.prepareStatement("select 1");
+
+        assertTrue(leaked.isClosed());
+        verify(physicalConnections.get(0), times(1)).prepareStatement("select 1");
+    }
+
+    @Test
+    public void testLeastRecentlyUsedStatementIsClosedWhenCacheIsFull() throws Exception {
+        PoolConfig poolConfig = new PoolConfig();
+        poolConfig.setMinIdle(0);
+        poolConfig.setStatementCacheSize(1);
+        Connection physical = mock(Connection.class);
+        PreparedStatement selectOne = mock(PreparedStatement.class);
+        PreparedStatement selectTwo = mock(PreparedStatement.class);
+        when(physical.prepareStatement("select 1")).thenReturn(selectOne);
+        when(physical.prepareStatement("select 2")).thenReturn(selectTwo);
+        ConnectionPool smallCachePool = new ConnectionPool("smallCache", () -> physical, poolConfig);
+        try {
+            Connection connection = smallCachePool.borrow();
+            connection.prepareStatement("select 1").close();
+            connection.prepareStatement("select 2").close();
+
+            verify(selectOne, times(1)).close();
+            verify(selectTwo, never()).close();
+        } finally {
+            smallCachePool.close();
+        }
+    }
+
+    @Test
+    public void testCachedStatementsAreClosedWithTheirConnection() throws Exception {
+        Connection connection = connectionPool.borrow();
+        Connection physical = physicalConnections.get(0);
+        PreparedStatement physicalStatement = mock(PreparedStatement.class);
+        when(physical.prepareStatement("select 1")).thenReturn(physicalStatement);
+        connection.prepareStatement("select 1").close();
+        connection.close();
+
+        connectionPool.close();
+
+        verify(physicalStatement, times(1)).close();
+        verify(physical, times(1)).close();
+    }
+
+    @Test
+    public void testStatementCacheCanBeDisabled() throws Exception {
+        PoolConfig poolConfig = new PoolConfig();
+        poolConfig.setMinIdle(0);
+        poolConfig.setStatementCacheSize(0);
+        Connection physical = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(physical.prepareStatement("select 1")).thenReturn(statement);
+        ConnectionPool uncachedPool = new ConnectionPool("uncached", () -> physical, poolConfig);
+        try {
+            Connection connection = uncachedPool.borrow();
+            assertSame(statement, connection.prepareStatement("select 1"));
+            connection.prepareStatement("select 1").close();
+
+            verify(statement, times(1)).close();
+            verify(physical, times(2)).prepareStatement("select 1");
+        } finally {
+            uncachedPool.close();
+        }
+    }
+
+    @Test
+    public void testEvictionNeverClosesALeasedConnection() throws Exception {
+        PoolConfig poolConfig = new PoolConfig();
+        poolConfig.setMinIdle(1);
+        poolConfig.setMaxSize(3);
+        poolConfig.setIdleTimeoutMillis(0);
+        poolConfig.setEvictionIntervalMillis(1);
+        poolConfig.setBorrowTimeoutMillis(5000);
+        poolConfig.setValidationIntervalMillis(Long.MAX_VALUE);
+        AtomicInteger open = new AtomicInteger();
+        AtomicInteger maxOpen = new AtomicInteger();
+        ConnectionPool evictingPool = new ConnectionPool("evicting", () -> {
+            AtomicBoolean physicalClosed = new AtomicBoolean();
+            Connection connection = mock(Connection.class);
+            when(connection.isClosed()).thenAnswer(invocation -> physicalClosed.get());
+            when(connection.getAutoCommit()).thenReturn(true);
+            doAnswer(invocation -> {
+                if (physicalClosed.compareAndSet(false, true)) {
+                    open.decrementAndGet();
+                }
+                return null;
+            }).when(connection).close();
+            maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+            return connection;
+        }, poolConfig);
+        ExecutorService borrowers = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                results.add(borrowers.submit(() -> {
+                    int closedWhileLeased = 0;
+                    for (int j = 0; j < 200; j++) {
+                        Connection connection = evictingPool.borrow();
+                        Thread.yield();
+                        if (connection.isClosed()) {
+                            closedWhileLeased++;
+                        }
+                        connection.close();
+                    }
+                    return closedWhileLeased;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(0, result.get().intValue());
+            }
+            assertTrue(maxOpen.get() <= 3, "opened " + maxOpen.get() + " connections at once");
+        } finally {
+            borrowers.shutdownNow();
+            evictingPool.close();
+        }
+    }
+}
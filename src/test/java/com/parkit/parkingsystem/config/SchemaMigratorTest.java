@@ -0,0 +1,104 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.integration.config.InMemoryDataBaseTestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaMigratorTest {
+
+    private static final InMemoryDataBaseTestConfig dataBaseConfig = new InMemoryDataBaseTestConfig("migration");
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataBaseConfig.createBaseSchema(10, 5);
+    }
+
+    @Test
+    public void testMigrationsAreAppliedOnce() throws Exception {
+        SchemaMigrator schemaMigrator = new SchemaMigrator(dataBaseConfig);
+
+        assertEquals(SchemaMigrator.MIGRATIONS.length, schemaMigrator.migrate());
+        assertEquals(0, schemaMigrator.migrate());
+        assertEquals(SchemaMigrator.MIGRATIONS.length, countRows("select count(*) from schema_version"));
+    }
+
+    @Test
+    public void testVehicleSummaryIsBuiltFromExistingTickets() throws Exception {
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            connection.createStatement().execute("insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, "
+                    + "IN_TIME, OUT_TIME) values(1, 'ABCDEF', 0, '2024-05-01 08:00:00', '2024-05-01 09:00:00'), "
+                    + "(2, 'ABCDEF', 0, '2024-05-02 08:00:00', null), (3, 'GHIJKL', 0, '2024-05-01 10:00:00', null)");
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+
+        new SchemaMigrator(dataBaseConfig).migrate();
+
+        assertEquals(2, countRows("select VISITS from vehicle_summary where VEHICLE_REG_NUMBER = 'ABCDEF'"));
+        assertEquals(1, countRows("select VISITS from vehicle_summary where VEHICLE_REG_NUMBER = 'GHIJKL'"));
+    }
+
+    @Test
+    public void testMigrationsAreListedInVersionOrder() {
+        for (int i = 0; i < SchemaMigrator.MIGRATIONS.length; i++) {
+            assertEquals(i + 1, SchemaMigrator.getVersion(SchemaMigrator.MIGRATIONS[i]));
+        }
+    }
+
+    @Test
+    public void testTicketLookupsUseVehicleIndex() throws Exception {
+        new SchemaMigrator(dataBaseConfig).migrate();
+
+        assertTrue(explain(DBConstants.GET_TICKET, "'ABCDEF'").contains("TICKET_VEHICLE_OUT_IN_IDX"));
+        assertTrue(explain(DBConstants.GET_NUMBER_TICKET, "'ABCDEF'").contains("PRIMARY_KEY"));
+        assertTrue(explain(DBConstants.GET_OPEN_TICKET, "'ABCDEF'").contains("TICKET_VEHICLE_OUT_IN_IDX"));
+    }
+
+    @Test
+    public void testFreeSpotLookupsUseTypeIndex() throws Exception {
+        new SchemaMigrator(dataBaseConfig).migrate();
+
+        assertTrue(explain(DBConstants.GET_NEXT_PARKING_SPOT, "'CAR'")
+                .contains("PARKING_TYPE_AVAILABLE_NUMBER_IDX"));
+        assertTrue(explain(DBConstants.LOCK_NEXT_PARKING_SPOT, "'CAR'", "0")
+                .contains("PARKING_TYPE_AVAILABLE_NUMBER_IDX"));
+    }
+
+    private String explain(String sql, String... parameters) throws Exception {
+        for (String parameter : parameters) {
+            sql = sql.replaceFirst("\\?", parameter);
+        }
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            ResultSet rs = connection.createStatement().executeQuery("explain " + sql);
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                plan.append(rs.getString(1));
+            }
+            return plan.toString();
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    private int countRows(String sql) throws Exception {
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            ResultSet rs = connection.createStatement().executeQuery(sql);
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
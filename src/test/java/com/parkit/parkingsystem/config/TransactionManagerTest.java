@@ -0,0 +1,98 @@
+package com.parkit.parkingsystem.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TransactionManagerTest {
+
+    @Mock
+    private DataBaseConfig dataBaseConfig;
+
+    @Mock
+    private Connection connection;
+
+    private TransactionManager transactionManager;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        transactionManager = new TransactionManager(dataBaseConfig);
+    }
+
+    @Test
+    public void testCommitOnSuccess() throws Exception {
+        String result = transactionManager.inTransaction(() -> "done");
+
+        assertEquals("done", result);
+        verify(connection, times(1)).setAutoCommit(false);
+        verify(connection, times(1)).commit();
+        verify(connection, never()).rollback();
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testRollbackOnException() throws Exception {
+        assertThrows(IllegalStateException.class, () -> transactionManager.inTransaction(() -> {
+            throw new IllegalStateException("failure");
+        }));
+
+        verify(connection, never()).commit();
+        verify(connection, times(1)).rollback();
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testRollbackWhenMarkedRollbackOnly() throws Exception {
+        assertThrows(SQLException.class, () -> transactionManager.inTransaction(() -> {
+            TransactionManager.setRollbackOnly();
+            return null;
+        }));
+
+        verify(connection, never()).commit();
+        verify(connection, times(1)).rollback();
+    }
+
+    @Test
+    public void testFailingBeforeCommitActionRollsBack() throws Exception {
+        AtomicBoolean rolledBack = new AtomicBoolean();
+
+        assertThrows(IOException.class, () -> transactionManager.inTransaction(() -> {
+            TransactionManager.runBeforeCommit(() -> {
+                throw new IOException("journal full");
+            });
+            TransactionManager.runAfterRollback(() -> rolledBack.set(true));
+            return null;
+        }));
+
+        verify(connection, never()).commit();
+        verify(connection, times(1)).rollback();
+        assertTrue(rolledBack.get());
+    }
+
+    @Test
+    public void testDaoConnectionsJoinTheTransaction() throws Exception {
+        DataBaseConfig daoDataBaseConfig = new DataBaseConfig();
+
+        transactionManager.inTransaction(() -> {
+            Connection daoConnection = daoDataBaseConfig.getConnection();
+            assertSame(connection, daoConnection);
+            daoDataBaseConfig.closeConnection(daoConnection);
+            return null;
+        });
+
+        verify(connection, never()).close();
+        verify(connection, times(1)).commit();
+    }
+}
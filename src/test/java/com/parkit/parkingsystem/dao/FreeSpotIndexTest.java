@@ -0,0 +1,59 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FreeSpotIndexTest {
+
+    private FreeSpotIndex freeSpotIndex;
+
+    @BeforeEach
+    public void setUp() {
+        freeSpotIndex = new FreeSpotIndex();
+        freeSpotIndex.addSpot(1, ParkingType.CAR, false);
+        freeSpotIndex.addSpot(2, ParkingType.CAR, true);
+        freeSpotIndex.addSpot(3, ParkingType.CAR, true);
+        freeSpotIndex.addSpot(4, ParkingType.BIKE, true);
+    }
+
+    @Test
+    public void testPeekReturnsLowestFreeSpotOfType() {
+        assertEquals(2, freeSpotIndex.peek(ParkingType.CAR));
+        assertEquals(4, freeSpotIndex.peek(ParkingType.BIKE));
+        assertEquals(2, freeSpotIndex.peek(ParkingType.CAR));
+    }
+
+    @Test
+    public void testClaimNextRemovesSpot() {
+        assertEquals(2, freeSpotIndex.claimNext(ParkingType.CAR));
+        assertEquals(3, freeSpotIndex.claimNext(ParkingType.CAR));
+        assertEquals(-1, freeSpotIndex.claimNext(ParkingType.CAR));
+        assertEquals(-1, freeSpotIndex.peek(ParkingType.CAR));
+    }
+
+    @Test
+    public void testReleasedSpotIsOfferedFirstAgain() {
+        freeSpotIndex.markAvailable(1);
+
+        assertEquals(1, freeSpotIndex.peek(ParkingType.CAR));
+        assertTrue(freeSpotIndex.isAvailable(1));
+    }
+
+    @Test
+    public void testMarkUnavailable() {
+        assertTrue(freeSpotIndex.markUnavailable(4));
+        assertFalse(freeSpotIndex.markUnavailable(4));
+        assertEquals(-1, freeSpotIndex.peek(ParkingType.BIKE));
+    }
+
+    @Test
+    public void testUnknownSpotIsIgnored() {
+        freeSpotIndex.markAvailable(99);
+
+        assertFalse(freeSpotIndex.isAvailable(99));
+        assertFalse(freeSpotIndex.markUnavailable(99));
+    }
+}
@@ -0,0 +1,124 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.integration.config.InMemoryDataBaseTestConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KnownVehicleFilterTest {
+
+    private static final InMemoryDataBaseTestConfig dataBaseConfig = new InMemoryDataBaseTestConfig("knownVehicles");
+
+    @Test
+    public void testAddedVehiclesAreAlwaysFound() {
+        KnownVehicleFilter filter = new KnownVehicleFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add("CAR" + i);
+        }
+
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain("CAR" + i));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRateStaysNearConfiguredRate() {
+        KnownVehicleFilter filter = new KnownVehicleFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add("CAR" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain("BIKE" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    public void testFilterIsReadBackFromFile() throws Exception {
+        Path file = Files.createTempDirectory("knownVehicles").resolve("filter");
+        KnownVehicleFilter filter = new KnownVehicleFilter(1000, 0.001);
+        filter.add("AAA111");
+
+        filter.write(file, 42);
+        KnownVehicleFilter.Saved saved = KnownVehicleFilter.read(file);
+
+        assertEquals(42, saved.getLastTicketId());
+        assertTrue(saved.getFilter().hasSameShape(filter));
+        assertTrue(saved.getFilter().mightContain("AAA111"));
+        assertFalse(saved.getFilter().mightContain("BBB222"));
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> KnownVehicleFilter.read(file));
+    }
+
+    @Test
+    public void testTicketDAOCatchesUpSavedFilter() throws Exception {
+        dataBaseConfig.createSchema(2, 1);
+        Path file = Files.createTempDirectory("knownVehicles").resolve("filter");
+        TicketDAO ticketDAO = newTicketDAO();
+        assertTrue(ticketDAO.enableKnownVehicleFilter(1000, 0.001, file));
+        saveTicket(ticketDAO, "AAA111");
+        assertEquals(1, ticketDAO.getNbTicket("AAA111"));
+        assertEquals(0, ticketDAO.getNbTicket("BBB222"));
+        assertTrue(ticketDAO.saveKnownVehicleFilter());
+
+        // saved while the filter was not running: only the ticket table knows about it
+        execute("insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME) values(1, 'CCC333', 0, now())");
+        TicketDAO restarted = newTicketDAO();
+        assertTrue(restarted.enableKnownVehicleFilter(1000, 0.001, file));
+
+        assertTrue(restarted.knownVehicleFilter.mightContain("AAA111"));
+        assertTrue(restarted.knownVehicleFilter.mightContain("CCC333"));
+        assertFalse(restarted.knownVehicleFilter.mightContain("BBB222"));
+    }
+
+    @Test
+    public void testTicketDAORebuildsFilterOfAnotherSize() throws Exception {
+        dataBaseConfig.createSchema(2, 1);
+        Path file = Files.createTempDirectory("knownVehicles").resolve("filter");
+        TicketDAO ticketDAO = newTicketDAO();
+        saveTicket(ticketDAO, "AAA111");
+        new KnownVehicleFilter(10, 0.1).write(file, 1);
+
+        assertTrue(ticketDAO.enableKnownVehicleFilter(1000, 0.001, file));
+
+        assertTrue(ticketDAO.knownVehicleFilter.mightContain("AAA111"));
+        assertEquals(KnownVehicleFilter.optimalBits(1000, 0.001), ticketDAO.knownVehicleFilter.getNbBits());
+    }
+
+    private static TicketDAO newTicketDAO() {
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        return ticketDAO;
+    }
+
+    private static void saveTicket(TicketDAO ticketDAO, String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date());
+        ticketDAO.saveTicket(ticket);
+    }
+
+    private static void execute(String sql) throws Exception {
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            connection.createStatement().execute(sql);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
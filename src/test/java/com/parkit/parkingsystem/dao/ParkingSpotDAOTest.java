@@ -4,6 +4,9 @@ import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.util.Metrics;
+import com.parkit.parkingsystem.util.Metrics.Operation;
+import com.parkit.parkingsystem.util.OperationMetrics;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,6 +18,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -97,4 +101,137 @@ public class ParkingSpotDAOTest {
         verify(dataBaseConfig, times(1)).closePreparedStatement(preparedStatement);
         verify(dataBaseConfig, times(1)).closeConnection(connection);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReserveNextAvailableSlotMovesOnWhenCandidateIsTaken() throws Exception {
+        PreparedStatement reserveStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.LOCK_NEXT_PARKING_SPOT)).thenReturn(preparedStatement);
+        doReturn(reserveStatement).when(connection).prepareStatement(DBConstants.RESERVE_PARKING_SPOT);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(1, 2);
+        when(reserveStatement.executeUpdate()).thenReturn(0, 1);
+
+        int slot = parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR);
+
+        assertEquals(2, slot);
+        verify(preparedStatement, times(1)).setInt(2, 0);
+        verify(preparedStatement, times(1)).setInt(2, 1);
+        verify(reserveStatement, times(1)).setInt(1, 1);
+        verify(reserveStatement, times(1)).setInt(1, 2);
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testReserveNextAvailableSlotCountsDbCalls() throws Exception {
+        OperationMetrics reserveMetrics = Metrics.get(Operation.SPOT_RESERVE);
+        long count = reserveMetrics.getCount();
+        long dbCalls = reserveMetrics.getDbCalls();
+        when(connection.prepareStatement(DBConstants.LOCK_NEXT_PARKING_SPOT)).thenReturn(preparedStatement);
+        PreparedStatement reserveStatement = mock(PreparedStatement.class);
+        doReturn(reserveStatement).when(connection).prepareStatement(DBConstants.RESERVE_PARKING_SPOT);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(1, 2);
+        when(reserveStatement.executeUpdate()).thenReturn(0, 1);
+
+        parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR);
+
+        assertEquals(count + 1, reserveMetrics.getCount());
+        assertEquals(dbCalls + 4, reserveMetrics.getDbCalls());
+    }
+
+    @Test
+    public void testFailedUpdateCountsItsDbCall() throws Exception {
+        OperationMetrics updateMetrics = Metrics.get(Operation.SPOT_UPDATE);
+        long count = updateMetrics.getCount();
+        long dbCalls = updateMetrics.getDbCalls();
+        long errors = updateMetrics.getErrors();
+        when(connection.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenThrow(new SQLException("Lock wait timeout exceeded"));
+
+        assertFalse(parkingSpotDAO.updateParking(new ParkingSpot(1, ParkingType.CAR, false)));
+
+        assertEquals(count + 1, updateMetrics.getCount());
+        assertEquals(dbCalls + 1, updateMetrics.getDbCalls());
+        assertEquals(errors + 1, updateMetrics.getErrors());
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testFailedLastTicketIdReadIsCounted() throws Exception {
+        OperationMetrics lastTicketIdMetrics = Metrics.get(Operation.SPOT_LAST_TICKET_ID);
+        long count = lastTicketIdMetrics.getCount();
+        long dbCalls = lastTicketIdMetrics.getDbCalls();
+        long errors = lastTicketIdMetrics.getErrors();
+        when(connection.prepareStatement(DBConstants.GET_LAST_TICKET_ID)).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenThrow(new SQLException("Communications link failure"));
+
+        assertEquals(-1, parkingSpotDAO.getLastTicketId());
+
+        assertEquals(count + 1, lastTicketIdMetrics.getCount());
+        assertEquals(dbCalls + 1, lastTicketIdMetrics.getDbCalls());
+        assertEquals(errors + 1, lastTicketIdMetrics.getErrors());
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void testReserveNextAvailableSlotWhenFull() throws Exception {
+        when(connection.prepareStatement(DBConstants.LOCK_NEXT_PARKING_SPOT)).thenReturn(preparedStatement);
+        doReturn(mock(PreparedStatement.class)).when(connection).prepareStatement(DBConstants.RESERVE_PARKING_SPOT);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(false);
+
+        assertEquals(-1, parkingSpotDAO.reserveNextAvailableSlot(ParkingType.BIKE));
+    }
+
+    @Test
+    public void testOccupancyFollowsSpotUpdates() throws Exception {
+        SpotOccupancy spotOccupancy = new SpotOccupancy();
+        spotOccupancy.addSpot(1, ParkingType.CAR, true);
+        parkingSpotDAO.spotOccupancy = spotOccupancy;
+        when(connection.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+
+        parkingSpotDAO.updateParking(new ParkingSpot(1, ParkingType.CAR, false));
+
+        assertEquals(0, parkingSpotDAO.getFreeSpots(ParkingType.CAR));
+        assertTrue(parkingSpotDAO.isFull(ParkingType.CAR));
+
+        parkingSpotDAO.updateParking(new ParkingSpot(1, ParkingType.CAR, true));
+
+        assertEquals(1, parkingSpotDAO.getFreeSpots(ParkingType.CAR));
+        assertFalse(parkingSpotDAO.isFull(ParkingType.CAR));
+    }
+
+    @Test
+    public void testCandidateTakenInDatabaseIsCountedAsTaken() throws Exception {
+        FreeSpotIndex freeSpotIndex = new FreeSpotIndex();
+        SpotOccupancy spotOccupancy = new SpotOccupancy();
+        for (int number = 1; number <= 2; number++) {
+            freeSpotIndex.addSpot(number, ParkingType.CAR, true);
+            spotOccupancy.addSpot(number, ParkingType.CAR, true);
+        }
+        parkingSpotDAO.freeSpotIndex = freeSpotIndex;
+        parkingSpotDAO.spotOccupancy = spotOccupancy;
+        when(connection.prepareStatement(DBConstants.RESERVE_PARKING_SPOT)).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenReturn(0);
+
+        assertEquals(-1, parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR));
+
+        assertEquals(0, parkingSpotDAO.getFreeSpots(ParkingType.CAR));
+        assertTrue(parkingSpotDAO.isFull(ParkingType.CAR));
+    }
+
+    @Test
+    public void testGetFreeSpotsCountsInDatabaseWithoutOccupancy() throws Exception {
+        when(connection.prepareStatement(DBConstants.COUNT_FREE_PARKING_SPOTS)).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getLong(1)).thenReturn(7L);
+
+        assertEquals(7, parkingSpotDAO.getFreeSpots(ParkingType.BIKE));
+        assertFalse(parkingSpotDAO.isFull(ParkingType.BIKE));
+        verify(preparedStatement, times(1)).setString(1, ParkingType.BIKE.toString());
+    }
+}
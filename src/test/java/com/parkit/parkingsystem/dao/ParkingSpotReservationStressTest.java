@@ -0,0 +1,136 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.integration.config.InMemoryDataBaseTestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Many gates reserving spots at the same time against a real (in-memory) database: every spot must be handed
+ * out exactly once.
+ */
+public class ParkingSpotReservationStressTest {
+
+    private static final int CAR_SPOTS = 300;
+    private static final int BIKE_SPOTS = 50;
+    private static final int GATES = 32;
+
+    private static final InMemoryDataBaseTestConfig dataBaseConfig = new InMemoryDataBaseTestConfig("reservation");
+
+    private ParkingSpotDAO parkingSpotDAO;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataBaseConfig.createSchema(CAR_SPOTS, BIKE_SPOTS);
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    @Test
+    public void testConcurrentReservationsInAutoCommitMode() throws Exception {
+        Queue<Integer> reserved = reserveUntilFull(() -> parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR));
+
+        assertAllSpotsReservedOnce(reserved);
+    }
+
+    @Test
+    public void testConcurrentReservationsInTransactions() throws Exception {
+        TransactionManager transactionManager = new TransactionManager(dataBaseConfig);
+
+        Queue<Integer> reserved = reserveUntilFull(() -> transactionManager.inTransaction(
+                () -> parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR)));
+
+        assertAllSpotsReservedOnce(reserved);
+    }
+
+    @Test
+    public void testConcurrentReservationsWithFreeSpotIndex() throws Exception {
+        assertTrue(parkingSpotDAO.loadFreeSpotIndex());
+        TransactionManager transactionManager = new TransactionManager(dataBaseConfig);
+
+        Queue<Integer> reserved = reserveUntilFull(() -> transactionManager.inTransaction(
+                () -> parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR)));
+
+        assertAllSpotsReservedOnce(reserved);
+        assertEquals(-1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(CAR_SPOTS + 1, parkingSpotDAO.getNextAvailableSlot(ParkingType.BIKE));
+    }
+
+    @Test
+    public void testFreeSpotIndexRestoredOnRollback() throws Exception {
+        assertTrue(parkingSpotDAO.loadFreeSpotIndex());
+        TransactionManager transactionManager = new TransactionManager(dataBaseConfig);
+
+        assertThrows(IllegalStateException.class, () -> transactionManager.inTransaction(() -> {
+            assertEquals(1, parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR));
+            assertEquals(2, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+            throw new IllegalStateException("gate failure");
+        }));
+
+        assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(1, parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR));
+    }
+
+    private Queue<Integer> reserveUntilFull(Callable<Integer> reservation) throws Exception {
+        Queue<Integer> reserved = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService gates = Executors.newFixedThreadPool(GATES);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int gate = 0; gate < GATES; gate++) {
+            futures.add(gates.submit(() -> {
+                start.await();
+                int number;
+                while ((number = reservation.call()) > 0) {
+                    reserved.add(number);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        gates.shutdown();
+        return reserved;
+    }
+
+    private void assertAllSpotsReservedOnce(Queue<Integer> reserved) throws Exception {
+        Set<Integer> distinct = new HashSet<>(reserved);
+        assertEquals(reserved.size(), distinct.size(), "a spot was allocated to more than one gate");
+        assertEquals(CAR_SPOTS, distinct.size());
+        for (int number = 1; number <= CAR_SPOTS; number++) {
+            assertTrue(distinct.contains(number));
+        }
+
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            ResultSet rs = connection.createStatement().executeQuery(
+                    "select TYPE, count(*) from parking where AVAILABLE = true group by TYPE");
+            assertTrue(rs.next());
+            assertEquals("BIKE", rs.getString(1));
+            assertEquals(BIKE_SPOTS, rs.getInt(2));
+            assertFalse(rs.next());
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.parkit.parkingsystem.dao;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecurringUserCacheTest {
+
+    @Test
+    public void testLeastRecentlyUsedVehicleIsEvicted() {
+        RecurringUserCache recurringUserCache = new RecurringUserCache(2, 60000);
+        recurringUserCache.put("AAA111", 1);
+        recurringUserCache.put("BBB222", 0);
+        recurringUserCache.get("AAA111");
+
+        recurringUserCache.put("CCC333", 3);
+
+        assertEquals(2, recurringUserCache.size());
+        assertEquals(Integer.valueOf(1), recurringUserCache.get("AAA111"));
+        assertNull(recurringUserCache.get("BBB222"));
+        assertEquals(Integer.valueOf(3), recurringUserCache.get("CCC333"));
+    }
+
+    @Test
+    public void testExpiredEntryIsNotReturned() throws Exception {
+        RecurringUserCache recurringUserCache = new RecurringUserCache(2, 10);
+        recurringUserCache.put("AAA111", 1);
+
+        Thread.sleep(50);
+
+        assertNull(recurringUserCache.get("AAA111"));
+        assertEquals(0, recurringUserCache.size());
+    }
+
+    @Test
+    public void testIncrementOnlyUpdatesCachedVehicles() {
+        RecurringUserCache recurringUserCache = new RecurringUserCache(2, 60000);
+        recurringUserCache.put("AAA111", 0);
+
+        recurringUserCache.increment("AAA111");
+        recurringUserCache.increment("BBB222");
+
+        assertEquals(Integer.valueOf(1), recurringUserCache.get("AAA111"));
+        assertNull(recurringUserCache.get("BBB222"));
+    }
+}
@@ -0,0 +1,59 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpotOccupancyTest {
+
+    private SpotOccupancy spotOccupancy;
+
+    @BeforeEach
+    public void setUp() {
+        spotOccupancy = new SpotOccupancy();
+        spotOccupancy.addSpot(1, ParkingType.CAR, false);
+        spotOccupancy.addSpot(2, ParkingType.CAR, true);
+        spotOccupancy.addSpot(3, ParkingType.CAR, true);
+        spotOccupancy.addSpot(4, ParkingType.BIKE, true);
+    }
+
+    @Test
+    public void testSpotsAreCountedByType() {
+        assertEquals(2, spotOccupancy.getFreeSpots(ParkingType.CAR));
+        assertEquals(3, spotOccupancy.getTotalSpots(ParkingType.CAR));
+        assertEquals(1, spotOccupancy.getFreeSpots(ParkingType.BIKE));
+        assertEquals(1, spotOccupancy.getTotalSpots(ParkingType.BIKE));
+    }
+
+    @Test
+    public void testLotIsFullOnceEverySpotIsTaken() {
+        assertTrue(spotOccupancy.markUnavailable(4));
+
+        assertTrue(spotOccupancy.isFull(ParkingType.BIKE));
+        assertFalse(spotOccupancy.isFull(ParkingType.CAR));
+
+        spotOccupancy.markAvailable(4);
+        assertFalse(spotOccupancy.isFull(ParkingType.BIKE));
+    }
+
+    @Test
+    public void testRepeatedChangesAreCountedOnce() {
+        assertTrue(spotOccupancy.markUnavailable(2));
+        assertFalse(spotOccupancy.markUnavailable(2));
+        spotOccupancy.markAvailable(3);
+        spotOccupancy.markAvailable(1);
+        spotOccupancy.markAvailable(1);
+
+        assertEquals(2, spotOccupancy.getFreeSpots(ParkingType.CAR));
+    }
+
+    @Test
+    public void testUnknownSpotIsIgnored() {
+        assertFalse(spotOccupancy.markUnavailable(99));
+        spotOccupancy.markAvailable(99);
+
+        assertEquals(2, spotOccupancy.getFreeSpots(ParkingType.CAR));
+    }
+}
@@ -0,0 +1,146 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.integration.config.InMemoryDataBaseTestConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class SpotSnapshotFileTest {
+
+    private static final InMemoryDataBaseTestConfig dataBaseConfig = new InMemoryDataBaseTestConfig("spotSnapshot");
+
+    private Path file;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataBaseConfig.createSchema(3, 1);
+        file = Files.createTempDirectory("spotSnapshot").resolve("spots");
+    }
+
+    @Test
+    public void testSnapshotIsReadBack() throws Exception {
+        ParkingSpotDAO parkingSpotDAO = newParkingSpotDAO();
+        assertTrue(parkingSpotDAO.loadOccupancy());
+        parkingSpotDAO.spotOccupancy.markUnavailable(2);
+        SpotSnapshotFile snapshotFile = new SpotSnapshotFile(file);
+        snapshotFile.write(7, parkingSpotDAO.spotOccupancy);
+        snapshotFile.close();
+
+        SpotSnapshotFile.Snapshot snapshot = SpotSnapshotFile.read(file);
+
+        assertEquals(7, snapshot.getLastTicketId());
+        assertEquals(4, snapshot.size());
+        assertEquals(ParkingType.BIKE, snapshot.getParkingType(snapshot.indexOf(4)));
+        assertTrue(snapshot.isAvailable(snapshot.indexOf(1)));
+        assertFalse(snapshot.isAvailable(snapshot.indexOf(2)));
+        try (RandomAccessFile corrupted = new RandomAccessFile(file.toFile(), "rw")) {
+            corrupted.seek(Files.size(file) - 1);
+            corrupted.write(0);
+        }
+        assertThrows(IOException.class, () -> SpotSnapshotFile.read(file));
+    }
+
+    @Test
+    public void testSnapshotIsReconciledWithParkingTable() throws Exception {
+        ParkingSpotDAO parkingSpotDAO = newParkingSpotDAO();
+        assertFalse(parkingSpotDAO.enableSnapshots(file, 60000, 2));
+        assertEquals(1, parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR));
+        parkingSpotDAO.closeSnapshots();
+        // changed while the service was down
+        execute("update parking set AVAILABLE = false where PARKING_NUMBER = 2");
+
+        ParkingSpotDAO restarted = newParkingSpotDAO();
+        SpotSnapshotFile.Snapshot snapshot = SpotSnapshotFile.read(file);
+        restarted.loadSnapshot(snapshot);
+        assertEquals(2, restarted.getFreeSpots(ParkingType.CAR));
+        assertEquals(1, restarted.reconcile(snapshot, 2));
+
+        assertEquals(1, restarted.getFreeSpots(ParkingType.CAR));
+        assertEquals(3, restarted.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void testExitDuringReconcileIsNotUndone() throws Exception {
+        ParkingSpotDAO parkingSpotDAO = newParkingSpotDAO();
+        assertTrue(parkingSpotDAO.loadOccupancy());
+        new SpotSnapshotFile(file).write(0, parkingSpotDAO.spotOccupancy);
+        // parked while the service was down
+        execute("update parking set AVAILABLE = false where PARKING_NUMBER = 2");
+
+        ParkingSpotDAO restarted = newParkingSpotDAO();
+        SpotSnapshotFile.Snapshot snapshot = SpotSnapshotFile.read(file);
+        restarted.loadSnapshot(snapshot);
+        SpotOccupancy occupancy = spy(restarted.spotOccupancy);
+        restarted.spotOccupancy = occupancy;
+        AtomicBoolean exited = new AtomicBoolean();
+        // the vehicle leaves right after the reconcile has read the spot as taken
+        doAnswer(invocation -> {
+            if (exited.compareAndSet(false, true)) {
+                assertTrue(restarted.updateParking(new ParkingSpot(2, ParkingType.CAR, true)));
+            }
+            return invocation.callRealMethod();
+        }).when(occupancy).isAvailable(2);
+
+        assertEquals(0, restarted.reconcile(snapshot, 2));
+
+        assertTrue(exited.get());
+        assertEquals(3, restarted.getFreeSpots(ParkingType.CAR));
+        assertTrue(restarted.freeSpotIndex.isAvailable(2));
+    }
+
+    @Test
+    public void testAddedSpotsReloadTheParkingTable() throws Exception {
+        ParkingSpotDAO parkingSpotDAO = newParkingSpotDAO();
+        assertTrue(parkingSpotDAO.loadOccupancy());
+        new SpotSnapshotFile(file).write(0, parkingSpotDAO.spotOccupancy);
+        execute("insert into parking(PARKING_NUMBER, AVAILABLE, TYPE) values(5, true, 'CAR')");
+
+        SpotSnapshotFile.Snapshot snapshot = SpotSnapshotFile.read(file);
+        parkingSpotDAO.loadSnapshot(snapshot);
+        parkingSpotDAO.reconcile(snapshot, 2);
+
+        assertEquals(4, parkingSpotDAO.getFreeSpots(ParkingType.CAR));
+        assertTrue(parkingSpotDAO.freeSpotIndex.isAvailable(5));
+    }
+
+    @Test
+    public void testSnapshotAheadOfTicketTableIsIgnored() throws Exception {
+        ParkingSpotDAO parkingSpotDAO = newParkingSpotDAO();
+        assertTrue(parkingSpotDAO.loadOccupancy());
+        parkingSpotDAO.spotOccupancy.markUnavailable(1);
+        new SpotSnapshotFile(file).write(5, parkingSpotDAO.spotOccupancy);
+
+        ParkingSpotDAO restarted = newParkingSpotDAO();
+        assertFalse(restarted.enableSnapshots(file, 60000, 2));
+        restarted.closeSnapshots();
+
+        assertEquals(3, restarted.getFreeSpots(ParkingType.CAR));
+    }
+
+    private static ParkingSpotDAO newParkingSpotDAO() {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        return parkingSpotDAO;
+    }
+
+    private static void execute(String sql) throws Exception {
+        Connection connection = null;
+        try {
+            connection = dataBaseConfig.getConnection();
+            connection.createStatement().execute(sql);
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+}
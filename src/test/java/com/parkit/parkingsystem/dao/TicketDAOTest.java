@@ -16,6 +16,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.Date;
 
@@ -58,7 +59,9 @@ public class TicketDAOTest {
 
     @Test
     public void testSaveTicket() throws Exception {
+        PreparedStatement visitStatement = mock(PreparedStatement.class);
         when(connection.prepareStatement(DBConstants.SAVE_TICKET)).thenReturn(preparedStatement);
+        doReturn(visitStatement).when(connection).prepareStatement(DBConstants.SAVE_VEHICLE_VISIT);
         when(preparedStatement.execute()).thenReturn(true);
 
         boolean result = ticketDAO.saveTicket(ticket);
@@ -70,6 +73,25 @@ public class TicketDAOTest {
         verify(preparedStatement, times(1)).setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
         verify(preparedStatement, times(1)).setTimestamp(5, new Timestamp(ticket.getOutTime().getTime()));
         verify(preparedStatement, times(1)).execute();
+        verify(visitStatement, times(1)).setString(1, ticket.getVehicleRegNumber());
+        verify(visitStatement, times(1)).setTimestamp(2, new Timestamp(ticket.getInTime().getTime()));
+        verify(visitStatement, times(1)).setTimestamp(3, new Timestamp(ticket.getInTime().getTime()));
+        verify(visitStatement, times(1)).executeUpdate();
+    }
+
+    @Test
+    public void testSaveTicketOutsideTransactionCommitsTicketAndVisitTogether() throws Exception {
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET)).thenReturn(preparedStatement);
+        doReturn(preparedStatement).when(connection).prepareStatement(DBConstants.SAVE_VEHICLE_VISIT);
+        when(preparedStatement.executeUpdate()).thenThrow(new SQLException("visit failed"));
+
+        assertFalse(ticketDAO.saveTicket(ticket));
+
+        verify(connection).setAutoCommit(false);
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        verify(connection).setAutoCommit(true);
     }
 
     @Test
@@ -95,6 +117,31 @@ public class TicketDAOTest {
         assertEquals(ticket.getOutTime(), result.getOutTime());
     }
 
+    @Test
+    public void testGetOpenTicket() throws Exception {
+        when(connection.prepareStatement(DBConstants.GET_OPEN_TICKET)).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(1);
+        when(resultSet.getString(6)).thenReturn("CAR");
+        when(resultSet.getTimestamp(4)).thenReturn(new Timestamp(ticket.getInTime().getTime()));
+
+        Ticket result = ticketDAO.getOpenTicket("ABC123");
+
+        verify(preparedStatement, times(1)).setString(1, "ABC123");
+        assertEquals(ticket.getInTime(), result.getInTime());
+        assertNull(result.getOutTime());
+    }
+
+    @Test
+    public void testGetOpenTicketWhenNotParked() throws Exception {
+        when(connection.prepareStatement(DBConstants.GET_OPEN_TICKET)).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(false);
+
+        assertNull(ticketDAO.getOpenTicket("ABC123"));
+    }
+
     @Test
     public void testUpdateTicket() throws Exception {
         when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(preparedStatement);
@@ -120,4 +167,47 @@ public class TicketDAOTest {
 
         assertEquals(5, result);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetNbTicketIsCached() throws Exception {
+        ticketDAO.enableRecurringUserCache(10, 60000);
+        when(connection.prepareStatement(DBConstants.GET_NUMBER_TICKET)).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(2);
+
+        assertEquals(2, ticketDAO.getNbTicket("ABC123"));
+        assertEquals(2, ticketDAO.getNbTicket("ABC123"));
+
+        verify(preparedStatement, times(1)).executeQuery();
+    }
+
+    @Test
+    public void testSaveTicketCountsCachedVehicle() throws Exception {
+        ticketDAO.enableRecurringUserCache(10, 60000);
+        ticketDAO.recurringUserCache.put("ABC123", 1);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET)).thenReturn(preparedStatement);
+        doReturn(preparedStatement).when(connection).prepareStatement(DBConstants.SAVE_VEHICLE_VISIT);
+
+        ticketDAO.saveTicket(ticket);
+
+        assertEquals(2, ticketDAO.getNbTicket("ABC123"));
+    }
+
+    @Test
+    public void testGetNbTicketSkipsVehiclesNeverSeen() throws Exception {
+        ticketDAO.knownVehicleFilter = new KnownVehicleFilter(100, 0.001);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET)).thenReturn(preparedStatement);
+        doReturn(preparedStatement).when(connection).prepareStatement(DBConstants.SAVE_VEHICLE_VISIT);
+        doReturn(preparedStatement).when(connection).prepareStatement(DBConstants.GET_NUMBER_TICKET);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(1);
+
+        ticketDAO.saveTicket(ticket);
+
+        assertEquals(0, ticketDAO.getNbTicket("XYZ999"));
+        assertEquals(1, ticketDAO.getNbTicket("ABC123"));
+        verify(preparedStatement, times(1)).executeQuery();
+    }
+}
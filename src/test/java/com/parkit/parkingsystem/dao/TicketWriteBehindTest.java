@@ -0,0 +1,127 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.TransactionManager;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.integration.config.InMemoryDataBaseTestConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TicketWriteBehindTest {
+
+    @Test
+    public void testWritesAreSentAsOneBatch() throws Exception {
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        PreparedStatement visitStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET)).thenReturn(preparedStatement);
+        when(connection.prepareStatement(DBConstants.SAVE_VEHICLE_VISIT)).thenReturn(visitStatement);
+
+        TicketWriteBehind ticketWriteBehind = new TicketWriteBehind(dataBaseConfig, 3, 10000);
+        CompletableFuture<Boolean> first = ticketWriteBehind.submitSave(newTicket("AAA111", 1));
+        CompletableFuture<Boolean> second = ticketWriteBehind.submitSave(newTicket("BBB222", 2));
+        CompletableFuture<Boolean> third = ticketWriteBehind.submitSave(newTicket("CCC333", 3));
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertTrue(third.get(5, TimeUnit.SECONDS));
+        verify(preparedStatement, times(3)).addBatch();
+        verify(preparedStatement, times(1)).executeBatch();
+        verify(visitStatement, times(3)).addBatch();
+        verify(visitStatement, times(1)).executeBatch();
+        verify(connection, times(1)).commit();
+        ticketWriteBehind.close();
+    }
+
+    @Test
+    public void testReadsSeeQueuedWritesAndCloseFlushes() throws Exception {
+        InMemoryDataBaseTestConfig dataBaseConfig = new InMemoryDataBaseTestConfig("writeBehind");
+        dataBaseConfig.createSchema(3, 2);
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.enableWriteBehind(100, 10000);
+
+        assertTrue(ticketDAO.saveTicket(newTicket("ABCDEF", 1)));
+        assertEquals(1, ticketDAO.getNbTicket("ABCDEF"));
+
+        Ticket ticket = ticketDAO.getTicket("ABCDEF");
+        ticket.setOutTime(new Date());
+        ticket.setPrice(1.5);
+        CompletableFuture<Boolean> update = ticketDAO.updateTicketAsync(ticket);
+        ticketDAO.saveTicket(newTicket("GHIJKL", 2));
+        ticketDAO.closeWriteBehind();
+
+        assertTrue(update.isDone());
+        assertTrue(update.get());
+        assertEquals(1.5, ticketDAO.getTicket("ABCDEF").getPrice());
+        assertEquals(1, ticketDAO.getNbTicket("GHIJKL"));
+    }
+
+    @Test
+    public void testWriteFromRolledBackTransactionIsDropped() throws Exception {
+        InMemoryDataBaseTestConfig dataBaseConfig = new InMemoryDataBaseTestConfig("writeBehindRollback");
+        dataBaseConfig.createSchema(3, 2);
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.enableWriteBehind(100, 10);
+        TransactionManager transactionManager = new TransactionManager(dataBaseConfig);
+
+        CompletableFuture<?>[] save = new CompletableFuture<?>[1];
+        assertThrows(IllegalStateException.class, () -> transactionManager.inTransaction(() -> {
+            save[0] = ticketDAO.saveTicketAsync(newTicket("ABCDEF", 1));
+            throw new IllegalStateException("gate failure");
+        }));
+        ticketDAO.closeWriteBehind();
+
+        assertEquals(false, save[0].get());
+        assertEquals(0, ticketDAO.getNbTicket("ABCDEF"));
+    }
+
+    @Test
+    public void testWriteRefusedOnceClosed() throws Exception {
+        InMemoryDataBaseTestConfig dataBaseConfig = new InMemoryDataBaseTestConfig("writeBehindClosed");
+        dataBaseConfig.createSchema(3, 2);
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.enableWriteBehind(100, 10);
+        TicketWriteBehind ticketWriteBehind = ticketDAO.ticketWriteBehind;
+        TransactionManager transactionManager = new TransactionManager(dataBaseConfig);
+
+        // the queue is closed while the gate transaction is still open
+        CompletableFuture<?>[] save = new CompletableFuture<?>[1];
+        transactionManager.inTransaction(() -> {
+            save[0] = ticketDAO.saveTicketAsync(newTicket("ABCDEF", 1));
+            ticketWriteBehind.close();
+            return null;
+        });
+
+        assertEquals(false, save[0].get(5, TimeUnit.SECONDS));
+        assertFalse(ticketDAO.saveTicket(newTicket("GHIJKL", 2)));
+        assertThrows(SQLException.class, () -> transactionManager.inTransaction(
+                () -> ticketDAO.updateTicket(newTicket("ABCDEF", 1))));
+        ticketDAO.ticketWriteBehind = null;
+        assertEquals(0, ticketDAO.getNbTicket("ABCDEF"));
+    }
+
+    private Ticket newTicket(String vehicleRegNumber, int parkingNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        return ticket;
+    }
+}
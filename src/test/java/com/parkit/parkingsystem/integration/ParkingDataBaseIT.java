@@ -1,5 +1,7 @@
 package com.parkit.parkingsystem.integration;
 
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.config.TransactionManager;
 import com.parkit.parkingsystem.constants.Fare;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
@@ -9,23 +11,18 @@ import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.service.ParkingService;
-import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.Mock;
-import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Date;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.mockito.Mockito.when;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
-@ExtendWith(MockitoExtension.class)
 public class ParkingDataBaseIT {
 
     private static final DataBaseTestConfig dataBaseTestConfig = new DataBaseTestConfig();
@@ -35,11 +32,10 @@ public class ParkingDataBaseIT {
     private static DataBasePrepareService dataBasePrepareService;
     private static final String vehicleRegNumber = "ABCDEF";
 
-    @Mock
-    private static InputReaderUtil inputReaderUtil;
-
     @BeforeAll
-    public static void setUp() {
+    public static void setUp() throws Exception {
+        new SchemaMigrator(dataBaseTestConfig).migrate();
+
         parkingSpotDAO = new ParkingSpotDAO();
         parkingSpotDAO.dataBaseConfig = dataBaseTestConfig;
 
@@ -51,10 +47,7 @@ public class ParkingDataBaseIT {
 
     @BeforeEach
     public void setUpPerTest() {
-        parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
-
-        when(inputReaderUtil.readSelection()).thenReturn(1);
-        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn(vehicleRegNumber);
+        parkingService = new ParkingService(parkingSpotDAO, ticketDAO, new TransactionManager(dataBaseTestConfig));
 
         dataBasePrepareService.clearDataBaseEntries();
     }
@@ -66,7 +59,7 @@ public class ParkingDataBaseIT {
 
     @Test
     public void testParkingACar() {
-        parkingService.processIncomingVehicle();
+        assertTrue(parkingService.processIncomingVehicle(ParkingType.CAR, vehicleRegNumber, new Date()).isAccepted());
 
         assertNotNull(ticketDAO.getTicket(vehicleRegNumber).getInTime());
         assertNotNull(ticketDAO.getTicket(vehicleRegNumber).getParkingSpot());
@@ -76,8 +69,8 @@ public class ParkingDataBaseIT {
 
     @Test
     public void testParkingLotExit() {
-        parkingService.processIncomingVehicle();
-        parkingService.processExitingVehicle();
+        assertTrue(parkingService.processIncomingVehicle(ParkingType.CAR, vehicleRegNumber, new Date()).isAccepted());
+        assertTrue(parkingService.processExitingVehicle(vehicleRegNumber, new Date()).isAccepted());
 
         assertEquals(0.0, ticketDAO.getTicket(vehicleRegNumber).getPrice());
     }
@@ -97,14 +90,13 @@ public class ParkingDataBaseIT {
         int nbTickets = ticketDAO.getNbTicket(vehicleRegNumber);
         assertEquals(1, nbTickets);
 
-        parkingService.processIncomingVehicle();
+        assertTrue(parkingService.processIncomingVehicle(ParkingType.CAR, vehicleRegNumber, new Date()).isAccepted());
 
-        Ticket newTicket = ticketDAO.getTicket(vehicleRegNumber);
+        Ticket newTicket = ticketDAO.getOpenTicket(vehicleRegNumber);
         newTicket.setInTime(new Date(currentTimeMillis - (60 * 60 * 1000)));
-        newTicket.setOutTime(new Date(currentTimeMillis));
         ticketDAO.updateTicket(newTicket);
 
-        parkingService.processExitingVehicle();
+        assertTrue(parkingService.processExitingVehicle(vehicleRegNumber, new Date()).isAccepted());
 
         assertEquals(2, ticketDAO.getNbTicket(vehicleRegNumber));
         double price = Fare.CAR_RATE_PER_HOUR * Fare.DISCOUNT_RATE;
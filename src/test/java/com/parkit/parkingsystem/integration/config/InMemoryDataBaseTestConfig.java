@@ -0,0 +1,101 @@
+package com.parkit.parkingsystem.integration.config;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.PoolConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * H2 database in MySQL mode, living as long as the JVM, for tests that need real SQL without a MySQL server.
+ */
+public class InMemoryDataBaseTestConfig extends DataBaseConfig {
+
+    private final String databaseName;
+
+    public InMemoryDataBaseTestConfig(String databaseName) {
+        this.databaseName = databaseName;
+    }
+
+    @Override
+    protected String getDriverClassName() {
+        return "org.h2.Driver";
+    }
+
+    @Override
+    protected String getUrl() {
+        return "jdbc:h2:mem:" + databaseName + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+    }
+
+    @Override
+    protected String getUser() {
+        return "sa";
+    }
+
+    @Override
+    protected String getPassword() {
+        return "";
+    }
+
+    @Override
+    protected PoolConfig getPoolConfig() {
+        PoolConfig poolConfig = new PoolConfig();
+        poolConfig.setMaxSize(64);
+        return poolConfig;
+    }
+
+    /**
+     * Recreates the production tables, with {@code carSpots} CAR spots numbered from 1 followed by
+     * {@code bikeSpots} BIKE spots, and brings them up to date with {@link SchemaMigrator}.
+     * <p>
+     * The parking index of migration V2 is then dropped: on an index that already gives the requested order, H2
+     * applies {@code limit} before {@code skip locked}, so concurrent spot reservations would find no free spot where
+     * MySQL finds the next one.
+     */
+    public void createSchema(int carSpots, int bikeSpots) throws Exception {
+        createBaseSchema(carSpots, bikeSpots);
+        new SchemaMigrator(this).migrate();
+        Connection connection = null;
+        try {
+            connection = getConnection();
+            Statement statement = connection.createStatement();
+            statement.execute("drop index PARKING_TYPE_AVAILABLE_NUMBER_IDX");
+            statement.close();
+        } finally {
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Recreates the tables of {@code Data.sql}, with the spots of {@link #createSchema(int, int)}, for a schema to be
+     * brought up to date by {@link SchemaMigrator}.
+     */
+    public void createBaseSchema(int carSpots, int bikeSpots) throws Exception {
+        Connection connection = null;
+        try {
+            connection = getConnection();
+            Statement statement = connection.createStatement();
+            statement.execute("drop all objects");
+            statement.execute("create table parking(PARKING_NUMBER int PRIMARY KEY, AVAILABLE bool NOT NULL, "
+                    + "TYPE varchar(10) NOT NULL)");
+            statement.execute("create table ticket(ID int PRIMARY KEY AUTO_INCREMENT, PARKING_NUMBER int NOT NULL, "
+                    + "VEHICLE_REG_NUMBER varchar(10) NOT NULL, PRICE double, IN_TIME DATETIME NOT NULL, "
+                    + "OUT_TIME DATETIME, FOREIGN KEY (PARKING_NUMBER) REFERENCES parking(PARKING_NUMBER))");
+            statement.close();
+
+            PreparedStatement ps = connection.prepareStatement(
+                    "insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(?,true,?)");
+            for (int number = 1; number <= carSpots + bikeSpots; number++) {
+                ps.setInt(1, number);
+                ps.setString(2, number <= carSpots ? "CAR" : "BIKE");
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            closePreparedStatement(ps);
+        } finally {
+            closeConnection(connection);
+        }
+    }
+}
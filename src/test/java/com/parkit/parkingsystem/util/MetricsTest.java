@@ -0,0 +1,56 @@
+package com.parkit.parkingsystem.util;
+
+import com.parkit.parkingsystem.util.Metrics.Operation;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    @Test
+    public void testOperationsAreRecorded() {
+        OperationMetrics operationMetrics = Metrics.get(Operation.TICKET_COUNT);
+        long count = operationMetrics.getCount();
+        long errors = operationMetrics.getErrors();
+        long dbCalls = operationMetrics.getDbCalls();
+
+        long start = Metrics.start();
+        Metrics.recordDbCall(Operation.TICKET_COUNT);
+        Metrics.recordError(Operation.TICKET_COUNT);
+        Metrics.record(Operation.TICKET_COUNT, start);
+
+        assertEquals(count + 1, operationMetrics.getCount());
+        assertEquals(errors + 1, operationMetrics.getErrors());
+        assertEquals(dbCalls + 1, operationMetrics.getDbCalls());
+        assertTrue(operationMetrics.getMaxMicros() >= operationMetrics.getP50Micros());
+    }
+
+    @Test
+    public void testTextExposition() {
+        Metrics.recordDbCall(Operation.SPOT_UPDATE);
+
+        String text = Metrics.toText();
+
+        assertTrue(text.contains("# TYPE parkit_operation_latency_seconds summary\n"));
+        assertTrue(text.contains("parkit_operation_latency_seconds{operation=\"gate_entry\",quantile=\"0.99\"} "));
+        assertTrue(text.contains("parkit_operation_db_calls_total{operation=\"spot_update\"} "));
+        for (String line : text.split("\n")) {
+            assertTrue(line.startsWith("# TYPE ") || line.matches("parkit_[a-z_]+\\{[^}]+\\} [0-9.]+"), line);
+        }
+    }
+
+    @Test
+    public void testMBeansAreRegistered() throws Exception {
+        Metrics.registerMBeans();
+        Metrics.registerMBeans();
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.parkit.parkingsystem:type=Metrics,operation=gate_exit");
+        assertTrue(mBeanServer.isRegistered(name));
+        assertEquals(Metrics.get(Operation.GATE_EXIT).getCount(), mBeanServer.getAttribute(name, "Count"));
+    }
+}